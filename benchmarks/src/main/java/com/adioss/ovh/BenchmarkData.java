@@ -0,0 +1,29 @@
+package com.adioss.ovh;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Payloads shared by the benchmarks.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @return a "format=json" container listing of {@code entries} objects, as returned by Swift
+     */
+    static byte[] listing(int entries) {
+        StringBuilder json = new StringBuilder(entries * 160).append('[');
+        for (int i = 0; i < entries; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"hash\":\"d41d8cd98f00b204e9800998ecf8427e\",\"last_modified\":\"2016-02-24T18:47:00.123456\",")
+                    .append("\"bytes\":").append(i * 31L)
+                    .append(",\"name\":\"Documents/folder").append(i % 100).append("/file").append(i).append(".txt\",")
+                    .append("\"content_type\":\"text/plain\"}");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,59 @@
+package com.adioss.ovh;
+
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of container listings from 1k to 1M entries: streaming into {@link StorageObject}s as
+ * {@link HubicClient#listObjects(String)} does, versus the JSON tree built for {@link HubicClient#listDirectory(String)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ListingParsingBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int entries;
+
+    private byte[] listing;
+
+    @Setup
+    public void setUp() {
+        listing = BenchmarkData.listing(entries);
+    }
+
+    @Benchmark
+    public List<StorageObject> streaming() throws IOException {
+        try (JsonReader jsonReader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(listing), StandardCharsets.UTF_8))) {
+            return StorageObject.readList(jsonReader);
+        }
+    }
+
+    @Benchmark
+    public Object tree() throws IOException {
+        try (InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(listing), StandardCharsets.UTF_8)) {
+            return new JsonParser().parse(reader).getAsJsonArray();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.adioss.ovh;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP server on the loopback interface: "/upload" discards the request body, "/download?size=N" sends N bytes.
+ */
+final class LoopbackServer implements AutoCloseable {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executorService = Executors.newCachedThreadPool();
+
+    LoopbackServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executorService);
+        server.createContext("/upload", exchange -> {
+            byte[] buffer = new byte[CHUNK_SIZE];
+            try (InputStream inputStream = exchange.getRequestBody()) {
+                while (inputStream.read(buffer) != -1) {
+                    // discard
+                }
+            }
+            exchange.sendResponseHeaders(201, -1);
+            exchange.close();
+        });
+        server.createContext("/download", exchange -> {
+            long size = Long.parseLong(exchange.getRequestURI().getQuery().substring("size=".length()));
+            byte[] chunk = new byte[CHUNK_SIZE];
+            exchange.sendResponseHeaders(200, size);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                for (long sent = 0; sent < size; sent += CHUNK_SIZE) {
+                    outputStream.write(chunk, 0, (int) Math.min(CHUNK_SIZE, size - sent));
+                }
+            }
+        });
+        server.start();
+    }
+
+    String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executorService.shutdownNow();
+    }
+}
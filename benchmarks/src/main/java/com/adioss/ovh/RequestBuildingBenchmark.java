@@ -0,0 +1,51 @@
+package com.adioss.ovh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building a request in {@link HttpAPI}, without any network: form encoding of the post data, and header
+ * merging up to a transport answering immediately.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBuildingBenchmark {
+    private static final String URL = "https://api.hubic.com/oauth/token/";
+    private static final Transport NO_CONTENT = (verb, url, headers, body) -> new TransportResponse(204, Collections.emptyMap(), null);
+
+    @Benchmark
+    public byte[] buildPostParameters() throws UnsupportedEncodingException {
+        return HttpAPI.query(URL)
+                .postData("refresh_token", "dGhpcyBpcyBhIHJlZnJlc2ggdG9rZW4gb2YgYSBjZXJ0YWluIGxlbmd0aA")
+                .postData("grant_type", "refresh_token")
+                .postData("redirect_uri", "https://api.hubic.com/sandbox/")
+                .buildPostParameters();
+    }
+
+    @Benchmark
+    public Response headWithHeaders() {
+        return HttpAPI.query(URL)
+                .transport(NO_CONTENT)
+                .header("X-Auth-Token", "AUTH_tk0123456789abcdef0123456789abcdef")
+                .header("Content-Type", "application/directory")
+                .header("X-Object-Meta-Codec", "identity")
+                .header("If-None-Match", "\"d41d8cd98f00b204e9800998ecf8427e\"")
+                .header("Accept", "application/json")
+                .head();
+    }
+}
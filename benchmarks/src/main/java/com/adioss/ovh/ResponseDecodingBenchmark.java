@@ -0,0 +1,61 @@
+package com.adioss.ovh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of a response body by {@link HttpAPI} for each output mode, from memory so that only the decoding is
+ * measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseDecodingBenchmark {
+    private static final String URL = "https://localhost/default?format=json";
+
+    @Param({"JSON", "JSON_ARRAY", "PLAIN"})
+    public String output;
+
+    @Param({"10", "1000"})
+    public int entries;
+
+    private Transport transport;
+
+    @Setup
+    public void setUp() {
+        byte[] body = BenchmarkData.listing(entries);
+        transport = (verb, url, headers, requestBody) -> new TransportResponse(200, Collections.emptyMap(), new ByteArrayInputStream(body));
+    }
+
+    @Benchmark
+    public Object decode() {
+        HttpAPI query = HttpAPI.query(URL).transport(transport);
+        switch (output) {
+            case "JSON":
+                query.json();
+                break;
+            case "JSON_ARRAY":
+                query.jsonArray();
+                break;
+            default:
+                query.plain();
+        }
+        return query.get().getContent();
+    }
+}
@@ -0,0 +1,74 @@
+package com.adioss.ovh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload and download through {@link HttpAPI} against a {@link LoopbackServer}, per file size and transport. The
+ * throughput is the file size divided by the reported time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferBenchmark {
+
+    @Param({"1048576", "16777216", "67108864"})
+    public long fileSize;
+
+    @Param({"urlconnection", "httpclient"})
+    public String transportName;
+
+    private LoopbackServer server;
+    private Transport transport;
+    private Path source;
+    private Path target;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new LoopbackServer();
+        transport = "httpclient".equals(transportName)
+                ? HttpClientTransport.createHttpClientTransport()
+                : UrlConnectionTransport.createUrlConnectionTransport();
+        source = Files.createTempFile("hubic-benchmark", ".source");
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(source.toFile(), "rw")) {
+            randomAccessFile.setLength(fileSize);
+        }
+        target = Files.createTempFile("hubic-benchmark", ".target");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.close();
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(target);
+    }
+
+    @Benchmark
+    public Response upload() {
+        return HttpAPI.query(server.url("/upload")).transport(transport).put(source);
+    }
+
+    @Benchmark
+    public Response download() {
+        return HttpAPI.query(server.url("/download?size=" + fileSize)).transport(transport).binary(target).get();
+    }
+}
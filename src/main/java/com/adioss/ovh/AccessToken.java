@@ -5,11 +5,11 @@ final class AccessToken {
 
     private final String accessToken;
     private final String refreshToken;
-    private final long expiresIn;
+    private final long expiresAt;
 
-    public AccessToken(String accessToken, long expiresIn, String refreshToken) {
+    public AccessToken(String accessToken, long expiresAt, String refreshToken) {
         this.accessToken = accessToken;
-        this.expiresIn = expiresIn;
+        this.expiresAt = expiresAt;
         this.refreshToken = refreshToken;
     }
 
@@ -21,8 +21,11 @@ final class AccessToken {
         return refreshToken;
     }
 
-    public long getExpiresIn() {
-        return expiresIn;
+    /**
+     * @return expiry date in milliseconds since epoch
+     */
+    public long getExpiresAt() {
+        return expiresAt;
     }
 
     public String getBearer() {
@@ -0,0 +1,289 @@
+package com.adioss.ovh;
+
+import com.adioss.ovh.Instrumentation.Operation;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Upload of many small files packed into tar archives extracted by the server ("PUT ?extract-archive=tar"): one
+ * request per batch of files instead of one per file and per directory. Archives are produced on the fly while they
+ * are sent, with no temporary file, and can be gzipped. Files bigger than a batch are uploaded on their own with
+ * {@link HubicClient#upload(Path, String)}.
+ */
+public class ArchiveUpload {
+    public static final int DEFAULT_MAX_FILES = 1000;
+    public static final long DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+    private static final Logger LOG = LoggerFactory.getLogger(ArchiveUpload.class);
+    private static final Map<String, String> DIRECTORY_XATTRS = Collections.singletonMap("user.mime_type", "application/directory");
+
+    private final HubicClient hubicClient;
+    private final int parallelism;
+    private final int maxFiles;
+    private final long maxBytes;
+    private final boolean gzip;
+    private final ThreadFactory threadFactory;
+
+    private ArchiveUpload(HubicClient hubicClient, int parallelism, int maxFiles, long maxBytes, boolean gzip, ThreadFactory threadFactory) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        if (maxFiles < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("maxFiles and maxBytes must be positive: " + maxFiles + ", " + maxBytes);
+        }
+        this.hubicClient = hubicClient;
+        this.parallelism = parallelism;
+        this.maxFiles = maxFiles;
+        this.maxBytes = maxBytes;
+        this.gzip = gzip;
+        this.threadFactory = threadFactory;
+    }
+
+    public static ArchiveUpload createArchiveUpload(HubicClient hubicClient, int parallelism) {
+        return new ArchiveUpload(hubicClient, parallelism, DEFAULT_MAX_FILES, DEFAULT_MAX_BYTES, false, Executors.defaultThreadFactory());
+    }
+
+    /**
+     * @param parallelism archives sent concurrently
+     * @param maxFiles    files per archive
+     * @param maxBytes    bytes of file content per archive, bigger files are uploaded alone
+     * @param gzip        true to send gzipped archives ("extract-archive=tar.gz"), worth it for compressible content
+     */
+    public static ArchiveUpload createArchiveUpload(HubicClient hubicClient, int parallelism, int maxFiles, long maxBytes, boolean gzip,
+                                                    ThreadFactory threadFactory) {
+        return new ArchiveUpload(hubicClient, parallelism, maxFiles, maxBytes, gzip, threadFactory);
+    }
+
+    /**
+     * Upload every regular file under {@code localRoot} to {@code targetRoot}, keeping the relative layout.
+     *
+     * @param localRoot  local directory to upload
+     * @param targetRoot remote directory, e.g. "/Documents/backup"
+     * @return a {@link BulkTransferResult}
+     */
+    public BulkTransferResult uploadTree(Path localRoot, String targetRoot) {
+        String root = targetRoot.endsWith("/") ? targetRoot.substring(0, targetRoot.length() - 1) : targetRoot;
+        List<TransferItem> items;
+        try (Stream<Path> files = Files.walk(localRoot)) {
+            items = files.filter(Files::isRegularFile)
+                    .map(file -> {
+                        StringBuilder remotePath = new StringBuilder(root);
+                        for (Path element : localRoot.relativize(file)) {
+                            remotePath.append('/').append(element.toString());
+                        }
+                        return TransferItem.of(file, remotePath.toString());
+                    })
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossible to walk " + localRoot, e);
+        }
+        return upload(items);
+    }
+
+    /**
+     * Upload each {@link TransferItem#getLocalPath()} to its {@link TransferItem#getRemotePath()}. The first archive
+     * also holds a directory marker for every parent prefix of the targets.
+     *
+     * @param items files to upload
+     * @return a {@link BulkTransferResult}, one {@link TransferResult} per item whose {@link Response} has the status
+     * reported by the server for that file
+     */
+    public BulkTransferResult upload(List<TransferItem> items) {
+        long start = System.nanoTime();
+        List<TransferResult> results = new ArrayList<>(items.size());
+        List<List<Entry>> batches = new ArrayList<>();
+        List<Entry> alone = new ArrayList<>();
+        List<Entry> batch = new ArrayList<>();
+        long batchBytes = 0;
+        for (TransferItem item : items) {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(item.getLocalPath(), BasicFileAttributes.class);
+            } catch (IOException e) {
+                LOG.warn("Impossible to read " + item.getLocalPath(), e);
+                results.add(new TransferResult(item, null, 0, 0));
+                continue;
+            }
+            Entry entry = new Entry(item, attributes.size(), attributes.lastModifiedTime().toMillis());
+            if (entry.size > maxBytes) {
+                alone.add(entry);
+                continue;
+            }
+            if (!batch.isEmpty() && (batch.size() >= maxFiles || batchBytes + entry.size > maxBytes)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+            batch.add(entry);
+            batchBytes += entry.size;
+        }
+        if (!batch.isEmpty() || batches.isEmpty()) {
+            batches.add(batch);
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(parallelism, threadFactory);
+        try {
+            List<Future<List<TransferResult>>> futures = new ArrayList<>();
+            List<List<Entry>> submitted = new ArrayList<>();
+            for (int i = 0; i < batches.size(); i++) {
+                List<Entry> entries = batches.get(i);
+                List<String> directories = i == 0 ? directories(items) : Collections.emptyList();
+                if (entries.isEmpty() && directories.isEmpty()) {
+                    continue;
+                }
+                submitted.add(entries);
+                futures.add(executorService.submit(() -> sendArchive(entries, directories)));
+            }
+            for (Entry entry : alone) {
+                submitted.add(Collections.singletonList(entry));
+                futures.add(executorService.submit(() -> Collections.singletonList(uploadAlone(entry))));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.addAll(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    LOG.warn("Archive upload failed", e.getCause());
+                    submitted.get(i).forEach(entry -> results.add(new TransferResult(entry.item, null, 0, 0)));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    submitted.get(i).forEach(entry -> results.add(new TransferResult(entry.item, null, 0, 0)));
+                }
+            }
+            return new BulkTransferResult(results, System.nanoTime() - start);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * curl -H "X-Auth-Token: YOUR_AUTH_TOKEN" -H "Accept: application/json" -T archive.tar "ENDPOINT_URL/default?extract-archive=tar" -i -X PUT
+     * <p>
+     * The archive is sent with chunked transfer encoding while it is written; being rebuilt from the files, it can be
+     * sent again by a retry. If the server rejects the request itself, the files are uploaded one by one.
+     */
+    private List<TransferResult> sendArchive(List<Entry> entries, List<String> directories) {
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        RequestBody body = RequestBody.ofWriter(-1, outputStream -> {
+            OutputStream archive = gzip ? new GZIPOutputStream(outputStream, RequestBody.BUFFER_SIZE) : outputStream;
+            TarWriter tarWriter = new TarWriter(archive);
+            for (String directory : directories) {
+                tarWriter.writeEmpty(directory, now, DIRECTORY_XATTRS);
+            }
+            for (Entry entry : entries) {
+                tarWriter.writeFile(entryName(entry.item), entry.item.getLocalPath(), entry.size, entry.lastModified,
+                        Collections.emptyMap());
+            }
+            tarWriter.finish();
+            if (gzip) {
+                ((GZIPOutputStream) archive).finish();
+            }
+        });
+        Response response = hubicClient.storage(Operation.UPLOAD, "/default?extract-archive=" + (gzip ? "tar.gz" : "tar"))
+                .header("Accept", "application/json")
+                .json()
+                .put(body);
+        entries.forEach(entry -> hubicClient.invalidate(entry.item.getRemotePath(), null));
+        if (response == null || !response.isSuccess() || !(response.getContent() instanceof JsonObject)) {
+            LOG.warn("Archive extraction unavailable" + (response == null ? "" : " (" + response.getCode() + ")")
+                    + ", uploading " + entries.size() + " files one by one");
+            List<TransferResult> results = new ArrayList<>(entries.size());
+            entries.forEach(entry -> results.add(uploadAlone(entry)));
+            return results;
+        }
+        JsonObject report = (JsonObject) response.getContent();
+        Map<String, Integer> errors = parseErrors(report);
+        int batchCode = BulkReports.statusCode(report.get("Response Status"), response.getCode());
+        long elapsedNanos = System.nanoTime() - start;
+        List<TransferResult> results = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            Integer error = errors.get(entryName(entry.item));
+            // without per-file errors, a failed status (e.g. invalid archive) applies to every file
+            int code = error != null ? error : errors.isEmpty() && (batchCode < 200 || batchCode >= 300) ? batchCode : 201;
+            results.add(new TransferResult(entry.item, new Response(code, response.getHeaders(), null),
+                    code == 201 ? entry.size : 0, elapsedNanos));
+        }
+        return results;
+    }
+
+    private TransferResult uploadAlone(Entry entry) {
+        long start = System.nanoTime();
+        Response response = hubicClient.upload(entry.item.getLocalPath(), entry.item.getRemotePath(), entry.item.getMd5());
+        return new TransferResult(entry.item, response, entry.size, System.nanoTime() - start);
+    }
+
+    /**
+     * @param report e.g. {"Number Files Created": 9, "Errors": [["/default/a.txt", "412 Precondition Failed"]], ...}
+     * @return status code of each entry in error, by entry name
+     */
+    private static Map<String, Integer> parseErrors(JsonObject report) {
+        Map<String, Integer> errors = new HashMap<>();
+        for (Map.Entry<String, Integer> error : BulkReports.parseErrors(report).entrySet()) {
+            String path = error.getKey();
+            while (path.startsWith("/")) {
+                path = path.substring(1);
+            }
+            if (path.startsWith("default/")) {
+                path = path.substring("default/".length());
+            }
+            errors.put(path, error.getValue());
+        }
+        return errors;
+    }
+
+    /**
+     * @return every parent prefix of the targets, parents first, e.g. "Documents", "Documents/backup"
+     */
+    private static List<String> directories(List<TransferItem> items) {
+        TreeSet<String> directories = new TreeSet<>();
+        for (TransferItem item : items) {
+            String name = entryName(item);
+            for (int index = name.indexOf('/'); index > 0; index = name.indexOf('/', index + 1)) {
+                directories.add(name.substring(0, index));
+            }
+        }
+        return new ArrayList<>(directories);
+    }
+
+    private static String entryName(TransferItem item) {
+        String remotePath = item.getRemotePath();
+        int start = 0;
+        while (start < remotePath.length() && remotePath.charAt(start) == '/') {
+            start++;
+        }
+        return remotePath.substring(start);
+    }
+
+    private static final class Entry {
+        private final TransferItem item;
+        private final long size;
+        private final long lastModified;
+
+        private Entry(TransferItem item, long size, long lastModified) {
+            this.item = item;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.adioss.ovh;
+
+import com.adioss.ovh.Instrumentation.Operation;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shapes the bytes sent and received by the requests of a {@link HubicClient}, see
+ * {@link HubicClientConfiguration#bandwidthScheduler(BandwidthScheduler)}. Limits are token buckets applied while
+ * request bodies are written and response bodies are read: a global one per direction and one per {@link Operation}.
+ * <p>
+ * Each operation belongs to a {@link Priority}. {@link Priority#FOREGROUND} requests (metadata operations by default)
+ * never wait for the global limits, their bytes are only charged to them; {@link Priority#BACKGROUND} transfers (uploads
+ * and downloads by default) wait for the global limits and pause while foreground requests are moving bytes, so that
+ * bulk data never delays interactive calls. A foreground request waiting for its response does not pause them.
+ * <p>
+ * Limits and priorities can be changed at any time, from any thread; transfers in progress follow the new values.
+ */
+public final class BandwidthScheduler {
+    // bytes read or written between two checks of the limits
+    private static final int QUANTUM = 16 * 1024;
+    // longest pause of a background transfer for foreground requests, so that its connection never stays idle for long
+    private static final long MAX_PAUSE_MILLIS = 500;
+    // a foreground request counts as moving bytes for this long after it started or last read or wrote a quantum
+    private static final long ACTIVITY_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final TokenBucket sendBucket = new TokenBucket();
+    private final TokenBucket receiveBucket = new TokenBucket();
+    private final Map<Operation, TokenBucket> operationBuckets = new EnumMap<>(Operation.class);
+    private final Map<Operation, Priority> priorities = new EnumMap<>(Operation.class);
+    private final Object foregroundMonitor = new Object();
+    private int foregroundInFlight;
+    private volatile long foregroundActiveUntil = System.nanoTime();
+
+    private BandwidthScheduler() {
+        for (Operation operation : Operation.values()) {
+            operationBuckets.put(operation, new TokenBucket());
+            priorities.put(operation, operation == Operation.UPLOAD || operation == Operation.DOWNLOAD ? Priority.BACKGROUND : Priority.FOREGROUND);
+        }
+    }
+
+    /**
+     * @return a scheduler without any limit, uploads and downloads in {@link Priority#BACKGROUND}
+     */
+    public static BandwidthScheduler createBandwidthScheduler() {
+        return new BandwidthScheduler();
+    }
+
+    /**
+     * @param bytesPerSecond limit of the request bodies sent by background transfers, 0 for none
+     */
+    public BandwidthScheduler sendLimit(long bytesPerSecond) {
+        sendBucket.setRate(checkRate(bytesPerSecond));
+        return this;
+    }
+
+    /**
+     * @param bytesPerSecond limit of the response bodies received by background transfers, 0 for none
+     */
+    public BandwidthScheduler receiveLimit(long bytesPerSecond) {
+        receiveBucket.setRate(checkRate(bytesPerSecond));
+        return this;
+    }
+
+    /**
+     * @param bytesPerSecond limit of the bytes sent and received by the requests of {@code operation}, whatever their
+     *                       priority, 0 for none
+     */
+    public BandwidthScheduler limit(Operation operation, long bytesPerSecond) {
+        operationBuckets.get(operation).setRate(checkRate(bytesPerSecond));
+        return this;
+    }
+
+    public BandwidthScheduler priority(Operation operation, Priority priority) {
+        if (priority == null) {
+            throw new IllegalArgumentException("priority must not be null");
+        }
+        synchronized (priorities) {
+            priorities.put(operation, priority);
+        }
+        return this;
+    }
+
+    public long getSendLimit() {
+        return sendBucket.getRate();
+    }
+
+    public long getReceiveLimit() {
+        return receiveBucket.getRate();
+    }
+
+    public long getLimit(Operation operation) {
+        return operationBuckets.get(operation).getRate();
+    }
+
+    public Priority getPriority(Operation operation) {
+        synchronized (priorities) {
+            return priorities.get(operation);
+        }
+    }
+
+    /**
+     * @return a ticket shaping the bodies of one request of {@code operation}, to close once its response is consumed
+     */
+    Ticket start(Operation operation) {
+        Ticket ticket = new Ticket(operationBuckets.get(operation), getPriority(operation) == Priority.FOREGROUND);
+        if (ticket.foreground) {
+            synchronized (foregroundMonitor) {
+                foregroundInFlight++;
+            }
+            foregroundActiveUntil = System.nanoTime() + ACTIVITY_NANOS;
+        }
+        return ticket;
+    }
+
+    private static long checkRate(long bytesPerSecond) {
+        if (bytesPerSecond < 0) {
+            throw new IllegalArgumentException("bytesPerSecond must not be negative: " + bytesPerSecond);
+        }
+        return bytesPerSecond;
+    }
+
+    /**
+     * Priority class of an {@link Operation}.
+     */
+    public enum Priority {
+        /**
+         * never waits for the global limits nor for other requests
+         */
+        FOREGROUND,
+        /**
+         * waits for the global limits and pauses while foreground requests are moving bytes
+         */
+        BACKGROUND
+    }
+
+    /**
+     * Shaping of the bodies of one request.
+     */
+    final class Ticket implements AutoCloseable {
+        private final TokenBucket operationBucket;
+        private final boolean foreground;
+        private boolean closed;
+
+        private Ticket(TokenBucket operationBucket, boolean foreground) {
+            this.operationBucket = operationBucket;
+            this.foreground = foreground;
+        }
+
+        /**
+         * @return {@code outputStream} written at the pace allowed for the request body
+         */
+        OutputStream sending(OutputStream outputStream) {
+            return new FilterOutputStream(outputStream) {
+                @Override
+                public void write(int b) throws IOException {
+                    acquire(sendBucket, 1);
+                    out.write(b);
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    for (int written = 0; written < length; written += QUANTUM) {
+                        int chunk = Math.min(QUANTUM, length - written);
+                        acquire(sendBucket, chunk);
+                        out.write(bytes, offset + written, chunk);
+                    }
+                }
+            };
+        }
+
+        /**
+         * @return {@code inputStream} of a request body, read at the pace allowed for it
+         */
+        InputStream sending(InputStream inputStream) {
+            return new ShapedInputStream(inputStream, sendBucket);
+        }
+
+        /**
+         * @return {@code inputStream} of a response body, read at the pace allowed for it
+         */
+        InputStream receiving(InputStream inputStream) {
+            return new ShapedInputStream(inputStream, receiveBucket);
+        }
+
+        @Override
+        public void close() {
+            if (foreground && !closed) {
+                synchronized (foregroundMonitor) {
+                    foregroundInFlight--;
+                    foregroundMonitor.notifyAll();
+                }
+            }
+            closed = true;
+        }
+
+        private void acquire(TokenBucket globalBucket, int bytes) throws InterruptedIOException {
+            try {
+                if (foreground) {
+                    foregroundActiveUntil = System.nanoTime() + ACTIVITY_NANOS;
+                    globalBucket.charge(bytes);
+                } else {
+                    awaitForeground();
+                    globalBucket.acquire(bytes);
+                }
+                operationBucket.acquire(bytes);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                InterruptedIOException interruptedIOException = new InterruptedIOException("Transfer interrupted");
+                interruptedIOException.initCause(e);
+                throw interruptedIOException;
+            }
+        }
+
+        /**
+         * Pause while a foreground request is in flight and moved bytes recently: one waiting for the server leaves the
+         * link to background transfers.
+         */
+        private void awaitForeground() throws InterruptedException {
+            synchronized (foregroundMonitor) {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_PAUSE_MILLIS);
+                while (foregroundInFlight > 0) {
+                    long now = System.nanoTime();
+                    long remaining = Math.min(deadline, foregroundActiveUntil) - now;
+                    if (remaining <= 0) {
+                        return;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(foregroundMonitor, remaining);
+                }
+            }
+        }
+
+        private final class ShapedInputStream extends FilterInputStream {
+            private final TokenBucket globalBucket;
+
+            private ShapedInputStream(InputStream inputStream, TokenBucket globalBucket) {
+                super(inputStream);
+                this.globalBucket = globalBucket;
+            }
+
+            @Override
+            public int read() throws IOException {
+                int read = super.read();
+                if (read != -1) {
+                    acquire(globalBucket, 1);
+                }
+                return read;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                int read = super.read(bytes, offset, Math.min(length, QUANTUM));
+                if (read > 0) {
+                    acquire(globalBucket, read);
+                }
+                return read;
+            }
+        }
+    }
+
+    /**
+     * Token bucket holding at most a tenth of a second of traffic. Callers are charged even when the bucket is empty,
+     * then wait until the debt is refilled; a change of rate wakes them up so that they follow it at once.
+     */
+    private static final class TokenBucket {
+        private long rate;
+        private double available;
+        private long updatedAt = System.nanoTime();
+
+        synchronized long getRate() {
+            return rate;
+        }
+
+        synchronized void setRate(long rate) {
+            refill();
+            this.rate = rate;
+            notifyAll();
+        }
+
+        /**
+         * Take {@code bytes} from the bucket without waiting.
+         */
+        synchronized void charge(long bytes) {
+            refill();
+            if (rate > 0) {
+                available -= bytes;
+            }
+        }
+
+        /**
+         * Take {@code bytes} from the bucket and wait until it is no longer in debt.
+         */
+        synchronized void acquire(long bytes) throws InterruptedException {
+            charge(bytes);
+            while (rate > 0 && available < 0) {
+                wait(Math.max(1, (long) Math.ceil(-available * 1000 / rate)));
+                refill();
+            }
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            if (rate == 0) {
+                available = 0;
+            } else {
+                available = Math.min(Math.max(rate / 10.0, QUANTUM), available + (now - updatedAt) * rate / (double) TimeUnit.SECONDS.toNanos(1));
+            }
+            updatedAt = now;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.adioss.ovh;
+
+import com.adioss.ovh.Instrumentation.Operation;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Deletes many objects with the Swift bulk delete operation: paths are sent in batches of at most {@code batchSize}
+ * per "POST ?bulk-delete" request, {@code parallelism} batches at a time. Paths the server could not delete in bulk,
+ * and whole batches if the operation is not available or fails as a whole, fall back to individual
+ * deletes on the same worker pool.
+ * <p>
+ * The manifest of a large object is deleted like any other object, without its segments: reading every path to find
+ * the manifests would cost a request per path. Delete large objects with {@link HubicClient#delete(String)}.
+ */
+public class BulkDelete {
+    /**
+     * Batch size used when the cluster does not publish its "max_deletes_per_request" in "/info".
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final Logger LOG = LoggerFactory.getLogger(BulkDelete.class);
+
+    private final HubicClient hubicClient;
+    private final int parallelism;
+    // 0 until read from the cluster "/info"
+    private volatile int batchSize;
+    private final ThreadFactory threadFactory;
+
+    private BulkDelete(HubicClient hubicClient, int parallelism, int batchSize, ThreadFactory threadFactory) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.hubicClient = hubicClient;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Batches hold the "max_deletes_per_request" of the cluster, read from "/info" on the first delete.
+     */
+    public static BulkDelete createBulkDelete(HubicClient hubicClient, int parallelism) {
+        return new BulkDelete(hubicClient, parallelism, 0, Executors.defaultThreadFactory());
+    }
+
+    /**
+     * Batches hold the "max_deletes_per_request" of the cluster, read from "/info" on the first delete.
+     */
+    public static BulkDelete createBulkDelete(HubicClient hubicClient, int parallelism, ThreadFactory threadFactory) {
+        return new BulkDelete(hubicClient, parallelism, 0, threadFactory);
+    }
+
+    /**
+     * @param batchSize paths per bulk request, at most the "max_deletes_per_request" of the server
+     */
+    public static BulkDelete createBulkDelete(HubicClient hubicClient, int parallelism, int batchSize, ThreadFactory threadFactory) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        return new BulkDelete(hubicClient, parallelism, batchSize, threadFactory);
+    }
+
+    /**
+     * Delete every path of {@code paths}, e.g. {@code hubicClient.streamObjects("Backups/2015/").map(o -> "/" + o.getName())}.
+     * The stream is consumed batch by batch while the previous batches are sent, at most {@code parallelism} batches
+     * being held at a time, so that a sweep of any size runs in bounded memory besides its result.
+     *
+     * @param paths of the elements to delete, e.g. "/Documents/titi/README.md"
+     * @return a {@link BulkDeleteResult}
+     */
+    public BulkDeleteResult delete(Stream<String> paths) {
+        long start = System.nanoTime();
+        int pathsPerBatch = getBatchSize();
+        Map<String, Integer> statuses = new LinkedHashMap<>();
+        ExecutorService executorService = Executors.newFixedThreadPool(parallelism, threadFactory);
+        try {
+            // at most parallelism batches read ahead of the requests, whatever the length of the stream
+            Semaphore inFlight = new Semaphore(parallelism);
+            Iterator<String> iterator = paths.iterator();
+            while (iterator.hasNext()) {
+                List<String> batch = new ArrayList<>(Math.min(pathsPerBatch, 1024));
+                while (batch.size() < pathsPerBatch && iterator.hasNext()) {
+                    batch.add(iterator.next());
+                }
+                inFlight.acquire();
+                executorService.execute(() -> {
+                    Map<String, Integer> batchStatuses = null;
+                    try {
+                        batchStatuses = deleteBatch(executorService, batch);
+                    } catch (RuntimeException e) {
+                        LOG.warn("Bulk delete batch failed", e);
+                    } finally {
+                        synchronized (statuses) {
+                            if (batchStatuses != null) {
+                                statuses.putAll(batchStatuses);
+                            } else {
+                                batch.forEach(path -> statuses.put(path, -1));
+                            }
+                        }
+                        inFlight.release();
+                    }
+                });
+            }
+            inFlight.acquire(parallelism);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executorService.shutdownNow();
+        }
+        synchronized (statuses) {
+            // batches still running after an interruption must not change the result
+            return new BulkDeleteResult(new LinkedHashMap<>(statuses), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * curl -H "X-Auth-Token: YOUR_AUTH_TOKEN" -H "Content-Type: text/plain" -H "Accept: application/json" --data-binary $'/default/Documents/a.txt\n/default/Documents/b.txt' "ENDPOINT_URL?bulk-delete" -i -X POST
+     *
+     * @return the status of each path of {@code batch}: 204 when deleted (or already absent), the error reported by
+     * the server otherwise
+     */
+    private Map<String, Integer> deleteBatch(ExecutorService executorService, List<String> batch) {
+        StringBuilder body = new StringBuilder();
+        for (String path : batch) {
+            body.append("/default").append(encodePath(path)).append('\n');
+        }
+        Response response = hubicClient.storage(Operation.DELETE, "?bulk-delete")
+                .header("Content-Type", "text/plain")
+                .header("Accept", "application/json")
+                .json()
+                .post(body.toString().getBytes(StandardCharsets.UTF_8));
+        if (response == null || response.getCode() != 200 || !(response.getContent() instanceof JsonObject)) {
+            LOG.warn("Bulk delete unavailable" + (response == null ? "" : " (" + response.getCode() + ")") + ", deleting "
+                    + batch.size() + " paths one by one");
+            return deleteEach(executorService, batch);
+        }
+        JsonObject report = (JsonObject) response.getContent();
+        Map<String, Integer> errors = BulkReports.parseErrors(report);
+        // the HTTP status is always 200, the outcome is in the body: only a 400 lists the paths in error, any other
+        // failure (413 too many paths, 401, 5xx...) may have deleted nothing
+        int batchCode = BulkReports.statusCode(report.get("Response Status"), response.getCode());
+        if ((batchCode < 200 || batchCode >= 300) && (batchCode != 400 || errors.isEmpty())) {
+            LOG.warn("Bulk delete failed (" + batchCode + "), deleting " + batch.size() + " paths one by one");
+            batch.forEach(path -> hubicClient.invalidate(path, null));
+            return deleteEach(executorService, batch);
+        }
+        Map<String, Integer> statuses = new LinkedHashMap<>();
+        List<String> failed = new ArrayList<>();
+        for (String path : batch) {
+            hubicClient.invalidate(path, null);
+            if (errors.containsKey("/default" + path)) {
+                failed.add(path);
+            } else {
+                statuses.put(path, 204);
+            }
+        }
+        if (!failed.isEmpty()) {
+            LOG.warn(failed.size() + " paths could not be deleted in bulk, deleting them one by one");
+            statuses.putAll(deleteEach(executorService, failed));
+        }
+        return statuses;
+    }
+
+    /**
+     * Fallback: individual deletes submitted to {@code executorService}. The caller is one of its workers, so a delete
+     * not started yet is run by the caller rather than waited for: a pool busy with batches could never start it.
+     */
+    private Map<String, Integer> deleteEach(ExecutorService executorService, List<String> paths) {
+        List<AtomicBoolean> claims = new ArrayList<>(paths.size());
+        List<Future<Response>> futures = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            AtomicBoolean claim = new AtomicBoolean();
+            claims.add(claim);
+            futures.add(executorService.submit(() -> claim.compareAndSet(false, true) ? hubicClient.deleteWithoutSegments(path) : null));
+        }
+        Map<String, Integer> statuses = new LinkedHashMap<>();
+        for (int i = 0; i < paths.size(); i++) {
+            Response response = null;
+            try {
+                response = claims.get(i).compareAndSet(false, true) ? hubicClient.deleteWithoutSegments(paths.get(i)) : futures.get(i).get();
+            } catch (ExecutionException e) {
+                LOG.warn("Delete of " + paths.get(i) + " failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            statuses.put(paths.get(i), response == null ? -1 : response.getCode());
+        }
+        return statuses;
+    }
+
+    /**
+     * curl https://lb1.hubic.ovh.net/info -i -X GET
+     *
+     * @return the batch size given at creation, or the "max_deletes_per_request" of the cluster
+     */
+    private int getBatchSize() {
+        if (batchSize == 0) {
+            int maxDeletes = DEFAULT_BATCH_SIZE;
+            Response info = hubicClient.clusterInfo();
+            if (info != null && info.isSuccess() && info.getContent() instanceof JsonObject) {
+                JsonElement bulkDelete = ((JsonObject) info.getContent()).get("bulk_delete");
+                if (bulkDelete != null && bulkDelete.isJsonObject() && bulkDelete.getAsJsonObject().has("max_deletes_per_request")) {
+                    maxDeletes = Math.max(1, bulkDelete.getAsJsonObject().get("max_deletes_per_request").getAsInt());
+                }
+            } else {
+                LOG.debug("No cluster info, " + DEFAULT_BATCH_SIZE + " paths per bulk delete");
+            }
+            batchSize = maxDeletes;
+        }
+        return batchSize;
+    }
+
+    private static String encodePath(String path) {
+        StringBuilder encoded = new StringBuilder();
+        for (String element : path.split("/", -1)) {
+            if (encoded.length() > 0 || !element.isEmpty()) {
+                encoded.append('/').append(HubicClient.encode(element));
+            }
+        }
+        return encoded.toString();
+    }
+}
@@ -0,0 +1,65 @@
+package com.adioss.ovh;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a {@link BulkDelete} run: the status of each path.
+ */
+public final class BulkDeleteResult {
+    private final Map<String, Integer> statuses;
+    private final long elapsedNanos;
+
+    BulkDeleteResult(Map<String, Integer> statuses, long elapsedNanos) {
+        this.statuses = Collections.unmodifiableMap(statuses);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return status code of each path: 204 when deleted in bulk (the bulk operation does not tell the paths already
+     * absent), the code of the individual DELETE for the fallbacks, -1 if the request could not be sent
+     */
+    public Map<String, Integer> getStatuses() {
+        return statuses;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return number of paths deleted or already absent
+     */
+    public int getDeleted() {
+        return statuses.size() - getFailed().size();
+    }
+
+    /**
+     * @return paths that still exist, or could not be checked
+     */
+    public List<String> getFailed() {
+        List<String> failed = new ArrayList<>();
+        for (Map.Entry<String, Integer> status : statuses.entrySet()) {
+            if (!isDeleted(status.getValue())) {
+                failed.add(status.getKey());
+            }
+        }
+        return failed;
+    }
+
+    public double getPathsPerSecond() {
+        return elapsedNanos == 0 ? 0 : getDeleted() * 1_000_000_000d / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d deleted, %d failed in %d ms (%.1f paths/s)",
+                getDeleted(), getFailed().size(), elapsedNanos / 1_000_000, getPathsPerSecond());
+    }
+
+    static boolean isDeleted(int code) {
+        return (code >= 200 && code < 300) || code == 404;
+    }
+}
@@ -0,0 +1,49 @@
+package com.adioss.ovh;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Helpers reading the JSON report of the Swift bulk middleware, answered to "?bulk-delete" and "?extract-archive".
+ */
+final class BulkReports {
+    private BulkReports() {
+    }
+
+    /**
+     * @param report e.g. {"Number Deleted": 1, "Errors": [["/default/a", "409 Conflict"]], "Response Status": "400 Bad Request", ...}
+     * @return status code of each path in error, by decoded path, e.g. "/default/a"
+     */
+    static Map<String, Integer> parseErrors(JsonObject report) {
+        Map<String, Integer> errors = new HashMap<>();
+        JsonElement errorList = report.get("Errors");
+        if (errorList != null && errorList.isJsonArray()) {
+            for (JsonElement error : (JsonArray) errorList) {
+                JsonArray pathAndStatus = error.getAsJsonArray();
+                errors.put(HubicClient.decode(pathAndStatus.get(0).getAsString()), statusCode(pathAndStatus.get(1), -1));
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * @param status e.g. "400 Bad Request"
+     * @return the code of {@code status}, {@code defaultCode} if it is missing or unreadable
+     */
+    static int statusCode(JsonElement status, int defaultCode) {
+        if (status == null || status.isJsonNull()) {
+            return defaultCode;
+        }
+        String value = status.getAsString().trim();
+        int space = value.indexOf(' ');
+        try {
+            return Integer.parseInt(space < 0 ? value : value.substring(0, space));
+        } catch (NumberFormatException e) {
+            return defaultCode;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.adioss.ovh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs many {@link HubicClient#upload(Path, String)}/{@link HubicClient#download(String, Path)} calls on a bounded
+ * worker pool. Each run uses its own pool of {@code parallelism} threads created by the given {@link ThreadFactory}, so
+ * callers on a recent JDK can pass a virtual thread factory ({@code Thread.ofVirtual().factory()}).
+ */
+public class BulkTransfer {
+    private static final Logger LOG = LoggerFactory.getLogger(BulkTransfer.class);
+
+    private final HubicClient hubicClient;
+    private final int parallelism;
+    private final ThreadFactory threadFactory;
+
+    private BulkTransfer(HubicClient hubicClient, int parallelism, ThreadFactory threadFactory) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.hubicClient = hubicClient;
+        this.parallelism = parallelism;
+        this.threadFactory = threadFactory;
+    }
+
+    public static BulkTransfer createBulkTransfer(HubicClient hubicClient, int parallelism) {
+        return new BulkTransfer(hubicClient, parallelism, Executors.defaultThreadFactory());
+    }
+
+    public static BulkTransfer createBulkTransfer(HubicClient hubicClient, int parallelism, ThreadFactory threadFactory) {
+        return new BulkTransfer(hubicClient, parallelism, threadFactory);
+    }
+
+    /**
+     * Upload every regular file under {@code localRoot} to {@code targetRoot}, keeping the relative layout.
+     *
+     * @param localRoot  local directory to upload
+     * @param targetRoot remote directory, e.g. "/Documents/backup"
+     * @return a {@link BulkTransferResult}
+     */
+    public BulkTransferResult uploadTree(Path localRoot, String targetRoot) {
+        List<TransferItem> items;
+        try (Stream<Path> files = Files.walk(localRoot)) {
+            items = files.filter(Files::isRegularFile)
+                    .map(file -> TransferItem.of(file, toRemotePath(targetRoot, localRoot.relativize(file))))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossible to walk " + localRoot, e);
+        }
+        return upload(items);
+    }
+
+    /**
+     * Upload each {@link TransferItem#getLocalPath()} to its {@link TransferItem#getRemotePath()}. Missing intermediate
+     * remote directories are created first, once per prefix; the items under a directory which could not be created
+     * are not uploaded and fail with the response of its creation.
+     *
+     * @param items files to upload
+     * @return a {@link BulkTransferResult}
+     */
+    public BulkTransferResult upload(List<TransferItem> items) {
+        long start = System.nanoTime();
+        ExecutorService executorService = Executors.newFixedThreadPool(parallelism, threadFactory);
+        try {
+            Map<String, Response> failedDirectories = createDirectories(executorService, items);
+            List<Future<TransferResult>> futures = new ArrayList<>(items.size());
+            for (TransferItem item : items) {
+                String failedDirectory = failedDirectory(failedDirectories, item.getRemotePath());
+                if (failedDirectory != null) {
+                    LOG.warn("Not uploading " + item.getRemotePath() + ": directory " + failedDirectory + " could not be created");
+                    futures.add(CompletableFuture.completedFuture(new TransferResult(item, failedDirectories.get(failedDirectory), 0, 0)));
+                    continue;
+                }
+                futures.add(executorService.submit(() -> {
+                    long itemStart = System.nanoTime();
+                    Response response = hubicClient.upload(item.getLocalPath(), item.getRemotePath(), item.getMd5());
+                    return new TransferResult(item, response, Files.size(item.getLocalPath()), System.nanoTime() - itemStart);
+                }));
+            }
+            return new BulkTransferResult(collect(items, futures), System.nanoTime() - start);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Download each {@link TransferItem#getRemotePath()} to its {@link TransferItem#getLocalPath()}, creating local
+     * parent directories as needed.
+     *
+     * @param items files to download
+     * @return a {@link BulkTransferResult}
+     */
+    public BulkTransferResult download(List<TransferItem> items) {
+        long start = System.nanoTime();
+        ExecutorService executorService = Executors.newFixedThreadPool(parallelism, threadFactory);
+        try {
+            List<Future<TransferResult>> futures = new ArrayList<>(items.size());
+            for (TransferItem item : items) {
+                futures.add(executorService.submit(() -> {
+                    long itemStart = System.nanoTime();
+                    Path parent = item.getLocalPath().toAbsolutePath().getParent();
+                    if (parent != null) {
+                        Files.createDirectories(parent);
+                    }
+                    Response response = hubicClient.download(item.getRemotePath(), item.getLocalPath());
+                    long bytes = Files.exists(item.getLocalPath()) ? Files.size(item.getLocalPath()) : 0;
+                    return new TransferResult(item, response, bytes, System.nanoTime() - itemStart);
+                }));
+            }
+            return new BulkTransferResult(collect(items, futures), System.nanoTime() - start);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Create all the parent prefixes of the targets, level by level so that a parent always exists before its children.
+     * The children of a directory which could not be created are not attempted.
+     *
+     * @return the response (null if none) of each prefix which could not be created, by prefix
+     */
+    private Map<String, Response> createDirectories(ExecutorService executorService, List<TransferItem> items) {
+        Map<Integer, Set<String>> prefixesByDepth = new TreeMap<>();
+        for (TransferItem item : items) {
+            String remotePath = item.getRemotePath();
+            int depth = 0;
+            for (int index = remotePath.indexOf('/', 1); index > 0; index = remotePath.indexOf('/', index + 1)) {
+                prefixesByDepth.computeIfAbsent(depth++, key -> new TreeSet<>()).add(remotePath.substring(0, index));
+            }
+        }
+        Map<String, Response> failed = new HashMap<>();
+        for (Set<String> prefixes : prefixesByDepth.values()) {
+            Map<String, Future<Response>> futures = new LinkedHashMap<>();
+            for (String prefix : prefixes) {
+                if (failedDirectory(failed, prefix) == null) {
+                    futures.put(prefix, executorService.submit(() -> hubicClient.createDirectory(prefix)));
+                }
+            }
+            for (Map.Entry<String, Future<Response>> future : futures.entrySet()) {
+                Response response = null;
+                try {
+                    response = future.getValue().get();
+                } catch (ExecutionException e) {
+                    LOG.warn("Impossible to create directory " + future.getKey(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return failed;
+                }
+                if (response == null || !response.isSuccess()) {
+                    LOG.warn("Impossible to create directory " + future.getKey() + (response == null ? "" : ": " + response.getCode()));
+                    failed.put(future.getKey(), response);
+                }
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * @return the prefix of {@code failedDirectories} which is a parent of {@code remotePath}, null if none
+     */
+    private static String failedDirectory(Map<String, Response> failedDirectories, String remotePath) {
+        for (String directory : failedDirectories.keySet()) {
+            if (remotePath.startsWith(directory + "/")) {
+                return directory;
+            }
+        }
+        return null;
+    }
+
+    private static List<TransferResult> collect(List<TransferItem> items, List<Future<TransferResult>> futures) {
+        List<TransferResult> results = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                LOG.warn("Transfer of " + items.get(i) + " failed", e.getCause());
+                results.add(new TransferResult(items.get(i), null, 0, 0));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(new TransferResult(items.get(i), null, 0, 0));
+            }
+        }
+        return results;
+    }
+
+    private static String toRemotePath(String targetRoot, Path relativePath) {
+        StringBuilder remotePath = new StringBuilder(targetRoot.endsWith("/") ? targetRoot.substring(0, targetRoot.length() - 1) : targetRoot);
+        for (Path element : relativePath) {
+            remotePath.append('/').append(element.toString());
+        }
+        return remotePath.toString();
+    }
+}
@@ -0,0 +1,66 @@
+package com.adioss.ovh;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Aggregated outcome of a {@link BulkTransfer} run: per-file results plus throughput figures.
+ */
+public final class BulkTransferResult {
+    private final List<TransferResult> results;
+    private final long elapsedNanos;
+
+    BulkTransferResult(List<TransferResult> results, long elapsedNanos) {
+        this.results = Collections.unmodifiableList(results);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public List<TransferResult> getResults() {
+        return results;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public int getSucceeded() {
+        int succeeded = 0;
+        for (TransferResult result : results) {
+            if (result.isSuccess()) {
+                succeeded++;
+            }
+        }
+        return succeeded;
+    }
+
+    public int getFailed() {
+        return results.size() - getSucceeded();
+    }
+
+    /**
+     * @return number of bytes of the successful transfers
+     */
+    public long getBytes() {
+        long bytes = 0;
+        for (TransferResult result : results) {
+            if (result.isSuccess()) {
+                bytes += result.getBytes();
+            }
+        }
+        return bytes;
+    }
+
+    public double getBytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : getBytes() * 1_000_000_000d / elapsedNanos;
+    }
+
+    public double getFilesPerSecond() {
+        return elapsedNanos == 0 ? 0 : getSucceeded() * 1_000_000_000d / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d succeeded, %d failed, %d bytes in %d ms (%.1f files/s, %.1f KB/s)",
+                getSucceeded(), getFailed(), getBytes(), elapsedNanos / 1_000_000, getFilesPerSecond(), getBytesPerSecond() / 1024);
+    }
+}
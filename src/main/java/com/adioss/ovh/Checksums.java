@@ -0,0 +1,52 @@
+package com.adioss.ovh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * MD5 helpers, the digest Swift uses for object ETags and listing hashes.
+ */
+final class Checksums {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Checksums() {
+    }
+
+    static MessageDigest newMd5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is required on every JVM", e);
+        }
+    }
+
+    /**
+     * @return lower case hexadecimal MD5 of the content of {@code path}
+     */
+    static String md5(Path path) throws IOException {
+        MessageDigest md5 = newMd5();
+        ByteBuffer buffer = ByteBuffer.allocate(RequestBody.BUFFER_SIZE);
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (fileChannel.read(buffer) != -1) {
+                buffer.flip();
+                md5.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHex(md5.digest());
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,117 @@
+package com.adioss.ovh;
+
+import com.adioss.ovh.HubicClientConfiguration.Codec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression of object bodies while they are streamed. The codec of a compressed object is recorded in its metadata
+ * ({@link #CODEC_HEADER}) so that downloads restore the original bytes; the stored ETag is the MD5 of the compressed
+ * bytes, the MD5 of the original file is kept in {@link #ORIGINAL_MD5_HEADER}.
+ */
+final class Compression {
+    private static final Logger LOG = LoggerFactory.getLogger(Compression.class);
+    static final String CODEC_HEADER = "X-Object-Meta-Codec";
+    static final String ORIGINAL_MD5_HEADER = "X-Object-Meta-Original-Md5";
+
+    private Compression() {
+    }
+
+    /**
+     * @return a body of unknown length compressing {@code source} while it is sent; compressing again the same file with
+     * the same level gives the same bytes, so the body can be replayed by a retry
+     */
+    static RequestBody compressing(Path source, Codec codec, int level) {
+        return RequestBody.ofWriter(-1, outputStream -> {
+            // the transport closes its own stream: only finish the compressed one and release the native deflater
+            Deflater deflater;
+            DeflaterOutputStream compressed;
+            if (codec == Codec.GZIP) {
+                LeveledGzipOutputStream gzip = new LeveledGzipOutputStream(outputStream, level);
+                deflater = gzip.getDeflater();
+                compressed = gzip;
+            } else {
+                deflater = new Deflater(level);
+                compressed = new DeflaterOutputStream(outputStream, deflater, RequestBody.BUFFER_SIZE);
+            }
+            try {
+                Files.copy(source, compressed);
+                compressed.finish();
+            } finally {
+                deflater.end();
+            }
+        });
+    }
+
+    /**
+     * @param headers of the response, whose {@link #CODEC_HEADER} tells how the body was compressed
+     * @return {@code inputStream} decompressed, or itself when the object was stored as is or with an unknown codec
+     */
+    static InputStream decompressing(InputStream inputStream, Map<String, List<String>> headers) throws IOException {
+        Codec codec = codecOf(Response.firstHeader(headers, CODEC_HEADER));
+        if (codec == Codec.GZIP) {
+            return new GZIPInputStream(inputStream, RequestBody.BUFFER_SIZE);
+        } else if (codec == Codec.DEFLATE) {
+            return new InflaterInputStream(inputStream, new Inflater(), RequestBody.BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inf.end();
+                    }
+                }
+            };
+        }
+        return inputStream;
+    }
+
+    /**
+     * @return true when {@code response} describes an object stored with a codec
+     */
+    static boolean isCompressed(Response response) {
+        return codecOf(response.getHeader(CODEC_HEADER)) != Codec.NONE;
+    }
+
+    private static Codec codecOf(String name) {
+        if (name == null) {
+            return Codec.NONE;
+        }
+        for (Codec codec : Codec.values()) {
+            if (codec != Codec.NONE && codec.getName().equalsIgnoreCase(name)) {
+                return codec;
+            }
+        }
+        LOG.warn("Unknown codec " + name + ", body kept as is");
+        return Codec.NONE;
+    }
+
+    /**
+     * {@link GZIPOutputStream} compressing at a chosen level.
+     */
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+        private LeveledGzipOutputStream(OutputStream outputStream, int level) throws IOException {
+            super(outputStream, RequestBody.BUFFER_SIZE);
+            // nothing is compressed yet: the level applies to the whole stream
+            def.setLevel(level);
+        }
+
+        private Deflater getDeflater() {
+            return def;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.adioss.ovh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Properties;
+
+/**
+ * Local file keeping the refresh token, the access token and the Swift credentials with their expiry, so that a new
+ * {@link HubicClient} can start without the authorization code and without any OAuth round trip while they are valid.
+ * The file is readable by its owner only (on POSIX file systems) and replaced atomically on each save.
+ */
+final class CredentialStore {
+    private static final Logger LOG = LoggerFactory.getLogger(CredentialStore.class);
+    private static final String CLIENT_ID = "client_id";
+    private static final String ACCESS_TOKEN = "access_token";
+    private static final String ACCESS_TOKEN_EXPIRES_AT = "access_token_expires_at";
+    private static final String REFRESH_TOKEN = "refresh_token";
+    private static final String SWIFT_TOKEN = "swift_token";
+    private static final String SWIFT_ENDPOINT = "swift_endpoint";
+    private static final String SWIFT_EXPIRES_AT = "swift_expires_at";
+
+    private final Path path;
+
+    CredentialStore(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * @return the stored access token of {@code clientId}, null if none
+     */
+    AccessToken loadAccessToken(String clientId) {
+        Properties properties = load(clientId);
+        if (properties == null || properties.getProperty(REFRESH_TOKEN) == null) {
+            return null;
+        }
+        return new AccessToken(properties.getProperty(ACCESS_TOKEN),
+                Long.parseLong(properties.getProperty(ACCESS_TOKEN_EXPIRES_AT, "0")),
+                properties.getProperty(REFRESH_TOKEN));
+    }
+
+    /**
+     * @return the stored Swift credentials of {@code clientId}, null if none
+     */
+    SwiftCredentials loadSwiftCredentials(String clientId) {
+        Properties properties = load(clientId);
+        if (properties == null || properties.getProperty(SWIFT_TOKEN) == null || properties.getProperty(SWIFT_ENDPOINT) == null) {
+            return null;
+        }
+        return new SwiftCredentials(properties.getProperty(SWIFT_TOKEN),
+                properties.getProperty(SWIFT_ENDPOINT),
+                Long.parseLong(properties.getProperty(SWIFT_EXPIRES_AT, "0")));
+    }
+
+    synchronized void save(String clientId, AccessToken accessToken, SwiftCredentials credentials) {
+        Properties properties = new Properties();
+        properties.setProperty(CLIENT_ID, clientId);
+        properties.setProperty(ACCESS_TOKEN, accessToken.getAccessToken());
+        properties.setProperty(ACCESS_TOKEN_EXPIRES_AT, Long.toString(accessToken.getExpiresAt()));
+        properties.setProperty(REFRESH_TOKEN, accessToken.getRefreshToken());
+        if (credentials != null) {
+            properties.setProperty(SWIFT_TOKEN, credentials.getToken());
+            properties.setProperty(SWIFT_ENDPOINT, credentials.getEndpoint());
+            properties.setProperty(SWIFT_EXPIRES_AT, Long.toString(credentials.getExpiresAt()));
+        }
+        try {
+            Path directory = path.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp", ownerOnly(directory));
+            try (OutputStream outputStream = Files.newOutputStream(temporary)) {
+                properties.store(outputStream, "hubiC credentials, keep private");
+            }
+            try {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LOG.warn("Impossible to save credentials to " + path, e);
+        }
+    }
+
+    private Properties load(String clientId) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            properties.load(inputStream);
+        } catch (IOException e) {
+            LOG.warn("Impossible to read credentials from " + path, e);
+            return null;
+        }
+        return clientId.equals(properties.getProperty(CLIENT_ID)) ? properties : null;
+    }
+
+    private static FileAttribute<?>[] ownerOnly(Path directory) {
+        if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return new FileAttribute<?>[]{PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"))};
+        }
+        return new FileAttribute<?>[0];
+    }
+}
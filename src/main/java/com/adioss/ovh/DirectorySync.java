@@ -0,0 +1,322 @@
+package com.adioss.ovh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Mirror a local directory to a remote one, transferring only the differences. The remote side is known from a single
+ * parallel listing (see {@link TreeWalker}) whose hashes are compared to the local MD5s; the local side is described by
+ * a {@link SyncIndex} so that files whose size and modification time did not change since the previous run are neither
+ * hashed again nor checked with a HEAD. Remote objects without a local counterpart are deleted, except those under a
+ * local path which could not be read: such paths are reported as failures.
+ */
+public class DirectorySync {
+    /**
+     * Default name of the index file, in the local root and never synchronized.
+     */
+    public static final String INDEX_FILE_NAME = ".hubic-sync.index";
+    private static final Logger LOG = LoggerFactory.getLogger(DirectorySync.class);
+
+    private final HubicClient hubicClient;
+    private final int parallelism;
+    private final ThreadFactory threadFactory;
+
+    private DirectorySync(HubicClient hubicClient, int parallelism, ThreadFactory threadFactory) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.hubicClient = hubicClient;
+        this.parallelism = parallelism;
+        this.threadFactory = threadFactory;
+    }
+
+    public static DirectorySync createDirectorySync(HubicClient hubicClient, int parallelism) {
+        return new DirectorySync(hubicClient, parallelism, Executors.defaultThreadFactory());
+    }
+
+    public static DirectorySync createDirectorySync(HubicClient hubicClient, int parallelism, ThreadFactory threadFactory) {
+        return new DirectorySync(hubicClient, parallelism, threadFactory);
+    }
+
+    /**
+     * Synchronize {@code localRoot} to {@code remoteRoot}, with the index kept in {@code localRoot}.
+     *
+     * @see #sync(Path, String, Path)
+     */
+    public SyncResult sync(Path localRoot, String remoteRoot) {
+        return sync(localRoot, remoteRoot, localRoot.resolve(INDEX_FILE_NAME));
+    }
+
+    /**
+     * Upload the new and modified files of {@code localRoot} to {@code remoteRoot} and delete the remote objects that
+     * no longer exist locally.
+     *
+     * @param localRoot  local directory to mirror
+     * @param remoteRoot remote directory, e.g. "/Documents/backup"
+     * @param indexPath  index of the previous run, created if missing and rewritten at the end of the run
+     * @return a {@link SyncResult}
+     * @throws UncheckedIOException if the local tree cannot be walked or the remote one cannot be listed
+     */
+    public SyncResult sync(Path localRoot, String remoteRoot, Path indexPath) {
+        long start = System.nanoTime();
+        String root = HubicClient.trimSlashes(remoteRoot);
+        SyncIndex previousIndex;
+        try {
+            previousIndex = SyncIndex.load(indexPath);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Impossible to read sync index " + indexPath + ", every file will be hashed", e);
+            previousIndex = SyncIndex.empty();
+        }
+        LocalTree localTree = walkLocal(localRoot, indexPath);
+        Map<String, StorageObject> remoteObjects = listRemote(root.isEmpty() ? "" : root + "/");
+
+        SyncIndex index = SyncIndex.empty();
+        List<String> failures = new ArrayList<>(localTree.failed);
+        Map<String, SyncIndex.Entry> toUpload = new HashMap<>();
+        int unchanged = 0;
+        int hashed = 0;
+        ExecutorService executorService = Executors.newFixedThreadPool(parallelism, threadFactory);
+        try {
+            Map<String, Future<String>> hashes = new HashMap<>();
+            for (Map.Entry<String, BasicFileAttributes> file : localTree.files.entrySet()) {
+                String relativePath = file.getKey();
+                BasicFileAttributes attributes = file.getValue();
+                long lastModified = attributes.lastModifiedTime().toMillis();
+                SyncIndex.Entry previous = previousIndex.get(relativePath);
+                StorageObject remote = remoteObjects.get(relativePath);
+                if (previous == null || previous.getSize() != attributes.size() || previous.getLastModified() != lastModified) {
+                    Path localPath = localRoot.resolve(relativePath);
+                    hashes.put(relativePath, executorService.submit(() -> Checksums.md5(localPath)));
+                } else if (remote != null && previous.matches(remote.getHash())) {
+                    index.put(relativePath, previous);
+                    unchanged++;
+                } else {
+                    toUpload.put(relativePath, previous);
+                }
+            }
+            for (Map.Entry<String, Future<String>> hash : hashes.entrySet()) {
+                String relativePath = hash.getKey();
+                BasicFileAttributes attributes = localTree.files.get(relativePath);
+                String md5 = get(hash.getValue(), relativePath);
+                if (md5 == null) {
+                    failures.add(relativePath);
+                    continue;
+                }
+                hashed++;
+                StorageObject remote = remoteObjects.get(relativePath);
+                SyncIndex.Entry entry = new SyncIndex.Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), md5,
+                        remote == null ? null : remote.getHash());
+                if (remote != null && isStoredAs(remote, localRoot.resolve(relativePath), md5, attributes.size())) {
+                    index.put(relativePath, entry);
+                    unchanged++;
+                } else {
+                    toUpload.put(relativePath, entry);
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        BulkTransferResult uploads = upload(localRoot, root, toUpload, index);
+        List<String> deleted = new ArrayList<>();
+        for (String relativePath : remoteObjects.keySet()) {
+            StorageObject remote = remoteObjects.get(relativePath);
+            boolean keep = remote.isDirectory() ? localTree.directories.contains(relativePath) : localTree.files.containsKey(relativePath);
+            keep = keep || localTree.isUnderFailed(relativePath);
+            if (!keep) {
+                deleted.add("/" + remote.getName());
+            }
+        }
+        deleted = delete(deleted, failures);
+        try {
+            index.save(indexPath);
+        } catch (IOException e) {
+            LOG.warn("Impossible to save sync index " + indexPath, e);
+        }
+        return new SyncResult(uploads, deleted, failures, unchanged, hashed, System.nanoTime() - start);
+    }
+
+    private BulkTransferResult upload(Path localRoot, String root, Map<String, SyncIndex.Entry> toUpload, SyncIndex index) {
+        List<TransferItem> items = new ArrayList<>(toUpload.size());
+        for (String relativePath : toUpload.keySet()) {
+            items.add(TransferItem.of(localRoot.resolve(relativePath), (root.isEmpty() ? "" : "/" + root) + "/" + relativePath,
+                    toUpload.get(relativePath).getMd5()));
+        }
+        BulkTransferResult uploads = BulkTransfer.createBulkTransfer(hubicClient, parallelism, threadFactory).upload(items);
+        String remotePrefix = root.isEmpty() ? "/" : "/" + root + "/";
+        for (TransferResult result : uploads.getResults()) {
+            if (result.isSuccess()) {
+                String relativePath = result.getItem().getRemotePath().substring(remotePrefix.length());
+                SyncIndex.Entry entry = toUpload.get(relativePath);
+                index.put(relativePath, new SyncIndex.Entry(entry.getSize(), entry.getLastModified(), entry.getMd5(),
+                        SegmentedUpload.unquote(result.getResponse().getHeader("ETag"))));
+            }
+        }
+        return uploads;
+    }
+
+    /**
+     * A plain object is identical when its listed hash and size are those of the file. Objects uploaded as segments or
+     * compressed are listed with the hash of their manifest or of their compressed bytes: their headers are read to
+     * compare the ETag of the manifest, or the original MD5, instead.
+     */
+    private boolean isStoredAs(StorageObject remote, Path localPath, String md5, long size) {
+        if (md5.equalsIgnoreCase(remote.getHash()) && remote.getBytes() == size) {
+            return true;
+        }
+        HubicClientConfiguration configuration = hubicClient.getConfiguration();
+        if (remote.getBytes() == size && size <= configuration.getSegmentThreshold()) {
+            // same size but another hash: neither compressed nor segmented, the content changed
+            return false;
+        }
+        Response head = hubicClient.getInfo("/" + remote.getName());
+        if (head == null || !head.isSuccess()) {
+            return false;
+        }
+        if (md5.equalsIgnoreCase(head.getHeader(Compression.ORIGINAL_MD5_HEADER))) {
+            return true;
+        }
+        if (head.getHeader("X-Object-Manifest") == null && !"true".equalsIgnoreCase(head.getHeader("X-Static-Large-Object"))) {
+            return false;
+        }
+        try {
+            return RangedDownload.contentLength(head) == size
+                    && SegmentedUpload.manifestEtag(localPath, configuration.getSegmentSize()).equalsIgnoreCase(SegmentedUpload.unquote(head.getHeader("ETag")));
+        } catch (IOException e) {
+            LOG.warn("Impossible to read " + localPath, e);
+            return false;
+        }
+    }
+
+    /**
+     * @return the paths actually deleted, the others being added to {@code failures}
+     */
+    private List<String> delete(List<String> paths, List<String> failures) {
+        List<String> deleted = new ArrayList<>(paths.size());
+        if (paths.isEmpty()) {
+            return deleted;
+        }
+        BulkDeleteResult result = BulkDelete.createBulkDelete(hubicClient, parallelism, threadFactory)
+                .delete(paths.stream());
+        for (Map.Entry<String, Integer> status : result.getStatuses().entrySet()) {
+            if (BulkDeleteResult.isDeleted(status.getValue())) {
+                deleted.add(status.getKey());
+            } else {
+                failures.add(status.getKey());
+            }
+        }
+        return deleted;
+    }
+
+    private Map<String, StorageObject> listRemote(String prefix) {
+        Map<String, StorageObject> remoteObjects = new ConcurrentHashMap<>();
+        TreeWalker.createTreeWalker(hubicClient, parallelism, threadFactory)
+                .walk(prefix, storageObject -> remoteObjects.put(storageObject.getName().substring(prefix.length()), storageObject));
+        return remoteObjects;
+    }
+
+    private static LocalTree walkLocal(Path localRoot, Path indexPath) {
+        LocalTree localTree = new LocalTree();
+        Path excluded = indexPath.toAbsolutePath().normalize();
+        try {
+            Files.walkFileTree(localRoot, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                    if (!directory.equals(localRoot)) {
+                        localTree.directories.add(toRelativePath(localRoot, directory));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (attributes.isRegularFile() && !file.toAbsolutePath().normalize().equals(excluded)) {
+                        localTree.files.put(toRelativePath(localRoot, file), attributes);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    LOG.warn("Impossible to read " + file + ", skipped", e);
+                    localTree.failed.add(toRelativePath(localRoot, file));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path directory, IOException e) {
+                    if (e != null) {
+                        LOG.warn("Impossible to list " + directory + " entirely, skipped", e);
+                        localTree.failed.add(toRelativePath(localRoot, directory));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossible to walk " + localRoot, e);
+        }
+        return localTree;
+    }
+
+    private static String toRelativePath(Path localRoot, Path path) {
+        StringBuilder relativePath = new StringBuilder();
+        for (Path element : localRoot.relativize(path)) {
+            if (relativePath.length() > 0) {
+                relativePath.append('/');
+            }
+            relativePath.append(element.toString());
+        }
+        return relativePath.toString();
+    }
+
+    private static <T> T get(Future<T> future, String path) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            LOG.warn("Synchronization of " + path + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private static final class LocalTree {
+        private final Map<String, BasicFileAttributes> files = new HashMap<>();
+        private final Set<String> directories = new HashSet<>();
+        // paths that could not be read, relative to the root which is "" itself
+        private final Set<String> failed = new HashSet<>();
+
+        /**
+         * @return true when {@code relativePath} is a path that could not be read or lies under one, so that what is known
+         * of it locally is incomplete
+         */
+        private boolean isUnderFailed(String relativePath) {
+            for (String failedPath : failed) {
+                if (failedPath.isEmpty() || relativePath.equals(failedPath) || relativePath.startsWith(failedPath + "/")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
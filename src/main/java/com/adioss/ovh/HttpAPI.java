@@ -1,38 +1,80 @@
 package com.adioss.ovh;
 
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import javax.net.ssl.HttpsURLConnection;
-import java.io.*;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Describes one HTTP call. A new instance is created by {@link #query(String)} for every request and must not be shared
+ * between calls, so that concurrent callers never see each other's url, headers, post data or output mode.
+ */
 final class HttpAPI {
-    private URL url;
-    private Map<String, String> headers;
-    private Map<String, String> urlParameters;
-    private Map<String, String> postData;
-    private Output output;
+    private static final Logger LOG = LoggerFactory.getLogger(HttpAPI.class);
+    private static final Transport DEFAULT_TRANSPORT = UrlConnectionTransport.createUrlConnectionTransport();
+
+    // absolute URL, or path relative to the storage endpoint for a storage request
+    private final String url;
+    private final TokenManager tokenManager;
+    private final Map<String, String> headers = new HashMap<>();
+    private final Map<String, String> urlParameters = new HashMap<>();
+    private final Map<String, String> postData = new HashMap<>();
+    private Output output = Output.PLAIN;
     private Path outputPath;
+    private FileChannel outputChannel;
+    private long outputPosition;
+    private JsonHandler jsonHandler;
+    private Transport transport = DEFAULT_TRANSPORT;
+    private Instrumentation instrumentation = Instrumentation.NONE;
+    private Instrumentation.Operation operation = Instrumentation.Operation.OTHER;
+    private BandwidthScheduler bandwidthScheduler;
+    private boolean checksum;
+    private boolean decompress;
+    private AtomicReference<IOException> failure;
 
+    private HttpAPI(String url, TokenManager tokenManager) {
+        this.url = url;
+        this.tokenManager = tokenManager;
+    }
 
-    public HttpAPI query(String url) {
+    public static HttpAPI query(String url) {
         try {
-            this.url = new URL(url);
-            this.headers = new HashMap<>();
-            this.urlParameters = new HashMap<>();
-            this.postData = new HashMap<>();
-            this.output = Output.PLAIN;
-            this.outputPath = null;
+            new URL(url);
         } catch (MalformedURLException e) {
-            e.printStackTrace();
+            throw new IllegalArgumentException("Invalid URL: " + url, e);
         }
-        return this;
+        return new HttpAPI(url, null);
+    }
+
+    /**
+     * @param tokenManager provides the endpoint and the "X-Auth-Token" when the request is sent
+     * @param path         relative to the storage endpoint, e.g. "/default/titi/README.md"
+     * @return a request on the storage endpoint
+     */
+    public static HttpAPI storage(TokenManager tokenManager, String path) {
+        return new HttpAPI(path, tokenManager);
     }
 
     public HttpAPI header(String key, String value) {
@@ -52,6 +94,51 @@ final class HttpAPI {
         return this;
     }
 
+    /**
+     * @param transport sends the request, {@link UrlConnectionTransport} by default
+     */
+    public HttpAPI transport(Transport transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    /**
+     * @param instrumentation receives the metrics of the request, recorded as part of {@code operation}
+     */
+    public HttpAPI instrumentation(Instrumentation instrumentation, Instrumentation.Operation operation) {
+        this.instrumentation = instrumentation;
+        this.operation = operation;
+        return this;
+    }
+
+    /**
+     * @param bandwidthScheduler shapes the request and response bodies according to the operation given to
+     *                           {@link #instrumentation(Instrumentation, Instrumentation.Operation)}, null for none
+     */
+    public HttpAPI bandwidthScheduler(BandwidthScheduler bandwidthScheduler) {
+        this.bandwidthScheduler = bandwidthScheduler;
+        return this;
+    }
+
+    /**
+     * @param failure receives the exception leaving the request without response, unless it already holds an earlier
+     *                one; null for none
+     */
+    HttpAPI failure(AtomicReference<IOException> failure) {
+        this.failure = failure;
+        return this;
+    }
+
+    /**
+     * Compute the MD5 of the body while it is sent and compare it with the "ETag" answered by the server. On a mismatch
+     * the request is sent once more with the computed MD5 as "ETag", so that the server itself rejects corrupted bytes
+     * with a 422. Nothing is computed when an "ETag" header is already set: the server checks it.
+     */
+    public HttpAPI checksum() {
+        this.checksum = true;
+        return this;
+    }
+
     public HttpAPI plain() {
         this.output = Output.PLAIN;
         return this;
@@ -63,11 +150,41 @@ final class HttpAPI {
         return this;
     }
 
+    /**
+     * Restore the original bytes of an object uploaded compressed, according to the codec recorded in its metadata,
+     * while a {@link #binary(Path)} response is written. Other bodies are written as is.
+     */
+    public HttpAPI decompress() {
+        this.decompress = true;
+        return this;
+    }
+
+    /**
+     * Write the response body into {@code target} starting at {@code position} with positional writes, so the channel
+     * may be shared by concurrent requests. The response content is the number of bytes written. When a "Range" header
+     * is set, only a 206 body is written.
+     */
+    public HttpAPI binary(FileChannel target, long position) {
+        this.outputChannel = target;
+        this.outputPosition = position;
+        this.output = Output.CHANNEL;
+        return this;
+    }
+
     public HttpAPI json() {
         this.output = Output.JSON;
         return this;
     }
 
+    /**
+     * Decode the JSON response while it is read from the socket, the response content is the result of the handler.
+     */
+    public HttpAPI json(JsonHandler jsonHandler) {
+        this.jsonHandler = jsonHandler;
+        this.output = Output.JSON_STREAM;
+        return this;
+    }
+
     public HttpAPI jsonArray() {
         this.output = Output.JSON_ARRAY;
         return this;
@@ -76,124 +193,190 @@ final class HttpAPI {
 
     // HTTP GET request
     public Response get() {
-        return basicHttpQuery("GET");
+        return execute("GET", null);
     }
 
     // HTTP HEAD request
     public Response head() {
-        return basicHttpQuery("HEAD");
+        return execute("HEAD", null);
     }
 
     // HTTP DELETE request
     public Response delete() {
-        return basicHttpQuery("DELETE");
+        return execute("DELETE", null);
     }
 
     // HTTP POST request
     public Response post() {
+        byte[] body;
         try {
-            HttpsURLConnection httpsURLConnection = (HttpsURLConnection) this.url.openConnection();
-            httpsURLConnection.setRequestMethod("POST");
-            appendUrlParameter(httpsURLConnection);
-            appendHeaders(httpsURLConnection);
-            byte[] postData = buildPostParameters();
-            httpsURLConnection.setInstanceFollowRedirects(false);
-            httpsURLConnection.setRequestProperty("Content-Length", Integer.toString(postData.length));
-            httpsURLConnection.setUseCaches(false);
-            httpsURLConnection.setDoOutput(true);
-            httpsURLConnection.getOutputStream().write(postData);
-            return new Response(httpsURLConnection.getResponseCode(), httpsURLConnection.getHeaderFields(), getResponseContent(httpsURLConnection));
-        } catch (IOException e) {
+            body = buildPostParameters();
+        } catch (UnsupportedEncodingException e) {
             e.printStackTrace();
             return null;
         }
+        return post(body);
+    }
+
+    public Response post(byte[] body) {
+        return execute("POST", RequestBody.ofBytes(body));
     }
 
     // HTTP PUT request
     public Response put() {
-        return put(null);
+        return put(new byte[0]);
     }
 
-    public Response put(Path sourcePath) {
-        try {
-            HttpsURLConnection httpsURLConnection = (HttpsURLConnection) this.url.openConnection();
-            httpsURLConnection.setRequestMethod("PUT");
-            appendUrlParameter(httpsURLConnection);
-            appendHeaders(httpsURLConnection);
-            httpsURLConnection.setDoOutput(true);
-            if (sourcePath != null) {
-                try (BufferedOutputStream outputStream = new BufferedOutputStream(httpsURLConnection.getOutputStream());
-                     BufferedInputStream inputStream = new BufferedInputStream(new FileInputStream(sourcePath.toFile()))) {
-                    int i;
-                    while ((i = inputStream.read()) >= 0) {
-                        outputStream.write(i);
-                    }
-                }
-            } else {
-                httpsURLConnection.setFixedLengthStreamingMode(0);
-            }
+    public Response put(byte[] body) {
+        return execute("PUT", RequestBody.ofBytes(body));
+    }
+
+    public Response put(RequestBody body) {
+        return execute("PUT", body);
+    }
 
-            return new Response(httpsURLConnection.getResponseCode(), httpsURLConnection.getHeaderFields(), getResponseContent(httpsURLConnection));
-        } catch (Exception e) {
+    public Response put(Path sourcePath) {
+        if (sourcePath == null) {
+            return put();
+        }
+        try (FileChannel fileChannel = FileChannel.open(sourcePath, StandardOpenOption.READ)) {
+            return put(fileChannel, 0, fileChannel.size());
+        } catch (IOException e) {
             e.printStackTrace();
+            recordFailure(e);
             return null;
         }
     }
 
-    private Response basicHttpQuery(String verb) {
+    /**
+     * PUT {@code length} bytes of {@code fileChannel} starting at {@code position}. The channel is only read with
+     * positional reads so it can be shared by concurrent requests.
+     */
+    public Response put(FileChannel fileChannel, long position, long length) {
+        return execute("PUT", RequestBody.ofFileRegion(fileChannel, position, length));
+    }
+
+    private Response execute(String verb, RequestBody body) {
+        if (!checksum || body == null || headers.containsKey("ETag")) {
+            return authorizedExecute(verb, body);
+        }
+        MessageDigest md5 = Checksums.newMd5();
+        Response response = authorizedExecute(verb, body.digesting(md5));
+        if (response == null || !response.isSuccess()) {
+            return response;
+        }
+        String sent = Checksums.toHex(md5.digest());
+        String stored = SegmentedUpload.unquote(response.getHeader("ETag"));
+        if (stored == null || sent.equalsIgnoreCase(stored)) {
+            return response;
+        }
+        LOG.warn(verb + " " + url + ": " + sent + " sent but " + stored + " stored, sending again with its ETag");
+        headers.put("ETag", sent);
+        return authorizedExecute(verb, body);
+    }
+
+    /**
+     * Send the request; a storage request rejected with a 401 is replayed once with renewed credentials.
+     */
+    private Response authorizedExecute(String verb, RequestBody body) {
+        SwiftCredentials credentials = tokenManager == null ? null : tokenManager.current();
+        Response response = send(verb, body, credentials);
+        if (response != null && response.getCode() == 401 && tokenManager != null) {
+            SwiftCredentials renewed = tokenManager.refresh(credentials);
+            if (renewed != credentials) {
+                response = send(verb, body, renewed);
+            }
+        }
+        return response;
+    }
+
+    private Response send(String verb, RequestBody body, SwiftCredentials credentials) {
+        instrumentation.onStart(operation);
+        long start = System.nanoTime();
+        int code = -1;
+        long connectNanos = -1;
+        long firstByteNanos = -1;
+        CountingInputStream inputStream = null;
+        BandwidthScheduler.Ticket ticket = bandwidthScheduler == null ? null : bandwidthScheduler.start(operation);
         try {
-            HttpsURLConnection httpsURLConnection = (HttpsURLConnection) this.url.openConnection();
-            httpsURLConnection.setRequestMethod(verb);
-            appendUrlParameter(httpsURLConnection);
-            appendHeaders(httpsURLConnection);
-            return new Response(httpsURLConnection.getResponseCode(), httpsURLConnection.getHeaderFields(), getResponseContent(httpsURLConnection));
+            URL target = credentials == null ? new URL(url) : new URL(credentials.getEndpoint() + url);
+            Map<String, String> requestHeaders = new LinkedHashMap<>(urlParameters);
+            requestHeaders.putAll(headers);
+            if (credentials != null) {
+                requestHeaders.put("X-Auth-Token", credentials.getToken());
+            }
+            RequestBody shapedBody = ticket == null || body == null ? body : body.shaped(ticket);
+            try (TransportResponse transportResponse = transport.send(verb, target, requestHeaders, shapedBody)) {
+                firstByteNanos = System.nanoTime() - start;
+                connectNanos = transportResponse.getConnectNanos();
+                code = transportResponse.getCode();
+                inputStream = new CountingInputStream(ticket == null ? transportResponse.getBody() : ticket.receiving(transportResponse.getBody()));
+                // a server ignoring the Range header answers the whole object, which must not overflow the range
+                boolean ignoredRange = output == Output.CHANNEL && headers.containsKey("Range") && code != 206;
+                Object content = code < 400 && !ignoredRange ? getResponseContent(inputStream, transportResponse.getHeaders()) : null;
+                return new Response(code, transportResponse.getHeaders(), content);
+            }
         } catch (IOException e) {
             e.printStackTrace();
+            recordFailure(e);
             return null;
+        } finally {
+            if (ticket != null) {
+                ticket.close();
+            }
+            instrumentation.onComplete(operation, code, connectNanos, firstByteNanos, System.nanoTime() - start,
+                    body == null ? 0 : body.getLength(), inputStream == null ? 0 : inputStream.count);
+        }
+    }
+
+    private void recordFailure(IOException exception) {
+        if (failure != null) {
+            failure.compareAndSet(null, exception);
         }
     }
 
-    private Object getResponseContent(HttpsURLConnection httpsURLConnection) throws IOException {
+    private Object getResponseContent(InputStream inputStream, Map<String, List<String>> responseHeaders) {
         if (this.output == Output.BINARY) {
-            try (InputStream inputStream = httpsURLConnection.getInputStream();
+            try (InputStream body = decompress ? Compression.decompressing(inputStream, responseHeaders) : inputStream;
                  FileOutputStream outputStream = new FileOutputStream(outputPath.toFile())) {
                 int bytesRead = -1;
-                byte[] buffer = new byte[1024];
-                while ((bytesRead = inputStream.read(buffer)) != -1) {
+                byte[] buffer = new byte[RequestBody.BUFFER_SIZE];
+                while ((bytesRead = body.read(buffer)) != -1) {
                     outputStream.write(buffer, 0, bytesRead);
                 }
             } catch (Exception e) {
                 return null;
             }
             return outputPath;
+        } else if (this.output == Output.CHANNEL) {
+            try {
+                return readBody(inputStream, outputChannel, outputPosition);
+            } catch (Exception e) {
+                return null;
+            }
         } else {
-            try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(httpsURLConnection.getInputStream()))) {
-                String inputLine;
-                StringBuilder response = new StringBuilder();
-                while ((inputLine = bufferedReader.readLine()) != null) {
-                    response.append(inputLine);
-                }
-                bufferedReader.close();
-                return convertResult(response);
+            try (Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+                return convertResult(reader);
             } catch (Exception e) {
                 return null;
             }
         }
     }
 
-    private void appendHeaders(HttpsURLConnection httpsURLConnection) {
-        for (String key : this.headers.keySet()) {
-            httpsURLConnection.setRequestProperty(key, this.headers.get(key));
-        }
-    }
-
-    private void appendUrlParameter(HttpsURLConnection httpsURLConnection) {
-        for (String key : this.urlParameters.keySet()) {
-            httpsURLConnection.setRequestProperty(key, this.urlParameters.get(key));
+    private static long readBody(InputStream inputStream, FileChannel fileChannel, long position) throws IOException {
+        byte[] buffer = new byte[RequestBody.BUFFER_SIZE];
+        long written = 0;
+        int bytesRead;
+        while ((bytesRead = inputStream.read(buffer)) != -1) {
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, bytesRead);
+            while (byteBuffer.hasRemaining()) {
+                written += fileChannel.write(byteBuffer, position + written);
+            }
         }
+        return written;
     }
 
-    private byte[] buildPostParameters() throws UnsupportedEncodingException {
+    byte[] buildPostParameters() throws UnsupportedEncodingException {
         StringBuilder postParameters = new StringBuilder();
         for (String key : this.postData.keySet()) {
             if (postParameters.length() != 0) {
@@ -205,24 +388,69 @@ final class HttpAPI {
         return postParameters.toString().getBytes(StandardCharsets.UTF_8);
     }
 
-    private Object convertResult(StringBuilder response) {
+    /**
+     * Decode the body straight from the connection stream, without building an intermediate String for JSON.
+     */
+    private Object convertResult(Reader reader) throws IOException {
         switch (this.output) {
             case JSON: {
                 JsonParser parser = new JsonParser();
-                return parser.parse(response.toString());
+                return parser.parse(reader);
             }
             case JSON_ARRAY: {
                 JsonParser parser = new JsonParser();
-                return parser.parse(response.toString()).getAsJsonArray();
+                return parser.parse(reader).getAsJsonArray();
+            }
+            case JSON_STREAM: {
+                return jsonHandler.read(new JsonReader(reader));
             }
             default: {
+                StringBuilder response = new StringBuilder();
+                char[] buffer = new char[8192];
+                int charsRead;
+                while ((charsRead = reader.read(buffer)) != -1) {
+                    response.append(buffer, 0, charsRead);
+                }
                 return response.toString();
             }
 
         }
     }
 
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read != -1) {
+                count++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int read = super.read(bytes, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Incremental decoding of a JSON response, see {@link #json(JsonHandler)}.
+     */
+    interface JsonHandler {
+        Object read(JsonReader jsonReader) throws IOException;
+    }
+
     private enum Output {
-        PLAIN, JSON, JSON_ARRAY, BINARY
+        PLAIN, JSON, JSON_ARRAY, JSON_STREAM, BINARY, CHANNEL
     }
 }
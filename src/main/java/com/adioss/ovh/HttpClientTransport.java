@@ -0,0 +1,128 @@
+package com.adioss.ovh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * {@link Transport} on {@link HttpClient}: HTTP/2 when the server offers it, several requests multiplexed on one
+ * connection, and connections pooled between requests, which saves a TLS handshake on each of the many small metadata
+ * calls. Request bodies are streamed from their source and response bodies consumed as streams, so files never have to
+ * fit in memory.
+ */
+public final class HttpClientTransport implements Transport {
+    // set by the client itself, rejected when given by the caller
+    private static final Set<String> RESTRICTED_HEADERS = new HashSet<>(Arrays.asList("connection", "content-length", "expect", "host", "upgrade"));
+
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+
+    private HttpClientTransport(HttpClient httpClient, Duration requestTimeout) {
+        this.httpClient = httpClient;
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * @return a transport preferring HTTP/2, without timeouts
+     */
+    public static HttpClientTransport createHttpClientTransport() {
+        return createHttpClientTransport((Duration) null, null);
+    }
+
+    /**
+     * @param connectTimeout timeout to open a connection, null for none
+     * @param requestTimeout timeout until the response headers are received, null for none
+     */
+    public static HttpClientTransport createHttpClientTransport(Duration connectTimeout, Duration requestTimeout) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NEVER);
+        if (connectTimeout != null) {
+            builder.connectTimeout(connectTimeout);
+        }
+        return new HttpClientTransport(builder.build(), requestTimeout);
+    }
+
+    /**
+     * @param httpClient a client configured by the caller, e.g. with its own executor or SSL context
+     * @param requestTimeout timeout until the response headers are received, null for none
+     */
+    public static HttpClientTransport createHttpClientTransport(HttpClient httpClient, Duration requestTimeout) {
+        return new HttpClientTransport(httpClient, requestTimeout);
+    }
+
+    @Override
+    public TransportResponse send(String verb, URL url, Map<String, String> headers, RequestBody body) throws IOException {
+        HttpRequest.Builder request;
+        // streams opened for the body, closed once the request ends even if the client stopped reading them
+        List<InputStream> bodyStreams = new CopyOnWriteArrayList<>();
+        try {
+            request = HttpRequest.newBuilder(url.toURI()).method(verb, publisher(body, bodyStreams));
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid URL: " + url, e);
+        }
+        if (requestTimeout != null) {
+            request.timeout(requestTimeout);
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (!RESTRICTED_HEADERS.contains(header.getKey().toLowerCase())) {
+                request.header(header.getKey(), header.getValue());
+            }
+        }
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interruptedIOException = new InterruptedIOException(verb + " " + url + " interrupted");
+            interruptedIOException.initCause(e);
+            throw interruptedIOException;
+        } finally {
+            closeQuietly(bodyStreams);
+        }
+        // HTTP/2 header names are lower case, callers look them up as sent by HTTP/1.1 servers
+        Map<String, List<String>> responseHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        responseHeaders.putAll(response.headers().map());
+        return new TransportResponse(response.statusCode(), responseHeaders, response.body());
+    }
+
+    private static HttpRequest.BodyPublisher publisher(RequestBody body, List<InputStream> bodyStreams) {
+        if (body == null || body.getLength() == 0) {
+            return HttpRequest.BodyPublishers.noBody();
+        }
+        HttpRequest.BodyPublisher stream = HttpRequest.BodyPublishers.ofInputStream(() -> {
+            try {
+                InputStream inputStream = body.openStream();
+                bodyStreams.add(inputStream);
+                return inputStream;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return body.getLength() >= 0 ? HttpRequest.BodyPublishers.fromPublisher(stream, body.getLength()) : stream;
+    }
+
+    private static void closeQuietly(List<InputStream> inputStreams) {
+        for (InputStream inputStream : inputStreams) {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                // the body is no longer needed
+            }
+        }
+    }
+}
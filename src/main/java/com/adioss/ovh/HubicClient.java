@@ -1,36 +1,82 @@
 package com.adioss.ovh;
 
-import com.google.gson.JsonObject;
+import com.adioss.ovh.HubicClientConfiguration.Codec;
+import com.adioss.ovh.Instrumentation.Operation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Base64;
-import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.adioss.ovh.AuthenticationInformation.createAuthenticationInformationWithCode;
 
-public class HubicClient {
+/**
+ * Client for hubiC storage. Instances are thread-safe: every operation builds its own {@link HttpAPI} request, so a
+ * single authenticated client can be shared by any number of threads.
+ * <p>
+ * Tokens are renewed in background before they expire, and a request rejected with a 401 is replayed once after a
+ * renewal shared by all the concurrent requests rejected with the same token. Failed requests are retried according to
+ * {@link HubicClientConfiguration#getResiliencePolicy()}.
+ */
+public class HubicClient implements AutoCloseable {
     private static final Logger LOG = LoggerFactory.getLogger(HubicClient.class);
-    private static final String URL_OAUTH_AUTH = "https://api.hubic.com/oauth/auth/";
-    private static final String URL_OAUTH_TOKEN = "https://api.hubic.com/oauth/token/";
-    private static final String URL_CREDENTIALS = "https://api.hubic.com/1.0/account/credentials";
+    private static final String PATH_OAUTH_AUTH = "/oauth/auth/";
+    private static final int ASYNC_THREADS = 8;
 
-    private final HttpAPI httpAPI;
-    private final AuthenticationInformation authenticationInformation;
-    private String token;
-    private String endpoint;
-    private AccessToken accessToken;
+    private final TokenManager tokenManager;
+    private final ResilientTransport transport;
+    private final HubicClientConfiguration configuration;
+    private final MetadataCache metadataCache;
+    private final Executor asyncExecutor;
+    // the default async pool, null when one is configured: the client only shuts down its own
+    private final ExecutorService ownedAsyncExecutor;
+    private final ExecutorService backgroundExecutor;
+    // only set on the views running async operations, see async(String, Function)
+    private final AtomicReference<IOException> failure;
 
     public static HubicClient createHubicClient(AuthenticationInformation authenticationInformation) {
+        return createHubicClient(authenticationInformation, HubicClientConfiguration.defaultConfiguration());
+    }
+
+    /**
+     * When {@link HubicClientConfiguration#getCredentialStore()} holds usable tokens for this client id, the client starts
+     * from them and the authorization code is neither needed nor used.
+     */
+    public static HubicClient createHubicClient(AuthenticationInformation authenticationInformation, HubicClientConfiguration configuration) {
+        CredentialStore credentialStore = configuration.getCredentialStore() != null ? new CredentialStore(configuration.getCredentialStore()) : null;
+        ResilientTransport transport = ResilientTransport.createResilientTransport(configuration.getTransport(), configuration.getResiliencePolicy());
+        TokenManager storedTokenManager = new TokenManager(authenticationInformation, credentialStore, transport, configuration.getInstrumentation(), configuration.getApiUrl());
+        if (storedTokenManager.restore()) {
+            return new HubicClient(storedTokenManager, transport, configuration);
+        }
         String code = authenticationInformation.getCode();
         if (code == null || code.isEmpty()) {
-            LOG.info("1. Go to: " + createAuthorizeUrl(authenticationInformation));
+            LOG.info("1. Go to: " + createAuthorizeUrl(configuration.getApiUrl(), authenticationInformation));
             LOG.info("2. Check authorization and login");
             LOG.info("3. Copy the authorization code.");
             try {
@@ -39,30 +85,24 @@ public class HubicClient {
                 exitWithError("Error on init: " + e.getMessage());
             }
         }
-        return new HubicClient(createAuthenticationInformationWithCode(authenticationInformation.getClientId(), authenticationInformation.getClientSecret(), code));
+        TokenManager tokenManager = new TokenManager(createAuthenticationInformationWithCode(authenticationInformation.getClientId(),
+                authenticationInformation.getClientSecret(), code), credentialStore, transport, configuration.getInstrumentation(), configuration.getApiUrl());
+        try {
+            tokenManager.authenticate();
+        } catch (Exception e) {
+            exitWithError("Error on init: " + e.getMessage());
+        }
+        return new HubicClient(tokenManager, transport, configuration);
     }
 
 
     /**
-     * curl -H "Authorization: AUTH_TOKEN" -d "refresh_token=REFRESH_TOKEN&grant_type=refresh_token" https://api.hubic.com/oauth/token/ -i -X POST
+     * Renew the OAuth access token now. Tokens are otherwise renewed automatically in background before they expire.
+     *
+     * @return expiry date of the new access token in milliseconds since epoch, -1 on failure
      */
     public long refreshToken() {
-        byte[] base64 = (authenticationInformation.getClientId() + ":" + authenticationInformation.getClientSecret()).getBytes();
-        String authorization = "Basic " + new String(Base64.getEncoder().encode(base64));
-        Response post = httpAPI.query(URL_OAUTH_TOKEN).json()
-                .header("Authorization", authorization)
-                .postData("refresh_token", accessToken.getRefreshToken())
-                .postData("grant_type", "refresh_token")
-                .json()
-                .post();
-        if (post != null && post.getCode() == 200 && post.getContent() != null) {
-            JsonObject postContent = (JsonObject) post.getContent();
-            accessToken = new AccessToken(postContent.get("access_token").getAsString(),
-                    new Date().getTime() + postContent.get("expires_in").getAsInt(),
-                    accessToken.getRefreshToken());
-            return accessToken.getExpiresIn();
-        }
-        return -1;
+        return tokenManager.refreshAccessToken();
     }
 
 
@@ -73,17 +113,19 @@ public class HubicClient {
      * @return a {@link Response}
      */
     public Response getInfo(String path) {
-        return httpAPI.query(endpoint + "/default" + path + "?format=json").json().header("X-Auth-Token", token).head();
+        if (metadataCache == null) {
+            return storage(Operation.GET_INFO, "/default" + path + "?format=json").json().head();
+        }
+        return metadataCache.get(MetadataCache.infoKey(path), () -> storage(Operation.GET_INFO, "/default" + path + "?format=json").json(), HttpAPI::head);
     }
 
 
     public Response setMetadata(String path, Map<String, String> headers) {
-        HttpAPI query = httpAPI.query(endpoint + "/default" + path);
-        headers.put("X-Auth-Token", token);
+        HttpAPI query = storage(Operation.SET_METADATA, "/default" + path);
         for (String headerName : headers.keySet()) {
             query.header(headerName, headers.get(headerName));
         }
-        return query.post();
+        return invalidate(path, query.post());
     }
 
     /**
@@ -93,7 +135,48 @@ public class HubicClient {
      * @return a {@link Response}
      */
     public Response listDirectory(String path) {
-        return httpAPI.query(endpoint + "/default?path=" + path + "&format=json").jsonArray().header("X-Auth-Token", token).get();
+        if (metadataCache == null) {
+            return storage(Operation.LIST_DIRECTORY, "/default?path=" + path + "&format=json").jsonArray().get();
+        }
+        return metadataCache.get(MetadataCache.listKey(path), () -> storage(Operation.LIST_DIRECTORY, "/default?path=" + path + "&format=json").jsonArray(), HttpAPI::get);
+    }
+
+    /**
+     * Lazily list every object whose name starts with {@code prefix}, page by page. Unlike
+     * {@link #listDirectory(String)} it is not truncated at 10000 entries and only keeps one page in memory.
+     *
+     * @param prefix of the object names, e.g. "Documents/", empty for the whole container
+     * @return an {@link Iterator} of {@link StorageObject}, throwing {@link java.io.UncheckedIOException} when a page
+     * cannot be retrieved
+     */
+    public Iterator<StorageObject> listObjects(String prefix) {
+        return listObjects(prefix, null);
+    }
+
+    /**
+     * Same as {@link #listObjects(String)} but names containing {@code delimiter} after the prefix are rolled up into
+     * a single {@link StorageObject#isSubdirectory()} entry, so only one level is listed.
+     *
+     * @param prefix    of the object names, e.g. "Documents/"
+     * @param delimiter usually "/", null to list recursively
+     * @return an {@link Iterator} of {@link StorageObject}
+     */
+    public Iterator<StorageObject> listObjects(String prefix, String delimiter) {
+        return listObjects("/default", prefix, delimiter);
+    }
+
+    /**
+     * @param container e.g. {@link SegmentedUpload#SEGMENTS_CONTAINER}
+     */
+    Iterator<StorageObject> listObjects(String container, String prefix, String delimiter) {
+        return new ObjectListing(this, container, prefix, delimiter, configuration.getListingPageSize(), backgroundExecutor);
+    }
+
+    /**
+     * @see #listObjects(String)
+     */
+    public Stream<StorageObject> streamObjects(String prefix) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(listObjects(prefix), Spliterator.ORDERED | Spliterator.NONNULL), false);
     }
 
     /**
@@ -103,45 +186,123 @@ public class HubicClient {
      * @return a {@link Response}
      */
     public Response createDirectory(String path) {
-        return httpAPI.query(endpoint + "/default" + path)
-                .header("X-Auth-Token", token)
+        return invalidate(path, storage(Operation.CREATE_DIRECTORY, "/default" + path)
                 .header("Content-Length", "0")
                 .header("Content-Type", "application/directory")
-                .put();
+                .put());
     }
 
     /**
      * curl -H "X-Auth-Token: YOUR_AUTH_TOKEN" -T "/home/adio/Bureau/README.md" ENDPOINT_URL/default/titi/README.md -i -X PUT
+     * <p>
+     * Files bigger than {@link HubicClientConfiguration#getSegmentThreshold()} are uploaded as segments plus a manifest.
+     * The MD5 of each body is computed while it is sent and checked against the ETag answered by the server.
      *
      * @param source     {@link Path} of the source file to upload
      * @param targetPath target path
      * @return a {@link Response}
      */
     public Response upload(Path source, String targetPath) {
-        return httpAPI.query(endpoint + "/default" + targetPath)
-                .header("X-Auth-Token", token)
-                .put(source);
+        return upload(source, targetPath, null);
+    }
+
+    /**
+     * curl -H "X-Auth-Token: YOUR_AUTH_TOKEN" -H "ETag: MD5" -T "/home/adio/Bureau/README.md" ENDPOINT_URL/default/titi/README.md -i -X PUT
+     * <p>
+     * With {@link HubicClientConfiguration#isSkipIdenticalUploads()}, an object whose ETag already matches the file is
+     * not uploaded again and the 200 of its HEAD is returned instead of a 201. A file compressed on upload (see
+     * {@link HubicClientConfiguration#compression(Codec, int, long)}) keeps its MD5 in the object metadata, computed
+     * before the upload when {@code md5} is null.
+     *
+     * @param source     {@link Path} of the source file to upload
+     * @param targetPath target path
+     * @param md5        hexadecimal MD5 of {@code source} if already known, sent as "ETag" so that the server rejects
+     *                   corrupted bytes with a 422; null to compute it while the file is sent
+     * @return a {@link Response}
+     */
+    public Response upload(Path source, String targetPath, String md5) {
+        boolean segmented;
+        boolean compressed;
+        try {
+            long size = Files.size(source);
+            segmented = size > configuration.getSegmentThreshold();
+            compressed = !segmented && configuration.getCompressionCodec() != Codec.NONE && size >= configuration.getCompressionThreshold();
+            if (configuration.isSkipIdenticalUploads()) {
+                String expected = segmented ? SegmentedUpload.manifestEtag(source, configuration.getSegmentSize())
+                        : md5 != null ? md5 : Checksums.md5(source);
+                Response existing = storage(Operation.GET_INFO, "/default" + targetPath).head();
+                if (existing != null && existing.isSuccess() && (expected.equalsIgnoreCase(SegmentedUpload.unquote(existing.getHeader("ETag")))
+                        || expected.equalsIgnoreCase(existing.getHeader(Compression.ORIGINAL_MD5_HEADER)))) {
+                    LOG.debug(targetPath + " is already identical to " + source);
+                    return existing;
+                }
+                md5 = segmented ? null : expected;
+            }
+            if (compressed && md5 == null) {
+                // metadata go before the body: the original MD5 cannot be computed while the file is compressed and sent
+                md5 = Checksums.md5(source);
+            }
+        } catch (IOException e) {
+            LOG.error("Impossible to read " + source, e);
+            return null;
+        }
+        if (segmented) {
+            return invalidate(targetPath, new SegmentedUpload(this, configuration).upload(source, targetPath));
+        }
+        HttpAPI put = storage(Operation.UPLOAD, "/default" + targetPath).checksum();
+        if (compressed) {
+            // the ETag of the object is the MD5 of the compressed bytes, only known once sent
+            put.header(Compression.CODEC_HEADER, configuration.getCompressionCodec().getName())
+                    .header(Compression.ORIGINAL_MD5_HEADER, md5);
+            return invalidate(targetPath, put.put(Compression.compressing(source, configuration.getCompressionCodec(), configuration.getCompressionLevel())));
+        }
+        if (md5 != null) {
+            put.header("ETag", md5);
+        }
+        return invalidate(targetPath, put.put(source));
     }
 
     /**
      * curl -H "X-Auth-Token: YOUR_AUTH_TOKEN" ENDPOINT_URL/default/titi/README.md -i -X DELETE
+     * <p>
+     * The element is read with a HEAD first: when it is the manifest of a large object, its segments are deleted
+     * after it.
      *
      * @param path of the element to delete
      * @return a {@link Response}
      */
     public Response delete(String path) {
-        return httpAPI.query(endpoint + "/default" + path).header("X-Auth-Token", token).delete();
+        List<String> segments = SegmentedUpload.manifestSegments(this, path);
+        Response response = deleteWithoutSegments(path);
+        if (response != null && response.isSuccess()) {
+            new SegmentedUpload(this, configuration).deleteSegments(segments);
+        }
+        return response;
+    }
+
+    /**
+     * Same as {@link #delete(String)} but a manifest is deleted alone, e.g. once it was moved with its segments.
+     */
+    Response deleteWithoutSegments(String path) {
+        return invalidate(path, storage(Operation.DELETE, "/default" + path).delete());
     }
 
     /**
      * curl -H "X-Auth-Token: YOUR_AUTH_TOKEN" ENDPOINT_URL/default/Documents/zap.sh -i -X GET -o zap.sh
+     * <p>
+     * When {@link HubicClientConfiguration#getDownloadParallelism()} is greater than 1, big objects are fetched by
+     * concurrent byte ranges.
+     * Objects uploaded compressed are decompressed while they are written to {@code target}.
      *
      * @param source of the element to delete
      * @param target output path
      * @return a {@link Response}
      */
     public Response download(String source, Path target) {
-        return httpAPI.query(endpoint + "/default" + source).binary(target).header("X-Auth-Token", token).get();
+        if (configuration.getDownloadParallelism() > 1) {
+            return new RangedDownload(this, configuration).download(source, target);
+        }
+        return storage(Operation.DOWNLOAD, "/default" + source).binary(target).decompress().get();
     }
 
     /**
@@ -152,57 +313,252 @@ public class HubicClient {
      * @return a {@link Response}
      */
     public Response copy(String sourcePath, String targetPath) {
-        return httpAPI.query(endpoint + "/default" + targetPath)
-                .header("X-Auth-Token", token)
+        return invalidate(targetPath, storage(Operation.COPY, "/default" + targetPath)
+                .header("X-Copy-From", sourcePath)
+                .put());
+    }
+
+    /**
+     * Same as {@link #copy(String, String)} but a manifest is copied as a manifest, referencing the same segments,
+     * instead of as the concatenation of its segments; e.g. to move it before deleting it with
+     * {@link #deleteWithoutSegments(String)}.
+     */
+    Response copyManifest(String sourcePath, String targetPath) {
+        return invalidate(targetPath, storage(Operation.COPY, "/default" + targetPath + "?multipart-manifest=get")
                 .header("X-Copy-From", sourcePath)
-                .put();
+                .put());
     }
 
 
-    private HubicClient(AuthenticationInformation authenticationInformation) {
-        this.authenticationInformation = authenticationInformation;
-        httpAPI = new HttpAPI();
-        try {
-            retrieveAccessToken();
-            retrieveAuthorization();
-        } catch (Exception e) {
-            exitWithError("Error on init: " + e.getMessage());
+    /**
+     * @see #getInfo(String)
+     */
+    public CompletableFuture<Response> getInfoAsync(String path) {
+        return async("getInfo " + path, client -> client.getInfo(path));
+    }
+
+    /**
+     * @see #setMetadata(String, Map)
+     */
+    public CompletableFuture<Response> setMetadataAsync(String path, Map<String, String> headers) {
+        return async("setMetadata " + path, client -> client.setMetadata(path, headers));
+    }
+
+    /**
+     * @see #listDirectory(String)
+     */
+    public CompletableFuture<Response> listDirectoryAsync(String path) {
+        return async("listDirectory " + path, client -> client.listDirectory(path));
+    }
+
+    /**
+     * @see #createDirectory(String)
+     */
+    public CompletableFuture<Response> createDirectoryAsync(String path) {
+        return async("createDirectory " + path, client -> client.createDirectory(path));
+    }
+
+    /**
+     * @see #upload(Path, String)
+     */
+    public CompletableFuture<Response> uploadAsync(Path source, String targetPath) {
+        return async("upload " + targetPath, client -> client.upload(source, targetPath));
+    }
+
+    /**
+     * @see #delete(String)
+     */
+    public CompletableFuture<Response> deleteAsync(String path) {
+        return async("delete " + path, client -> client.delete(path));
+    }
+
+    /**
+     * @see #download(String, Path)
+     */
+    public CompletableFuture<Response> downloadAsync(String source, Path target) {
+        return async("download " + source, client -> client.download(source, target));
+    }
+
+    /**
+     * @see #copy(String, String)
+     */
+    public CompletableFuture<Response> copyAsync(String sourcePath, String targetPath) {
+        return async("copy " + targetPath, client -> client.copy(sourcePath, targetPath));
+    }
+
+    /**
+     * Run {@code operation} on the async executor. The future completes with the {@link Response} whatever its status
+     * code, and exceptionally when no response could be obtained: with the {@link IOException} of the failed request
+     * when known, otherwise with a generic one.
+     */
+    private CompletableFuture<Response> async(String description, Function<HubicClient, Response> operation) {
+        return CompletableFuture.supplyAsync(() -> {
+            // the requests of the operation may run on other threads, e.g. segment uploads: they all report to the view
+            AtomicReference<IOException> operationFailure = new AtomicReference<>();
+            Response response = operation.apply(new HubicClient(this, operationFailure));
+            if (response == null) {
+                IOException cause = operationFailure.get();
+                throw new CompletionException(cause != null ? cause : new IOException(description + " failed: no response"));
+            }
+            return response;
+        }, asyncExecutor);
+    }
+
+    /**
+     * Stop the background threads of the client: token renewal, listing prefetch, request hedging and the default async pool. Requests
+     * in progress complete; the client should not be used afterwards.
+     */
+    @Override
+    public void close() {
+        tokenManager.close();
+        backgroundExecutor.shutdown();
+        if (ownedAsyncExecutor != null) {
+            ownedAsyncExecutor.shutdown();
         }
+        // created by the client around the configured transport, which is left open
+        transport.close();
+    }
+
+    /**
+     * @return the {@link MetadataCache} with its hit/miss counters, null when disabled in the configuration
+     */
+    public MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
+    /**
+     * @return the {@link BandwidthScheduler} whose limits can be changed while transfers run, null when none is
+     * configured
+     */
+    public BandwidthScheduler getBandwidthScheduler() {
+        return configuration.getBandwidthScheduler();
     }
 
-    private void retrieveAccessToken() throws Exception {
-        byte[] base64 = (authenticationInformation.getClientId() + ":" + authenticationInformation.getClientSecret()).getBytes();
-        String authorization = "Basic " + new String(Base64.getEncoder().encode(base64));
-        Response post = httpAPI.query(URL_OAUTH_TOKEN)
-                .header("Content-Type", "application/x-www-form-urlencoded")
-                .header("Authorization", authorization)
-                .postData("code", authenticationInformation.getCode())
-                .postData("redirect_uri", "https://api.hubic.com/sandbox/")
-                .postData("grant_type", "authorization_code")
+    HubicClientConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Drop the cached metadata of {@code path} after a write on it.
+     *
+     * @return {@code response}
+     */
+    Response invalidate(String path, Response response) {
+        if (metadataCache != null) {
+            metadataCache.invalidate(path);
+        }
+        return response;
+    }
+
+    /**
+     * curl https://lb1.hubic.ovh.net/info -i -X GET
+     * <p>
+     * Capabilities and limits of the Swift cluster, e.g. "bulk_delete" with its "max_deletes_per_request". The request
+     * needs no token; it is sent to the root of the storage endpoint.
+     *
+     * @return a {@link Response} with the JSON object as content
+     */
+    Response clusterInfo() {
+        String endpoint = tokenManager.current().getEndpoint();
+        int version = endpoint.indexOf("/v1/");
+        String root = version < 0 ? endpoint : endpoint.substring(0, version);
+        return HttpAPI.query(root + "/info")
+                .transport(transport)
+                .instrumentation(configuration.getInstrumentation(), Operation.OTHER)
+                .failure(failure)
                 .json()
-                .post();
-        if (post != null && post.getCode() == 200) {
-            JsonObject postContent = (JsonObject) post.getContent();
-            accessToken = new AccessToken(postContent.get("access_token").getAsString(),
-                    new Date().getTime() + postContent.get("expires_in").getAsInt(),
-                    postContent.get("refresh_token").getAsString());
+                .get();
+    }
+
+    /**
+     * @param operation the request is recorded as part of, see {@link HubicClientConfiguration#getInstrumentation()}
+     * @param path      of the resource on the storage endpoint, starting with the container, e.g. "/default/titi/README.md"
+     * @return an authenticated {@link HttpAPI} request
+     */
+    HttpAPI storage(Operation operation, String path) {
+        return HttpAPI.storage(tokenManager, path)
+                .transport(transport)
+                .instrumentation(configuration.getInstrumentation(), operation)
+                .bandwidthScheduler(configuration.getBandwidthScheduler())
+                .failure(failure);
+    }
+
+    private HubicClient(TokenManager tokenManager, ResilientTransport transport, HubicClientConfiguration configuration) {
+        this.tokenManager = tokenManager;
+        this.transport = transport;
+        this.configuration = configuration;
+        this.backgroundExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "hubic-background");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.failure = null;
+        this.metadataCache = configuration.getMetadataCacheSize() > 0
+                ? new MetadataCache(configuration.getMetadataCacheSize(), configuration.getMetadataCacheTtl())
+                : null;
+        if (configuration.getAsyncExecutor() != null) {
+            this.asyncExecutor = configuration.getAsyncExecutor();
+            this.ownedAsyncExecutor = null;
         } else {
-            throw new RuntimeException("Impossible to retrieve accessToken");
+            // bounded: a burst of async calls queues up instead of opening as many threads and connections
+            ThreadPoolExecutor defaultAsyncExecutor = new ThreadPoolExecutor(ASYNC_THREADS, ASYNC_THREADS, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "hubic-async");
+                thread.setDaemon(true);
+                return thread;
+            });
+            defaultAsyncExecutor.allowCoreThreadTimeOut(true);
+            this.asyncExecutor = defaultAsyncExecutor;
+            this.ownedAsyncExecutor = defaultAsyncExecutor;
         }
+    }
 
+    /**
+     * View of {@code client} sharing its state and threads, whose requests record the exception leaving them without
+     * response in {@code failure}, whatever the thread sending them.
+     */
+    private HubicClient(HubicClient client, AtomicReference<IOException> failure) {
+        this.tokenManager = client.tokenManager;
+        this.transport = client.transport;
+        this.configuration = client.configuration;
+        this.metadataCache = client.metadataCache;
+        this.asyncExecutor = client.asyncExecutor;
+        this.ownedAsyncExecutor = null;
+        this.backgroundExecutor = client.backgroundExecutor;
+        this.failure = failure;
     }
 
-    private void retrieveAuthorization() {
-        Response authorization = httpAPI.query(URL_CREDENTIALS).json().header("Authorization", accessToken.getBearer()).get();
-        if (authorization != null) {
-            JsonObject result = (JsonObject) authorization.getContent();
-            token = result.get("token").getAsString();
-            endpoint = result.get("endpoint").getAsString();
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("token:" + token + " and endpoint:" + endpoint);
-            }
-        } else {
-            throw new RuntimeException("Impossible to retrieve token and/or endpoint");
+    /**
+     * @return {@code path} without its leading and trailing slashes, e.g. "Documents/titi" for "/Documents/titi/"
+     */
+    static String trimSlashes(String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(start, end);
+    }
+
+    /**
+     * @return {@code value} encoded for a URL query parameter
+     */
+    static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name()).replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
         }
     }
 
@@ -211,8 +567,8 @@ public class HubicClient {
         System.exit(1);
     }
 
-    private static String createAuthorizeUrl(AuthenticationInformation authenticationInformation) {
-        return URL_OAUTH_AUTH + "?" +
+    private static String createAuthorizeUrl(String apiUrl, AuthenticationInformation authenticationInformation) {
+        return apiUrl + PATH_OAUTH_AUTH + "?" +
                 "client_id=" + authenticationInformation.getClientId() +
                 "&redirect_uri=" + authenticationInformation.getRedirectUrl() +
                 "&scope=" + authenticationInformation.getScope() +
@@ -0,0 +1,386 @@
+package com.adioss.ovh;
+
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.zip.Deflater;
+
+/**
+ * Tuning of a {@link HubicClient}. Use {@link #defaultConfiguration()} and override what is needed, then pass it to
+ * {@link HubicClient#createHubicClient(AuthenticationInformation, HubicClientConfiguration)}. A configuration must not be
+ * modified once the client is created.
+ */
+public class HubicClientConfiguration {
+    private static final long MB = 1024 * 1024;
+
+    private long segmentThreshold = 1024 * MB;
+    private long segmentSize = 256 * MB;
+    private int segmentParallelism = 4;
+    private ManifestType manifestType = ManifestType.DYNAMIC;
+    private int downloadParallelism = 1;
+    private long downloadThreshold = 64 * MB;
+    private long downloadRangeSize = 32 * MB;
+    private boolean resumable;
+    private boolean skipIdenticalUploads;
+    private Codec compressionCodec = Codec.NONE;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private long compressionThreshold;
+    private int listingPageSize = 1000;
+    private int metadataCacheSize;
+    private long metadataCacheTtl;
+    private Path credentialStore;
+    private Executor asyncExecutor;
+    private Transport transport = UrlConnectionTransport.createUrlConnectionTransport();
+    private ResiliencePolicy resiliencePolicy = ResiliencePolicy.defaultPolicy();
+    private Instrumentation instrumentation = Instrumentation.NONE;
+    private BandwidthScheduler bandwidthScheduler;
+    private String apiUrl = "https://api.hubic.com";
+
+    public static HubicClientConfiguration defaultConfiguration() {
+        return new HubicClientConfiguration();
+    }
+
+    /**
+     * @param segmentThreshold files strictly bigger than this are uploaded as segments plus a manifest
+     */
+    public HubicClientConfiguration segmentThreshold(long segmentThreshold) {
+        this.segmentThreshold = segmentThreshold;
+        return this;
+    }
+
+    /**
+     * @param segmentSize size of each segment, at most 5GB (Swift object size limit)
+     */
+    public HubicClientConfiguration segmentSize(long segmentSize) {
+        if (segmentSize <= 0 || segmentSize > 5 * 1024 * MB) {
+            throw new IllegalArgumentException("segmentSize must be in ]0, 5GB]: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+    /**
+     * @param segmentParallelism number of segments of a single file uploaded concurrently
+     */
+    public HubicClientConfiguration segmentParallelism(int segmentParallelism) {
+        if (segmentParallelism < 1) {
+            throw new IllegalArgumentException("segmentParallelism must be positive: " + segmentParallelism);
+        }
+        this.segmentParallelism = segmentParallelism;
+        return this;
+    }
+
+    public HubicClientConfiguration manifestType(ManifestType manifestType) {
+        this.manifestType = manifestType;
+        return this;
+    }
+
+    /**
+     * @param downloadParallelism number of byte ranges of a single file downloaded concurrently, 1 to disable ranged
+     *                            downloads
+     */
+    public HubicClientConfiguration downloadParallelism(int downloadParallelism) {
+        if (downloadParallelism < 1) {
+            throw new IllegalArgumentException("downloadParallelism must be positive: " + downloadParallelism);
+        }
+        this.downloadParallelism = downloadParallelism;
+        return this;
+    }
+
+    /**
+     * @param downloadThreshold objects strictly bigger than this are downloaded by ranges when downloadParallelism &gt; 1
+     */
+    public HubicClientConfiguration downloadThreshold(long downloadThreshold) {
+        this.downloadThreshold = downloadThreshold;
+        return this;
+    }
+
+    /**
+     * @param downloadRangeSize size of each "Range" request of a ranged download
+     */
+    public HubicClientConfiguration downloadRangeSize(long downloadRangeSize) {
+        if (downloadRangeSize <= 0) {
+            throw new IllegalArgumentException("downloadRangeSize must be positive: " + downloadRangeSize);
+        }
+        this.downloadRangeSize = downloadRangeSize;
+        return this;
+    }
+
+    /**
+     * @param resumable when true, segmented uploads and ranged downloads keep a journal next to the local file and
+     *                  continue from the last confirmed segment/range after a failure
+     */
+    public HubicClientConfiguration resumable(boolean resumable) {
+        this.resumable = resumable;
+        return this;
+    }
+
+    /**
+     * @param skipIdenticalUploads when true, {@link HubicClient#upload(Path, String)} first hashes the file and sends a
+     *                             HEAD: an object whose ETag already matches is not uploaded again
+     */
+    public HubicClientConfiguration skipIdenticalUploads(boolean skipIdenticalUploads) {
+        this.skipIdenticalUploads = skipIdenticalUploads;
+        return this;
+    }
+
+    /**
+     * Compress uploaded files while they are sent, without temporary file. The codec is recorded in the object metadata
+     * ("X-Object-Meta-Codec") and {@link HubicClient#download(String, Path)} restores the original bytes; such objects
+     * are fetched in a single request, byte ranges of the compressed body being useless. Files bigger than
+     * {@link #getSegmentThreshold()} are still uploaded as is, their compressed size not being known in advance.
+     * <p>
+     * The metadata replaced by {@link HubicClient#setMetadata(String, java.util.Map)} must keep "X-Object-Meta-Codec".
+     *
+     * @param codec     {@link Codec#NONE} to upload files as is
+     * @param level     from 0 (no compression) to 9 (best compression), -1 for the zlib default
+     * @param threshold files strictly smaller than this are uploaded as is
+     */
+    public HubicClientConfiguration compression(Codec codec, int level, long threshold) {
+        if (codec == null) {
+            throw new IllegalArgumentException("codec must not be null");
+        }
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("level must be in [-1, 9]: " + level);
+        }
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold must not be negative: " + threshold);
+        }
+        this.compressionCodec = codec;
+        this.compressionLevel = level;
+        this.compressionThreshold = threshold;
+        return this;
+    }
+
+    /**
+     * @param listingPageSize number of entries requested per page by {@link HubicClient#listObjects(String)}, at most
+     *                        10000 (Swift listing limit)
+     */
+    public HubicClientConfiguration listingPageSize(int listingPageSize) {
+        if (listingPageSize < 1 || listingPageSize > 10000) {
+            throw new IllegalArgumentException("listingPageSize must be in [1, 10000]: " + listingPageSize);
+        }
+        this.listingPageSize = listingPageSize;
+        return this;
+    }
+
+    /**
+     * Enable the {@link MetadataCache} of getInfo/listDirectory responses.
+     *
+     * @param maxEntries number of responses kept, least recently used evicted first, 0 to disable the cache
+     * @param ttlMillis  age under which an entry is served without request, older entries are revalidated
+     */
+    public HubicClientConfiguration metadataCache(int maxEntries, long ttlMillis) {
+        if (maxEntries < 0 || ttlMillis < 0) {
+            throw new IllegalArgumentException("maxEntries and ttlMillis must not be negative");
+        }
+        this.metadataCacheSize = maxEntries;
+        this.metadataCacheTtl = ttlMillis;
+        return this;
+    }
+
+    /**
+     * @param credentialStore file where tokens and endpoint are kept between runs, readable by its owner only; a new
+     *                        client starts from it when it holds valid credentials, without any authorization code
+     */
+    public HubicClientConfiguration credentialStore(Path credentialStore) {
+        this.credentialStore = credentialStore;
+        return this;
+    }
+
+    /**
+     * @param asyncExecutor runs the operations of the *Async methods of {@link HubicClient}, null to use a pool of 8
+     *                      daemon threads owned by the client
+     */
+    public HubicClientConfiguration asyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+        return this;
+    }
+
+    /**
+     * @param transport sends every request of the client, e.g. {@link HttpClientTransport} for HTTP/2 and pooled
+     *                  connections; {@link UrlConnectionTransport} by default
+     */
+    public HubicClientConfiguration transport(Transport transport) {
+        if (transport == null) {
+            throw new IllegalArgumentException("transport must not be null");
+        }
+        this.transport = transport;
+        return this;
+    }
+
+    /**
+     * @param resiliencePolicy retries, hedging and circuit breaker applied on top of the transport, see
+     *                         {@link ResilientTransport}; {@link ResiliencePolicy#noRetry()} to send each request once
+     */
+    public HubicClientConfiguration resiliencePolicy(ResiliencePolicy resiliencePolicy) {
+        if (resiliencePolicy == null) {
+            throw new IllegalArgumentException("resiliencePolicy must not be null");
+        }
+        this.resiliencePolicy = resiliencePolicy;
+        return this;
+    }
+
+    /**
+     * @param instrumentation receives the latency, size and status of every request, e.g.
+     *                        {@link InMemoryRecorder#createInMemoryRecorder()}; {@link Instrumentation#NONE} by default
+     */
+    public HubicClientConfiguration instrumentation(Instrumentation instrumentation) {
+        if (instrumentation == null) {
+            throw new IllegalArgumentException("instrumentation must not be null");
+        }
+        this.instrumentation = instrumentation;
+        return this;
+    }
+
+    /**
+     * @param bandwidthScheduler limits and priorities of the storage requests, e.g.
+     *                           {@link BandwidthScheduler#createBandwidthScheduler()}; it may be changed while the client
+     *                           is used, unlike this configuration; null (the default) for none
+     */
+    public HubicClientConfiguration bandwidthScheduler(BandwidthScheduler bandwidthScheduler) {
+        this.bandwidthScheduler = bandwidthScheduler;
+        return this;
+    }
+
+    /**
+     * @param apiUrl base URL of the OAuth and account API, "https://api.hubic.com" by default; the storage endpoint is
+     *               the one returned by the account credentials
+     */
+    public HubicClientConfiguration apiUrl(String apiUrl) {
+        if (apiUrl == null || apiUrl.isEmpty()) {
+            throw new IllegalArgumentException("apiUrl must not be empty");
+        }
+        this.apiUrl = apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+        return this;
+    }
+
+    public long getSegmentThreshold() {
+        return segmentThreshold;
+    }
+
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    public int getSegmentParallelism() {
+        return segmentParallelism;
+    }
+
+    public ManifestType getManifestType() {
+        return manifestType;
+    }
+
+    public int getDownloadParallelism() {
+        return downloadParallelism;
+    }
+
+    public long getDownloadThreshold() {
+        return downloadThreshold;
+    }
+
+    public long getDownloadRangeSize() {
+        return downloadRangeSize;
+    }
+
+    public boolean isResumable() {
+        return resumable;
+    }
+
+    public boolean isSkipIdenticalUploads() {
+        return skipIdenticalUploads;
+    }
+
+    public Codec getCompressionCodec() {
+        return compressionCodec;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public long getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public int getListingPageSize() {
+        return listingPageSize;
+    }
+
+    public int getMetadataCacheSize() {
+        return metadataCacheSize;
+    }
+
+    public long getMetadataCacheTtl() {
+        return metadataCacheTtl;
+    }
+
+    public Path getCredentialStore() {
+        return credentialStore;
+    }
+
+    public Executor getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public ResiliencePolicy getResiliencePolicy() {
+        return resiliencePolicy;
+    }
+
+    public Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    public BandwidthScheduler getBandwidthScheduler() {
+        return bandwidthScheduler;
+    }
+
+    public String getApiUrl() {
+        return apiUrl;
+    }
+
+    /**
+     * Kind of Swift large object manifest published after a segmented upload.
+     */
+    public enum ManifestType {
+        /**
+         * "X-Object-Manifest" header pointing to the segments prefix (DLO)
+         */
+        DYNAMIC,
+        /**
+         * "multipart-manifest=put" listing every segment with its ETag (SLO)
+         */
+        STATIC
+    }
+
+    /**
+     * Compression applied to uploaded files, see {@link #compression(Codec, int, long)}.
+     */
+    public enum Codec {
+        NONE(null),
+        /**
+         * gzip format (RFC 1952), readable by "gunzip"
+         */
+        GZIP("gzip"),
+        /**
+         * zlib format (RFC 1950)
+         */
+        DEFLATE("deflate");
+
+        private final String name;
+
+        Codec(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return the value recorded in the object metadata, null for {@link #NONE}
+         */
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.adioss.ovh;
+
+import com.adioss.ovh.Instrumentation.Operation;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link Instrumentation} keeping counters and latency histograms per {@link Operation} in memory. Recording only
+ * updates preallocated atomic counters; read the metrics with {@link #getMetrics(Operation)} or {@link #dump()}, e.g.
+ * periodically to bridge them to a metrics system.
+ */
+public final class InMemoryRecorder implements Instrumentation {
+    private final Map<Operation, OperationMetrics> metrics = new EnumMap<>(Operation.class);
+
+    private InMemoryRecorder() {
+        for (Operation operation : Operation.values()) {
+            metrics.put(operation, new OperationMetrics());
+        }
+    }
+
+    public static InMemoryRecorder createInMemoryRecorder() {
+        return new InMemoryRecorder();
+    }
+
+    @Override
+    public void onStart(Operation operation) {
+        metrics.get(operation).inFlight.incrementAndGet();
+    }
+
+    @Override
+    public void onComplete(Operation operation, int statusCode, long connectNanos, long firstByteNanos, long totalNanos,
+                           long bytesSent, long bytesReceived) {
+        OperationMetrics operationMetrics = metrics.get(operation);
+        operationMetrics.inFlight.decrementAndGet();
+        operationMetrics.statusCodes.incrementAndGet(statusCode >= 100 && statusCode < 600 ? statusCode : 0);
+        operationMetrics.connect.record(connectNanos);
+        operationMetrics.firstByte.record(firstByteNanos);
+        operationMetrics.total.record(totalNanos);
+        if (bytesSent > 0) {
+            operationMetrics.bytesSent.add(bytesSent);
+        }
+        if (bytesReceived > 0) {
+            operationMetrics.bytesReceived.add(bytesReceived);
+        }
+    }
+
+    public OperationMetrics getMetrics(Operation operation) {
+        return metrics.get(operation);
+    }
+
+    /**
+     * @return one line per operation which sent at least one request, e.g.
+     * "GET_INFO requests=12 inFlight=0 total(p50/p95/p99/max ms)=31/80/80/95 firstByte p95=78ms connect p95=25ms
+     * sent=0 received=5120 status={200=11, 404=1}"
+     */
+    public String dump() {
+        StringBuilder dump = new StringBuilder();
+        for (Map.Entry<Operation, OperationMetrics> entry : metrics.entrySet()) {
+            OperationMetrics operationMetrics = entry.getValue();
+            if (operationMetrics.getRequests() == 0 && operationMetrics.getInFlight() == 0) {
+                continue;
+            }
+            LatencyHistogram total = operationMetrics.getTotal();
+            dump.append(entry.getKey())
+                    .append(" requests=").append(operationMetrics.getRequests())
+                    .append(" inFlight=").append(operationMetrics.getInFlight())
+                    .append(" total(p50/p95/p99/max ms)=").append(millis(total.getPercentile(0.5)))
+                    .append('/').append(millis(total.getPercentile(0.95)))
+                    .append('/').append(millis(total.getPercentile(0.99)))
+                    .append('/').append(millis(total.getMax()))
+                    .append(" firstByte p95=").append(millis(operationMetrics.getFirstByte().getPercentile(0.95))).append("ms")
+                    .append(" connect p95=").append(millis(operationMetrics.getConnect().getPercentile(0.95))).append("ms")
+                    .append(" sent=").append(operationMetrics.getBytesSent())
+                    .append(" received=").append(operationMetrics.getBytesReceived())
+                    .append(" status={");
+            String separator = "";
+            for (int statusCode = 0; statusCode < 600; statusCode++) {
+                long count = operationMetrics.getStatusCount(statusCode);
+                if (count > 0) {
+                    dump.append(separator).append(statusCode == 0 ? "error" : String.valueOf(statusCode)).append('=').append(count);
+                    separator = ", ";
+                }
+            }
+            dump.append("}\n");
+        }
+        return dump.toString();
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * Counters of one {@link Operation}.
+     */
+    public static final class OperationMetrics {
+        private final AtomicLong inFlight = new AtomicLong();
+        // index 0 counts requests without response
+        private final AtomicLongArray statusCodes = new AtomicLongArray(600);
+        private final LongAdder bytesSent = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+        private final LatencyHistogram connect = new LatencyHistogram();
+        private final LatencyHistogram firstByte = new LatencyHistogram();
+        private final LatencyHistogram total = new LatencyHistogram();
+
+        private OperationMetrics() {
+        }
+
+        /**
+         * @return number of completed requests
+         */
+        public long getRequests() {
+            return total.getCount();
+        }
+
+        public long getInFlight() {
+            return inFlight.get();
+        }
+
+        /**
+         * @param statusCode HTTP status code, or 0 for the requests which got no response
+         */
+        public long getStatusCount(int statusCode) {
+            return statusCode >= 0 && statusCode < 600 ? statusCodes.get(statusCode) : 0;
+        }
+
+        public long getBytesSent() {
+            return bytesSent.sum();
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived.sum();
+        }
+
+        public LatencyHistogram getConnect() {
+            return connect;
+        }
+
+        public LatencyHistogram getFirstByte() {
+            return firstByte;
+        }
+
+        public LatencyHistogram getTotal() {
+            return total;
+        }
+    }
+
+    /**
+     * Log-linear histogram of durations in nanoseconds: 8 buckets per power of two, so a percentile is at most 12.5%
+     * above the exact value.
+     */
+    public static final class LatencyHistogram {
+        private static final int SUB_BUCKETS = 8;
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        LatencyHistogram() {
+        }
+
+        /**
+         * @param nanos duration, ignored when negative (unknown)
+         */
+        void record(long nanos) {
+            if (nanos < 0) {
+                return;
+            }
+            buckets.incrementAndGet(bucket(nanos));
+            count.increment();
+            sum.add(nanos);
+            long currentMax;
+            while (nanos > (currentMax = max.get()) && !max.compareAndSet(currentMax, nanos)) {
+                // lost the race, read again
+            }
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public long getMean() {
+            long recorded = count.sum();
+            return recorded == 0 ? 0 : sum.sum() / recorded;
+        }
+
+        /**
+         * @param percentile in ]0, 1], e.g. 0.95
+         * @return upper bound of the bucket holding the percentile in nanoseconds, 0 if nothing was recorded
+         */
+        public long getPercentile(double percentile) {
+            long recorded = 0;
+            long[] snapshot = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                recorded += snapshot[i];
+            }
+            long rank = (long) Math.ceil(percentile * recorded);
+            long cumulated = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                cumulated += snapshot[i];
+                if (cumulated >= rank && snapshot[i] > 0) {
+                    return Math.min(upperBound(i), max.get());
+                }
+            }
+            return 0;
+        }
+
+        static int bucket(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) nanos;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long subBucket = bucket % SUB_BUCKETS;
+            return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.adioss.ovh;
+
+/**
+ * Receives one record per HTTP request sent by a {@link HubicClient}, classified by the {@link Operation} which sent it;
+ * see {@link HubicClientConfiguration#instrumentation(Instrumentation)} and the built-in {@link InMemoryRecorder}.
+ * <p>
+ * Methods are called on the requesting threads, for every request: implementations must be thread-safe, fast and should
+ * not allocate.
+ */
+public interface Instrumentation {
+    /**
+     * Records nothing, the default.
+     */
+    Instrumentation NONE = new Instrumentation() {
+        @Override
+        public void onStart(Operation operation) {
+        }
+
+        @Override
+        public void onComplete(Operation operation, int statusCode, long connectNanos, long firstByteNanos, long totalNanos,
+                               long bytesSent, long bytesReceived) {
+        }
+    };
+
+    /**
+     * A request of {@code operation} is about to be sent.
+     */
+    void onStart(Operation operation);
+
+    /**
+     * The request started by the matching {@link #onStart(Operation)} is over, successfully or not.
+     *
+     * @param statusCode     HTTP status code, -1 if no response was received
+     * @param connectNanos   time to open the connection, 0 if an open connection was reused, -1 if unknown
+     * @param firstByteNanos time until the response headers, request body upload included, -1 if no response
+     * @param totalNanos     time until the response body was consumed
+     * @param bytesSent      size of the request body, -1 if unknown
+     * @param bytesReceived  size of the response body read
+     */
+    void onComplete(Operation operation, int statusCode, long connectNanos, long firstByteNanos, long totalNanos,
+                    long bytesSent, long bytesReceived);
+
+    /**
+     * Client operation an HTTP request belongs to; segmented uploads, ranged downloads and paginated listings send
+     * several requests for the same operation.
+     */
+    enum Operation {
+        UPLOAD, DOWNLOAD, LIST_DIRECTORY, GET_INFO, COPY, DELETE, SET_METADATA, CREATE_DIRECTORY, TOKEN_REFRESH, OTHER
+    }
+}
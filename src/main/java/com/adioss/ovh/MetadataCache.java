@@ -0,0 +1,189 @@
+package com.adioss.ovh;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Size-bounded LRU cache of {@link HubicClient#getInfo(String)} and {@link HubicClient#listDirectory(String)} responses.
+ * An entry younger than the TTL is served without any request; an older one is revalidated with
+ * "If-None-Match"/"If-Modified-Since" and kept on a 304. Writes made through the client invalidate the affected entries;
+ * a response whose request started before such an invalidation is returned but not cached, as it may predate the write.
+ * <p>
+ * Cached {@link Response}s are shared between callers and must not be modified.
+ */
+public final class MetadataCache {
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+    // keys being fetched; their generation is bumped by an invalidation so that a fetch started before it is not cached
+    private final Map<String, Fetch> fetches = new HashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    MetadataCache(int maxEntries, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MetadataCache.Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return number of responses served from the cache without any request
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of stale entries confirmed by a 304
+     */
+    public long getRevalidations() {
+        return revalidations.get();
+    }
+
+    /**
+     * @return number of responses fetched entirely from the server
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        for (Fetch fetch : fetches.values()) {
+            fetch.generation++;
+        }
+    }
+
+    /**
+     * @param key     of the entry
+     * @param request builds the request to send on a miss or to revalidate a stale entry
+     * @param verb    sends the request
+     * @return the cached or fetched {@link Response}
+     */
+    Response get(String key, Supplier<HttpAPI> request, Function<HttpAPI, Response> verb) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        long now = System.currentTimeMillis();
+        if (entry != null && now - entry.fetchedAt < ttlMillis) {
+            hits.incrementAndGet();
+            return entry.response;
+        }
+        long generation = startFetch(key);
+        Response response;
+        boolean current;
+        try {
+            response = verb.apply(query(request, entry));
+        } finally {
+            current = endFetch(key, generation);
+        }
+        if (response != null && response.getCode() == 304 && entry != null) {
+            revalidations.incrementAndGet();
+            if (current) {
+                put(key, entry.response, now);
+            }
+            return entry.response;
+        }
+        misses.incrementAndGet();
+        if (current && response != null && response.isSuccess()) {
+            put(key, response, now);
+        }
+        return response;
+    }
+
+    private static HttpAPI query(Supplier<HttpAPI> request, Entry entry) {
+        HttpAPI query = request.get();
+        if (entry != null) {
+            String etag = entry.response.getHeader("ETag");
+            String lastModified = entry.response.getHeader("Last-Modified");
+            if (etag != null) {
+                query.header("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                query.header("If-Modified-Since", lastModified);
+            }
+        }
+        return query;
+    }
+
+    /**
+     * @return the generation of {@code key} when its fetch starts
+     */
+    private synchronized long startFetch(String key) {
+        Fetch fetch = fetches.computeIfAbsent(key, k -> new Fetch());
+        fetch.count++;
+        return fetch.generation;
+    }
+
+    /**
+     * @return true when {@code key} was not invalidated since its fetch started at {@code generation}
+     */
+    private synchronized boolean endFetch(String key, long generation) {
+        Fetch fetch = fetches.get(key);
+        if (--fetch.count == 0) {
+            fetches.remove(key);
+        }
+        return fetch.generation == generation;
+    }
+
+    /**
+     * Remove the entries of {@code path} and of its parent listing, after a write on {@code path}.
+     *
+     * @param path written path, e.g. "/Documents/titi/README.md"
+     */
+    synchronized void invalidate(String path) {
+        String normalizedPath = HubicClient.trimSlashes(path);
+        int lastSlash = normalizedPath.lastIndexOf('/');
+        String parent = lastSlash < 0 ? "" : normalizedPath.substring(0, lastSlash);
+        for (String key : new String[]{infoKey(path), listKey(path), listKey(parent)}) {
+            entries.remove(key);
+            Fetch fetch = fetches.get(key);
+            if (fetch != null) {
+                fetch.generation++;
+            }
+        }
+    }
+
+    static String infoKey(String path) {
+        return "info:" + HubicClient.trimSlashes(path);
+    }
+
+    static String listKey(String path) {
+        return "list:" + HubicClient.trimSlashes(path);
+    }
+
+    private synchronized void put(String key, Response response, long fetchedAt) {
+        entries.put(key, new Entry(response, fetchedAt));
+    }
+
+    /**
+     * Fetches in progress for a key.
+     */
+    private static final class Fetch {
+        private int count;
+        private long generation;
+    }
+
+    private static final class Entry {
+        private final Response response;
+        private final long fetchedAt;
+
+        private Entry(Response response, long fetchedAt) {
+            this.response = response;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.adioss.ovh;
+
+import com.adioss.ovh.Instrumentation.Operation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Lazy listing of a container following the Swift "marker"/"limit" pagination. Only the current page is held in
+ * memory; the next one is fetched in background while the current one is consumed.
+ * <p>
+ * Iteration throws an {@link UncheckedIOException} if a page cannot be retrieved.
+ */
+final class ObjectListing implements Iterator<StorageObject> {
+    private final HubicClient hubicClient;
+    private final String container;
+    private final String prefix;
+    private final String delimiter;
+    private final int pageSize;
+    private final Executor executor;
+
+    private Iterator<StorageObject> page;
+    private CompletableFuture<List<StorageObject>> nextPage;
+    private boolean started;
+
+    /**
+     * @param container e.g. "/default"
+     */
+    ObjectListing(HubicClient hubicClient, String container, String prefix, String delimiter, int pageSize, Executor executor) {
+        this.hubicClient = hubicClient;
+        this.container = container;
+        this.prefix = prefix;
+        this.delimiter = delimiter;
+        this.pageSize = pageSize;
+        this.executor = executor;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!started) {
+            started = true;
+            nextPage = CompletableFuture.completedFuture(fetch(null));
+        }
+        while ((page == null || !page.hasNext()) && nextPage != null) {
+            List<StorageObject> objects = join(nextPage);
+            nextPage = null;
+            if (objects.size() == pageSize) {
+                String marker = objects.get(objects.size() - 1).getName();
+                nextPage = CompletableFuture.supplyAsync(() -> fetch(marker), executor);
+            }
+            page = objects.iterator();
+        }
+        return page != null && page.hasNext();
+    }
+
+    @Override
+    public StorageObject next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.next();
+    }
+
+    /**
+     * curl -H "X-Auth-Token: YOUR_AUTH_TOKEN" "ENDPOINT_URL/default?format=json&limit=1000&prefix=Documents/&marker=Documents/a.txt" -i -X GET
+     */
+    private List<StorageObject> fetch(String marker) {
+        StringBuilder query = new StringBuilder(container).append("?format=json&limit=").append(pageSize);
+        if (prefix != null && !prefix.isEmpty()) {
+            query.append("&prefix=").append(HubicClient.encode(prefix));
+        }
+        if (delimiter != null) {
+            query.append("&delimiter=").append(HubicClient.encode(delimiter));
+        }
+        if (marker != null) {
+            query.append("&marker=").append(HubicClient.encode(marker));
+        }
+        Response response = hubicClient.storage(Operation.LIST_DIRECTORY, query.toString()).json(StorageObject::readList).get();
+        if (response == null || !response.isSuccess() || (response.getCode() != 204 && response.getContent() == null)) {
+            throw new UncheckedIOException(new IOException("Impossible to list " + prefix + " after " + marker
+                    + (response == null ? "" : ": " + response.getCode())));
+        }
+        if (response.getCode() == 204) {
+            return new ArrayList<>();
+        }
+        @SuppressWarnings("unchecked")
+        List<StorageObject> objects = (List<StorageObject>) response.getContent();
+        return objects;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new IOException("Listing interrupted", e));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw (UncheckedIOException) e.getCause();
+            }
+            throw new UncheckedIOException(new IOException(e.getCause()));
+        }
+    }
+}
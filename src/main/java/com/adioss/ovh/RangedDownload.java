@@ -0,0 +1,197 @@
+package com.adioss.ovh;
+
+import com.adioss.ovh.Instrumentation.Operation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Download of an object by byte ranges: a HEAD gives the size, the target is preallocated then ranges are fetched
+ * concurrently and written with positional writes into a shared {@link FileChannel}.
+ */
+final class RangedDownload {
+    private static final Logger LOG = LoggerFactory.getLogger(RangedDownload.class);
+
+    private final HubicClient hubicClient;
+    private final HubicClientConfiguration configuration;
+
+    RangedDownload(HubicClient hubicClient, HubicClientConfiguration configuration) {
+        this.hubicClient = hubicClient;
+        this.configuration = configuration;
+    }
+
+    /**
+     * @param source of the element to download
+     * @param target output path
+     * @return a {@link Response} holding the HEAD headers and {@code target} as content, or the first failing response
+     */
+    Response download(String source, Path target) {
+        Response info = hubicClient.getInfo(source);
+        if (info == null || !info.isSuccess()) {
+            return info;
+        }
+        long size = contentLength(info);
+        if (size <= 0 || size <= configuration.getDownloadThreshold() || Compression.isCompressed(info)) {
+            // ranges of a compressed body cannot be decompressed apart
+            return hubicClient.storage(Operation.DOWNLOAD, "/default" + source).binary(target).decompress().get();
+        }
+        TransferJournal journal = null;
+        try {
+            if (configuration.isResumable()) {
+                if (!Files.exists(target) || Files.size(target) != size) {
+                    Files.deleteIfExists(TransferJournal.pathOf(target));
+                }
+                journal = TransferJournal.open(target, source + " " + size + " " + info.getHeader("ETag") + " " + configuration.getDownloadRangeSize());
+                if (journal.isResumed()) {
+                    LOG.info("Resuming download of " + source + ", " + journal.getCompleted().size() + " ranges already received");
+                }
+            }
+            Response result;
+            try (FileChannel fileChannel = journal != null && journal.isResumed()
+                    ? FileChannel.open(target, StandardOpenOption.WRITE)
+                    : FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                // a resumed target already has its size: writing its last byte would erase a range already received
+                if (fileChannel.size() < size) {
+                    fileChannel.write(ByteBuffer.allocate(1), size - 1);
+                }
+                result = downloadRanges(source, fileChannel, size, info, journal);
+            }
+            if (result != null && result != info && result.isSuccess()) {
+                // the server ignored the Range header and nothing was written: fetch the whole object at once
+                LOG.warn(source + " served without ranges, downloading it in a single request");
+                if (journal != null) {
+                    journal.delete();
+                }
+                Response whole = hubicClient.storage(Operation.DOWNLOAD, "/default" + source).binary(target).get();
+                if (whole == null || !whole.isSuccess()) {
+                    Files.deleteIfExists(target);
+                }
+                return whole;
+            }
+            if (result != info) {
+                if (journal == null) {
+                    // nothing to resume from: do not leave a preallocated file looking like a complete download
+                    Files.deleteIfExists(target);
+                }
+                return result;
+            }
+            if (journal != null) {
+                journal.delete();
+            }
+            return new Response(info.getCode(), info.getHeaders(), target);
+        } catch (IOException e) {
+            LOG.error("Impossible to download " + source + " to " + target, e);
+            return null;
+        } finally {
+            SegmentedUpload.closeQuietly(journal);
+        }
+    }
+
+    /**
+     * @return {@code info} when every range was written, otherwise the first {@link Response} which is not a 206 (a
+     * 2xx one when the server ignored the range), a 412 if the object changed during the download or null if a range
+     * could not be fetched entirely
+     */
+    private Response downloadRanges(String source, FileChannel fileChannel, long size, Response info, TransferJournal journal) throws IOException {
+        String etag = info.getHeader("ETag");
+        long rangeSize = configuration.getDownloadRangeSize();
+        int rangeCount = (int) ((size + rangeSize - 1) / rangeSize);
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(configuration.getDownloadParallelism(), rangeCount));
+        // set on the first failure: ranges not started yet are skipped, the running ones are let finish so that they are
+        // journaled, and the shared channel is never closed under them by an interruption
+        AtomicBoolean aborted = new AtomicBoolean();
+        try {
+            List<Future<Response>> futures = new ArrayList<>(rangeCount);
+            for (int i = 0; i < rangeCount; i++) {
+                if (journal != null && journal.getCompleted().containsKey(i)) {
+                    futures.add(null);
+                    continue;
+                }
+                int index = i;
+                futures.add(executorService.submit(() -> aborted.get() ? null : downloadRange(source, fileChannel, index, size, etag, journal)));
+            }
+            for (int i = 0; i < rangeCount; i++) {
+                if (futures.get(i) == null) {
+                    continue;
+                }
+                Response range = futures.get(i).get();
+                if (range == null || range.getCode() != 206 || !isExpectedRange(range, i, size, etag)) {
+                    aborted.set(true);
+                    if (range != null && range.getCode() == 206 && etag != null && !etag.equals(range.getHeader("ETag"))) {
+                        LOG.error(source + " changed during download");
+                        return new Response(412, range.getHeaders(), null);
+                    }
+                    LOG.error("Range " + i + " of " + source + " failed");
+                    return range != null && range.getCode() != 206 ? range : null;
+                }
+            }
+            return info;
+        } catch (ExecutionException e) {
+            aborted.set(true);
+            LOG.error("Ranged download of " + source + " failed", e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            aborted.set(true);
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            executorService.shutdown();
+            awaitTermination(executorService, "ranges");
+        }
+    }
+
+    /**
+     * Fetch range {@code index} and journal it as soon as it is confirmed, whatever the outcome of the other ranges.
+     */
+    private Response downloadRange(String source, FileChannel fileChannel, int index, long size, String etag, TransferJournal journal) throws IOException {
+        long rangeSize = configuration.getDownloadRangeSize();
+        long position = index * rangeSize;
+        long last = Math.min(position + rangeSize, size) - 1;
+        Response range = hubicClient.storage(Operation.DOWNLOAD, "/default" + source)
+                .header("Range", "bytes=" + position + "-" + last)
+                .binary(fileChannel, position)
+                .get();
+        if (journal != null && range != null && range.getCode() == 206 && isExpectedRange(range, index, size, etag)) {
+            journal.complete(index, etag);
+        }
+        return range;
+    }
+
+    private boolean isExpectedRange(Response range, int index, long size, String etag) {
+        long rangeSize = configuration.getDownloadRangeSize();
+        long expected = Math.min(rangeSize, size - index * rangeSize);
+        return Long.valueOf(expected).equals(range.getContent()) && (etag == null || etag.equals(range.getHeader("ETag")));
+    }
+
+    /**
+     * Wait for the tasks of {@code executorService}, already shut down, without interrupting them.
+     */
+    static void awaitTermination(ExecutorService executorService, String tasks) {
+        try {
+            while (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.warn("Still waiting for " + tasks + " in progress");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static long contentLength(Response response) {
+        String contentLength = response.getHeader("Content-Length");
+        return contentLength == null ? -1 : Long.parseLong(contentLength);
+    }
+}
@@ -0,0 +1,196 @@
+package com.adioss.ovh;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Body of a request sent by a {@link Transport}, either written to an {@link OutputStream} or read from an
+ * {@link InputStream} depending on what the transport needs. Bodies are replayable: both methods can be called again to
+ * resend the request.
+ */
+public final class RequestBody {
+    static final int BUFFER_SIZE = 256 * 1024;
+    // producers of the bodies read through openStream(), one per body being read; idle threads expire
+    private static final ExecutorService WRITER_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "hubic-body-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long length;
+    private final Writer writer;
+    private final Source source;
+
+    private RequestBody(long length, Writer writer, Source source) {
+        this.length = length;
+        this.writer = writer;
+        this.source = source;
+    }
+
+    static RequestBody ofBytes(byte[] bytes) {
+        return new RequestBody(bytes.length, outputStream -> outputStream.write(bytes), () -> new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * {@code length} bytes of {@code fileChannel} starting at {@code position}, read with positional reads so the channel
+     * can be shared by concurrent requests.
+     */
+    static RequestBody ofFileRegion(FileChannel fileChannel, long position, long length) {
+        return new RequestBody(length, outputStream -> writeFileRegion(fileChannel, position, length, outputStream),
+                () -> new FileRegionInputStream(fileChannel, position, length));
+    }
+
+    /**
+     * @param length of the body, -1 if unknown (the transport then uses chunked transfer encoding)
+     * @param writer produces the body
+     */
+    static RequestBody ofWriter(long length, Writer writer) {
+        return new RequestBody(length, writer, null);
+    }
+
+    /**
+     * @return the same body, fed to {@code digest} while it is sent; the digest is reset each time the body is sent
+     * again, so after a request it holds the digest of the bytes of the last attempt only
+     */
+    RequestBody digesting(MessageDigest digest) {
+        Source digestingSource = source == null ? null : () -> {
+            digest.reset();
+            return new DigestInputStream(source.open(), digest);
+        };
+        return new RequestBody(length, outputStream -> {
+            digest.reset();
+            writer.write(new DigestOutputStream(outputStream, digest));
+        }, digestingSource);
+    }
+
+    /**
+     * @return the same body, sent at the pace allowed by {@code ticket}
+     */
+    RequestBody shaped(BandwidthScheduler.Ticket ticket) {
+        Source shapedSource = source == null ? null : () -> ticket.sending(source.open());
+        return new RequestBody(length, outputStream -> writer.write(ticket.sending(outputStream)), shapedSource);
+    }
+
+    /**
+     * @return the length of the body, -1 if unknown
+     */
+    public long getLength() {
+        return length;
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        writer.write(outputStream);
+    }
+
+    /**
+     * @return a stream of the body, to close once the request ends; a body only known as a writer is produced by a
+     * pooled background thread through a pipe, and closing the stream makes its writer fail instead of blocking forever
+     * on a pipe nobody reads
+     */
+    public InputStream openStream() throws IOException {
+        if (source != null) {
+            return source.open();
+        }
+        PipedInputStream pipedInputStream = new PipedInputStream(BUFFER_SIZE);
+        PipedOutputStream pipedOutputStream = new PipedOutputStream(pipedInputStream);
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        WRITER_EXECUTOR.execute(() -> {
+            try (OutputStream outputStream = pipedOutputStream) {
+                writer.write(outputStream);
+            } catch (IOException e) {
+                failure.set(e);
+            }
+        });
+        return new FilterInputStream(pipedInputStream) {
+            @Override
+            public int read() throws IOException {
+                return checkFailure(super.read());
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                return checkFailure(super.read(bytes, offset, length));
+            }
+
+            // a truncated body must not look like a complete one
+            private int checkFailure(int read) throws IOException {
+                if (read == -1 && failure.get() != null) {
+                    throw failure.get();
+                }
+                return read;
+            }
+        };
+    }
+
+    private static void writeFileRegion(FileChannel fileChannel, long position, long length, OutputStream outputStream) throws IOException {
+        // the connection only exposes an OutputStream: a heap buffer avoids an extra copy out of a direct one
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(length, 1)));
+        long written = 0;
+        while (written < length) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), length - written));
+            int read = fileChannel.read(buffer, position + written);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file after " + written + " bytes");
+            }
+            outputStream.write(buffer.array(), 0, read);
+            written += read;
+        }
+    }
+
+    /**
+     * Produces a body into an {@link OutputStream}.
+     */
+    interface Writer {
+        void write(OutputStream outputStream) throws IOException;
+    }
+
+    private interface Source {
+        InputStream open() throws IOException;
+    }
+
+    private static final class FileRegionInputStream extends InputStream {
+        private final FileChannel fileChannel;
+        private final long end;
+        private long position;
+
+        private FileRegionInputStream(FileChannel fileChannel, long position, long length) {
+            this.fileChannel = fileChannel;
+            this.position = position;
+            this.end = position + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int read = fileChannel.read(ByteBuffer.wrap(bytes, offset, (int) Math.min(length, end - position)), position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file at " + position);
+            }
+            position += read;
+            return read;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.adioss.ovh;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Retry, hedging and circuit breaker settings of a {@link ResilientTransport}. Use {@link #defaultPolicy()} and override
+ * what is needed, then pass it to {@link HubicClientConfiguration#resiliencePolicy(ResiliencePolicy)}. A policy must
+ * not be modified once the client is created.
+ */
+public class ResiliencePolicy {
+    private int maxAttempts = 4;
+    private long baseDelayMillis = 200;
+    private long maxDelayMillis = 10_000;
+    private Set<Integer> retryableStatusCodes = new HashSet<>(Arrays.asList(429, 500, 502, 503, 504));
+    private boolean hedging;
+    private int circuitBreakerThreshold = 5;
+    private long circuitBreakerOpenMillis = 30_000;
+
+    /**
+     * @return 4 attempts with backoff from 200ms to 10s on 429/5xx, no hedging, circuit opened for 30s after 5
+     * consecutive failures
+     */
+    public static ResiliencePolicy defaultPolicy() {
+        return new ResiliencePolicy();
+    }
+
+    /**
+     * @return a policy sending each request once, without hedging nor circuit breaker
+     */
+    public static ResiliencePolicy noRetry() {
+        return new ResiliencePolicy().maxAttempts(1).circuitBreaker(0, 0);
+    }
+
+    /**
+     * @param maxAttempts number of times an idempotent request is sent at most, 1 to disable retries
+     */
+    public ResiliencePolicy maxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be positive: " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * The delay before the retry n is drawn uniformly in [0, min(maxDelay, baseDelay * 2^n)] ("full jitter"), so that
+     * clients failing together do not retry together. A longer "Retry-After" of the server is honored, unless it exceeds
+     * {@code maxDelayMillis}: the response is then returned as is.
+     */
+    public ResiliencePolicy backoff(long baseDelayMillis, long maxDelayMillis) {
+        if (baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("backoff must satisfy 0 <= baseDelay <= maxDelay");
+        }
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        return this;
+    }
+
+    /**
+     * @param statusCodes responses retried, 429/500/502/503/504 by default
+     */
+    public ResiliencePolicy retryOn(int... statusCodes) {
+        Set<Integer> codes = new HashSet<>();
+        for (int statusCode : statusCodes) {
+            codes.add(statusCode);
+        }
+        this.retryableStatusCodes = codes;
+        return this;
+    }
+
+    /**
+     * @param hedging when true, a GET or HEAD still unanswered after the 95th percentile of the recent latencies is sent
+     *                a second time and the first response wins
+     */
+    public ResiliencePolicy hedging(boolean hedging) {
+        this.hedging = hedging;
+        return this;
+    }
+
+    /**
+     * @param threshold consecutive failures (I/O errors or 5xx) of a host after which its requests fail immediately, 0
+     *                  to disable the circuit breaker
+     * @param openMillis time during which requests fail immediately, a single trial request is then let through
+     */
+    public ResiliencePolicy circuitBreaker(int threshold, long openMillis) {
+        if (threshold < 0 || openMillis < 0) {
+            throw new IllegalArgumentException("threshold and openMillis must not be negative");
+        }
+        this.circuitBreakerThreshold = threshold;
+        this.circuitBreakerOpenMillis = openMillis;
+        return this;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getBaseDelayMillis() {
+        return baseDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public boolean isRetryable(int statusCode) {
+        return retryableStatusCodes.contains(statusCode);
+    }
+
+    public boolean isHedging() {
+        return hedging;
+    }
+
+    public int getCircuitBreakerThreshold() {
+        return circuitBreakerThreshold;
+    }
+
+    public long getCircuitBreakerOpenMillis() {
+        return circuitBreakerOpenMillis;
+    }
+}
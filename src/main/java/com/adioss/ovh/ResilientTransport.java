@@ -0,0 +1,292 @@
+package com.adioss.ovh;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.URL;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link Transport} decorator applying a {@link ResiliencePolicy}:
+ * <ul>
+ * <li>requests failing with an I/O error or a retryable status are sent again after an exponential backoff with jitter,
+ * only when it is safe: idempotent verbs, a 429 (rejected before being processed), or a connection never
+ * established</li>
+ * <li>optionally, a GET or HEAD slower than the 95th percentile of the recent ones is hedged by a second identical
+ * request</li>
+ * <li>a host failing repeatedly is given a rest: its requests fail immediately, without reaching it, until a trial
+ * request succeeds</li>
+ * </ul>
+ * {@link #close()} stops the threads sending hedged requests, not the delegate.
+ */
+public final class ResilientTransport implements Transport, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ResilientTransport.class);
+    private static final Set<String> IDEMPOTENT_VERBS = new HashSet<>(Arrays.asList("GET", "HEAD", "PUT", "DELETE", "OPTIONS", "COPY"));
+    private static final Set<String> HEDGED_VERBS = new HashSet<>(Arrays.asList("GET", "HEAD"));
+    private static final int LATENCY_WINDOW = 256;
+    private static final int HEDGE_MINIMUM_SAMPLES = 20;
+
+    private final Transport delegate;
+    private final ResiliencePolicy policy;
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private int latencyCount;
+    private final ExecutorService hedgeExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "hubic-hedge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ResilientTransport(Transport delegate, ResiliencePolicy policy) {
+        this.delegate = delegate;
+        this.policy = policy;
+    }
+
+    public static ResilientTransport createResilientTransport(Transport delegate, ResiliencePolicy policy) {
+        return new ResilientTransport(delegate, policy);
+    }
+
+    @Override
+    public TransportResponse send(String verb, URL url, Map<String, String> headers, RequestBody body) throws IOException {
+        CircuitBreaker circuitBreaker = policy.getCircuitBreakerThreshold() > 0
+                ? circuitBreakers.computeIfAbsent(url.getAuthority(), authority -> new CircuitBreaker())
+                : null;
+        boolean idempotent = IDEMPOTENT_VERBS.contains(verb);
+        for (int attempt = 1; ; attempt++) {
+            if (circuitBreaker != null) {
+                circuitBreaker.acquire(url);
+            }
+            TransportResponse response;
+            try {
+                response = attempt(verb, url, headers, body);
+            } catch (IOException e) {
+                if (circuitBreaker != null) {
+                    circuitBreaker.onFailure();
+                }
+                if (Thread.currentThread().isInterrupted() || attempt >= policy.getMaxAttempts()
+                        || !(idempotent || e instanceof ConnectException)) {
+                    throw e;
+                }
+                long delay = backoff(attempt);
+                LOG.warn(verb + " " + url + " failed (" + e.getMessage() + "), attempt " + (attempt + 1) + " in " + delay + "ms");
+                sleep(delay, verb, url);
+                continue;
+            }
+            int code = response.getCode();
+            if (circuitBreaker != null) {
+                if (code >= 500) {
+                    circuitBreaker.onFailure();
+                } else {
+                    circuitBreaker.onSuccess();
+                }
+            }
+            if (!policy.isRetryable(code) || !(idempotent || code == 429) || attempt >= policy.getMaxAttempts()) {
+                return response;
+            }
+            long retryAfter = retryAfter(response);
+            if (retryAfter > policy.getMaxDelayMillis()) {
+                return response;
+            }
+            long delay = Math.max(backoff(attempt), retryAfter);
+            response.close();
+            LOG.warn(verb + " " + url + " answered " + code + ", attempt " + (attempt + 1) + " in " + delay + "ms");
+            sleep(delay, verb, url);
+        }
+    }
+
+    /**
+     * Send once, or twice when the first request of a GET/HEAD outlasts the 95th percentile of the recent latencies.
+     */
+    private TransportResponse attempt(String verb, URL url, Map<String, String> headers, RequestBody body) throws IOException {
+        long hedgeDelay = policy.isHedging() && HEDGED_VERBS.contains(verb) ? hedgeDelayMillis() : -1;
+        if (hedgeDelay < 0 || hedgeExecutor.isShutdown()) {
+            return timed(verb, url, headers, body);
+        }
+        CompletableFuture<TransportResponse> primary = submit(verb, url, headers, body);
+        try {
+            return primary.get(hedgeDelay, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LOG.debug(verb + " " + url + " slower than " + hedgeDelay + "ms, hedging");
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            primary.thenAccept(ResilientTransport::closeQuietly);
+            throw new InterruptedIOException(verb + " " + url + " interrupted");
+        }
+        CompletableFuture<TransportResponse> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (CompletableFuture<TransportResponse> request : Arrays.asList(primary, submit(verb, url, headers, body))) {
+            request.whenComplete((response, failure) -> {
+                if (response != null) {
+                    // the slower response is discarded
+                    if (!winner.complete(response)) {
+                        closeQuietly(response);
+                    }
+                } else if (failures.incrementAndGet() == 2) {
+                    winner.completeExceptionally(failure);
+                }
+            });
+        }
+        try {
+            return winner.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            winner.thenAccept(ResilientTransport::closeQuietly);
+            throw new InterruptedIOException(verb + " " + url + " interrupted");
+        }
+    }
+
+    /**
+     * Stop the hedging threads once the requests they run complete; later requests are sent without hedging.
+     */
+    @Override
+    public void close() {
+        hedgeExecutor.shutdown();
+    }
+
+    private CompletableFuture<TransportResponse> submit(String verb, URL url, Map<String, String> headers, RequestBody body) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return timed(verb, url, headers, body);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, hedgeExecutor);
+    }
+
+    private TransportResponse timed(String verb, URL url, Map<String, String> headers, RequestBody body) throws IOException {
+        long start = System.nanoTime();
+        TransportResponse response = delegate.send(verb, url, headers, body);
+        if (HEDGED_VERBS.contains(verb) && response.getCode() < 500) {
+            recordLatency(System.nanoTime() - start);
+        }
+        return response;
+    }
+
+    private synchronized void recordLatency(long nanos) {
+        latencies[latencyCount % LATENCY_WINDOW] = nanos;
+        latencyCount++;
+    }
+
+    /**
+     * @return 95th percentile of the last {@link #LATENCY_WINDOW} GET/HEAD latencies in milliseconds, -1 while there are
+     * too few of them
+     */
+    private long hedgeDelayMillis() {
+        long[] window;
+        synchronized (this) {
+            if (latencyCount < HEDGE_MINIMUM_SAMPLES) {
+                return -1;
+            }
+            window = Arrays.copyOf(latencies, Math.min(latencyCount, LATENCY_WINDOW));
+        }
+        Arrays.sort(window);
+        return TimeUnit.NANOSECONDS.toMillis(window[(int) Math.ceil(window.length * 0.95) - 1]);
+    }
+
+    private long backoff(int attempt) {
+        long ceiling = policy.getBaseDelayMillis() << Math.min(attempt - 1, 30);
+        if (ceiling <= 0 || ceiling > policy.getMaxDelayMillis()) {
+            ceiling = policy.getMaxDelayMillis();
+        }
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * @return the delay asked by "Retry-After", in seconds or as an HTTP date, 0 if none
+     */
+    static long retryAfter(TransportResponse response) {
+        String retryAfter = Response.firstHeader(response.getHeaders(), "Retry-After");
+        if (retryAfter == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                return Math.max(0, ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli()
+                        - System.currentTimeMillis());
+            } catch (DateTimeParseException ignored) {
+                return 0;
+            }
+        }
+    }
+
+    private static void sleep(long millis, String verb, URL url) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(verb + " " + url + " interrupted while waiting to retry");
+        }
+    }
+
+    private static IOException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+        return cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    }
+
+    private static void closeQuietly(TransportResponse response) {
+        try {
+            response.close();
+        } catch (IOException e) {
+            LOG.debug("Impossible to close discarded response", e);
+        }
+    }
+
+    /**
+     * Closed while the host answers, open (failing fast) for a while after too many consecutive failures, then half open:
+     * a single trial request decides whether it closes again.
+     */
+    private final class CircuitBreaker {
+        private int consecutiveFailures;
+        private long openedAt = -1;
+        private boolean trialInFlight;
+
+        synchronized void acquire(URL url) throws IOException {
+            if (openedAt < 0) {
+                return;
+            }
+            if (trialInFlight || System.currentTimeMillis() - openedAt < policy.getCircuitBreakerOpenMillis()) {
+                throw new IOException("Circuit open for " + url.getAuthority() + " after " + consecutiveFailures + " consecutive failures");
+            }
+            trialInFlight = true;
+        }
+
+        synchronized void onSuccess() {
+            consecutiveFailures = 0;
+            openedAt = -1;
+            trialInFlight = false;
+        }
+
+        synchronized void onFailure() {
+            consecutiveFailures++;
+            trialInFlight = false;
+            if (openedAt >= 0 || consecutiveFailures >= policy.getCircuitBreakerThreshold()) {
+                openedAt = System.currentTimeMillis();
+            }
+        }
+    }
+}
@@ -18,11 +18,38 @@ public class Response {
         return code;
     }
 
+    /**
+     * @return true for a 2xx status code
+     */
+    public boolean isSuccess() {
+        return code >= 200 && code < 300;
+    }
+
     public Map<String, List<String>> getHeaders() {
         return headers;
     }
 
+    /**
+     * @param name of the header, case insensitive
+     * @return the first value of the header or null if absent
+     */
+    public String getHeader(String name) {
+        return firstHeader(headers, name);
+    }
+
     public Object getContent() {
         return content;
     }
+
+    static String firstHeader(Map<String, List<String>> headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && header.getValue() != null && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,312 @@
+package com.adioss.ovh;
+
+import com.adioss.ovh.Instrumentation.Operation;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Upload of a file as a Swift large object: the file is cut into segments PUT concurrently into
+ * {@link #SEGMENTS_CONTAINER} from a shared {@link FileChannel}, then a manifest is published at the target path.
+ */
+final class SegmentedUpload {
+    private static final Logger LOG = LoggerFactory.getLogger(SegmentedUpload.class);
+    static final String SEGMENTS_CONTAINER = "/default_segments";
+
+    private final HubicClient hubicClient;
+    private final HubicClientConfiguration configuration;
+
+    SegmentedUpload(HubicClient hubicClient, HubicClientConfiguration configuration) {
+        this.hubicClient = hubicClient;
+        this.configuration = configuration;
+    }
+
+    /**
+     * Once the manifest is published, the segments of the manifest it replaced are deleted. The segments of a failed
+     * upload are deleted too, unless it is resumable.
+     *
+     * @param source     {@link Path} of the source file to upload
+     * @param targetPath target path in the default container
+     * @return the {@link Response} of the manifest creation, or of the first failing segment
+     */
+    Response upload(Path source, String targetPath) {
+        TransferJournal journal = null;
+        try (FileChannel fileChannel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = fileChannel.size();
+            long segmentSize = configuration.getSegmentSize();
+            int segmentCount = (int) Math.max(1, (size + segmentSize - 1) / segmentSize);
+            String prefix = SEGMENTS_CONTAINER + targetPath + "/" + System.currentTimeMillis() + "/" + size + "/" + segmentSize + "/";
+            if (configuration.isResumable()) {
+                journal = TransferJournal.open(source, source.toAbsolutePath() + " " + size + " " + Files.getLastModifiedTime(source).toMillis()
+                        + " " + targetPath + " " + segmentSize);
+                if (journal.getProperty("prefix") != null) {
+                    prefix = journal.getProperty("prefix");
+                    LOG.info("Resuming upload of " + source + ", " + journal.getCompleted().size() + "/" + segmentCount + " segments already sent");
+                } else {
+                    journal.setProperty("prefix", prefix);
+                }
+            }
+
+            Response container = hubicClient.storage(Operation.UPLOAD, SEGMENTS_CONTAINER).put();
+            if (container == null || !container.isSuccess()) {
+                return container;
+            }
+            List<Response> segments = uploadSegments(fileChannel, prefix, size, segmentSize, segmentCount, journal);
+            Response last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            Response failure = last != null && !last.isSuccess() ? last : null;
+            if (failure == null && segments.size() == segmentCount) {
+                // read before it is replaced: the segments of the previous manifest are referenced by nothing afterwards
+                List<String> previousSegments = manifestSegments(hubicClient, targetPath);
+                Response manifest = publishManifest(targetPath, prefix, size, segmentSize, segments);
+                if (manifest != null && manifest.isSuccess()) {
+                    if (journal != null) {
+                        journal.delete();
+                    }
+                    String currentPrefix = prefix;
+                    previousSegments.removeIf(segmentPath -> segmentPath.startsWith(currentPrefix));
+                    deleteSegments(previousSegments);
+                    return manifest;
+                }
+                failure = manifest;
+            }
+            if (journal == null) {
+                // nothing will resume this upload
+                deleteSegments(listSegments(hubicClient, prefix.substring(1)));
+            }
+            return failure;
+        } catch (IOException e) {
+            LOG.error("Impossible to upload " + source + " as segments", e);
+            return null;
+        } finally {
+            closeQuietly(journal);
+        }
+    }
+
+    /**
+     * @return the successful segment responses in order; when a segment fails, the list stops with its response (or
+     * is shorter than {@code segmentCount} if it could not be sent)
+     */
+    private List<Response> uploadSegments(FileChannel fileChannel, String prefix, long size, long segmentSize, int segmentCount, TransferJournal journal) {
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(configuration.getSegmentParallelism(), segmentCount));
+        // set on the first failure: segments not started yet are skipped, the running ones are let finish so that the
+        // shared channel is never closed under them by an interruption
+        AtomicBoolean aborted = new AtomicBoolean();
+        try {
+            List<Future<Response>> futures = new ArrayList<>(segmentCount);
+            for (int i = 0; i < segmentCount; i++) {
+                int index = i;
+                long position = i * segmentSize;
+                long length = Math.min(segmentSize, size - position);
+                futures.add(executorService.submit(() -> aborted.get() ? null
+                        : uploadSegment(fileChannel, prefix + segmentName(index), index, position, length, journal)));
+            }
+            List<Response> segments = new ArrayList<>(segmentCount);
+            for (int i = 0; i < segmentCount; i++) {
+                Response segment = futures.get(i).get();
+                if (segment == null) {
+                    aborted.set(true);
+                    LOG.error("Segment " + i + " of " + prefix + " could not be sent");
+                    return segments;
+                }
+                segments.add(segment);
+                if (!segment.isSuccess()) {
+                    aborted.set(true);
+                    LOG.error("Segment " + i + " of " + prefix + " failed with " + segment.getCode());
+                    return segments;
+                }
+            }
+            return segments;
+        } catch (ExecutionException e) {
+            aborted.set(true);
+            LOG.error("Segment upload of " + prefix + " failed", e.getCause());
+            return new ArrayList<>();
+        } catch (InterruptedException e) {
+            aborted.set(true);
+            Thread.currentThread().interrupt();
+            return new ArrayList<>();
+        } finally {
+            executorService.shutdown();
+            RangedDownload.awaitTermination(executorService, "segments");
+        }
+    }
+
+    /**
+     * Upload one segment, or only check it with a HEAD when the journal says it was already sent.
+     */
+    private Response uploadSegment(FileChannel fileChannel, String segmentPath, int index, long position, long length, TransferJournal journal) throws IOException {
+        if (journal != null && journal.getCompleted().containsKey(index)) {
+            Response existing = hubicClient.storage(Operation.UPLOAD, segmentPath).head();
+            if (existing != null && existing.isSuccess() && journal.getCompleted().get(index).equals(unquote(existing.getHeader("ETag")))) {
+                return existing;
+            }
+        }
+        Response segment = hubicClient.storage(Operation.UPLOAD, segmentPath).checksum().put(fileChannel, position, length);
+        if (journal != null && segment != null && segment.isSuccess()) {
+            journal.complete(index, unquote(segment.getHeader("ETag")));
+        }
+        return segment;
+    }
+
+    /**
+     * curl -H "X-Auth-Token: YOUR_AUTH_TOKEN" -H "X-Object-Manifest: default_segments/titi/big.iso/..." ENDPOINT_URL/default/titi/big.iso -i -X PUT
+     * <p>
+     * or, for a static manifest, PUT the JSON segment list to ENDPOINT_URL/default/titi/big.iso?multipart-manifest=put
+     */
+    private Response publishManifest(String targetPath, String prefix, long size, long segmentSize, List<Response> segments) {
+        if (configuration.getManifestType() == HubicClientConfiguration.ManifestType.DYNAMIC) {
+            return hubicClient.storage(Operation.UPLOAD, "/default" + targetPath)
+                    .header("X-Object-Manifest", prefix.substring(1))
+                    .put();
+        }
+        JsonArray manifest = new JsonArray();
+        for (int i = 0; i < segments.size(); i++) {
+            JsonObject segment = new JsonObject();
+            segment.addProperty("path", prefix + segmentName(i));
+            segment.addProperty("etag", unquote(segments.get(i).getHeader("ETag")));
+            segment.addProperty("size_bytes", Math.min(segmentSize, size - i * segmentSize));
+            manifest.add(segment);
+        }
+        return hubicClient.storage(Operation.UPLOAD, "/default" + targetPath + "?multipart-manifest=put")
+                .header("Content-Type", "application/json")
+                .put(manifest.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * curl -H "X-Auth-Token: YOUR_AUTH_TOKEN" ENDPOINT_URL/default/titi/big.iso -i -X HEAD
+     * <p>
+     * then, for a static manifest, ENDPOINT_URL/default/titi/big.iso?multipart-manifest=get -i -X GET
+     *
+     * @param path of an object of the default container, e.g. "/titi/big.iso"
+     * @return paths of the segments of {@code path} if it is a manifest, e.g. "/default_segments/titi/big.iso/...",
+     * empty for any other object or if they cannot be read
+     */
+    static List<String> manifestSegments(HubicClient hubicClient, String path) {
+        Response head = hubicClient.storage(Operation.GET_INFO, "/default" + path).head();
+        if (head == null || !head.isSuccess()) {
+            return new ArrayList<>();
+        }
+        if (head.getHeader("X-Object-Manifest") != null) {
+            return listSegments(hubicClient, head.getHeader("X-Object-Manifest"));
+        }
+        List<String> segments = new ArrayList<>();
+        if ("true".equalsIgnoreCase(head.getHeader("X-Static-Large-Object"))) {
+            Response manifest = hubicClient.storage(Operation.GET_INFO, "/default" + path + "?multipart-manifest=get").jsonArray().get();
+            if (manifest == null || !(manifest.getContent() instanceof JsonArray)) {
+                LOG.warn("Impossible to read the segments of " + path);
+                return segments;
+            }
+            for (JsonElement segment : (JsonArray) manifest.getContent()) {
+                segments.add(segment.getAsJsonObject().get("name").getAsString());
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * @param manifestPrefix value of an "X-Object-Manifest" header, e.g. "default_segments/titi/big.iso/1434/"
+     */
+    private static List<String> listSegments(HubicClient hubicClient, String manifestPrefix) {
+        int slash = manifestPrefix.indexOf('/');
+        String container = "/" + (slash < 0 ? manifestPrefix : manifestPrefix.substring(0, slash));
+        List<String> segments = new ArrayList<>();
+        try {
+            hubicClient.listObjects(container, slash < 0 ? "" : manifestPrefix.substring(slash + 1), null)
+                    .forEachRemaining(segment -> segments.add(container + "/" + segment.getName()));
+        } catch (UncheckedIOException e) {
+            LOG.warn("Impossible to list the segments of " + manifestPrefix, e);
+        }
+        return segments;
+    }
+
+    /**
+     * curl -H "X-Auth-Token: YOUR_AUTH_TOKEN" ENDPOINT_URL/default_segments/titi/big.iso/.../00000000 -i -X DELETE
+     * <p>
+     * Segments which cannot be deleted are only logged: they do not change the outcome of the upload or delete.
+     */
+    void deleteSegments(List<String> segmentPaths) {
+        if (segmentPaths.isEmpty()) {
+            return;
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(configuration.getSegmentParallelism(), segmentPaths.size()));
+        try {
+            for (String segmentPath : segmentPaths) {
+                executorService.execute(() -> {
+                    Response response = hubicClient.storage(Operation.DELETE, segmentPath).delete();
+                    if (response == null || (!response.isSuccess() && response.getCode() != 404)) {
+                        LOG.warn("Impossible to delete segment " + segmentPath + (response == null ? "" : ": " + response.getCode()));
+                    }
+                });
+            }
+        } finally {
+            executorService.shutdown();
+            RangedDownload.awaitTermination(executorService, "segment deletes");
+        }
+    }
+
+    /**
+     * @return the ETag Swift gives to the manifest of {@code source} uploaded with segments of {@code segmentSize}:
+     * MD5 of the concatenated segment MD5s, computed in a single pass over the file
+     */
+    static String manifestEtag(Path source, long segmentSize) throws IOException {
+        MessageDigest segmentsMd5 = Checksums.newMd5();
+        MessageDigest segmentMd5 = Checksums.newMd5();
+        ByteBuffer buffer = ByteBuffer.allocate(RequestBody.BUFFER_SIZE);
+        try (FileChannel fileChannel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = fileChannel.size();
+            for (long position = 0; position < size; position += segmentSize) {
+                long end = Math.min(size, position + segmentSize);
+                for (long read = position; read < end; ) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), end - read));
+                    int bytes = fileChannel.read(buffer, read);
+                    if (bytes < 0) {
+                        throw new EOFException("Unexpected end of " + source + " at " + read);
+                    }
+                    buffer.flip();
+                    segmentMd5.update(buffer);
+                    read += bytes;
+                }
+                segmentsMd5.update(Checksums.toHex(segmentMd5.digest()).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return Checksums.toHex(segmentsMd5.digest());
+    }
+
+    static void closeQuietly(TransferJournal journal) {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                LOG.warn("Impossible to close transfer journal", e);
+            }
+        }
+    }
+
+    static String segmentName(int index) {
+        return String.format("%08d", index);
+    }
+
+    static String unquote(String etag) {
+        return etag != null && etag.length() > 1 && etag.startsWith("\"") && etag.endsWith("\"") ? etag.substring(1, etag.length() - 1) : etag;
+    }
+}
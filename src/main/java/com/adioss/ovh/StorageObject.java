@@ -0,0 +1,143 @@
+package com.adioss.ovh;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An entry of a container listing.
+ */
+public final class StorageObject {
+    private final String name;
+    private final long bytes;
+    private final String hash;
+    private final Instant lastModified;
+    private final String contentType;
+    private final boolean subdirectory;
+
+    StorageObject(String name, long bytes, String hash, Instant lastModified, String contentType) {
+        this(name, bytes, hash, lastModified, contentType, false);
+    }
+
+    private StorageObject(String name, long bytes, String hash, Instant lastModified, String contentType, boolean subdirectory) {
+        this.name = name;
+        this.bytes = bytes;
+        this.hash = hash;
+        this.lastModified = lastModified;
+        this.contentType = contentType;
+        this.subdirectory = subdirectory;
+    }
+
+    /**
+     * Decode a JSON array of listing entries directly from {@code jsonReader}.
+     */
+    static List<StorageObject> readList(JsonReader jsonReader) throws IOException {
+        List<StorageObject> storageObjects = new ArrayList<>();
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            storageObjects.add(read(jsonReader));
+        }
+        jsonReader.endArray();
+        return storageObjects;
+    }
+
+    static StorageObject read(JsonReader jsonReader) throws IOException {
+        String name = null;
+        long bytes = 0;
+        String hash = null;
+        String lastModified = null;
+        String contentType = null;
+        String subdir = null;
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            String key = jsonReader.nextName();
+            if (jsonReader.peek() == JsonToken.NULL) {
+                jsonReader.nextNull();
+                continue;
+            }
+            switch (key) {
+                case "name":
+                    name = jsonReader.nextString();
+                    break;
+                case "bytes":
+                    bytes = jsonReader.nextLong();
+                    break;
+                case "hash":
+                    hash = jsonReader.nextString();
+                    break;
+                case "last_modified":
+                    lastModified = jsonReader.nextString();
+                    break;
+                case "content_type":
+                    contentType = jsonReader.nextString();
+                    break;
+                case "subdir":
+                    subdir = jsonReader.nextString();
+                    break;
+                default:
+                    jsonReader.skipValue();
+            }
+        }
+        jsonReader.endObject();
+        if (subdir != null) {
+            return new StorageObject(subdir, 0, null, null, null, true);
+        }
+        return new StorageObject(name, bytes, hash, parseLastModified(lastModified), contentType);
+    }
+
+    /**
+     * @param lastModified as returned by Swift, UTC without zone, e.g. "2016-02-23T12:34:56.123456"
+     */
+    static Instant parseLastModified(String lastModified) {
+        return lastModified == null ? null : LocalDateTime.parse(lastModified).toInstant(ZoneOffset.UTC);
+    }
+
+    /**
+     * @return full name of the object in the container, e.g. "Documents/zap.sh"
+     */
+    public String getName() {
+        return name;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return MD5 of the content as returned by Swift
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public boolean isDirectory() {
+        return "application/directory".equals(contentType);
+    }
+
+    /**
+     * @return true for a common prefix ("subdir") returned by a listing with a delimiter, {@link #getName()} being the
+     * prefix ending with the delimiter
+     */
+    public boolean isSubdirectory() {
+        return subdirectory;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + bytes + " bytes, " + contentType + ")";
+    }
+}
@@ -0,0 +1,31 @@
+package com.adioss.ovh;
+
+/**
+ * Swift token and storage endpoint returned by /account/credentials, replaced as a whole on renewal.
+ */
+final class SwiftCredentials {
+    private final String token;
+    private final String endpoint;
+    private final long expiresAt;
+
+    SwiftCredentials(String token, String endpoint, long expiresAt) {
+        this.token = token;
+        this.endpoint = endpoint;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return expiry date in milliseconds since epoch
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+}
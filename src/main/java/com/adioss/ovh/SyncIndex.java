@@ -0,0 +1,133 @@
+package com.adioss.ovh;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Local manifest of a {@link DirectorySync}: for each file last synchronized, its size, modification time, MD5 and the
+ * hash the server reported. A file whose size and modification time did not change is not hashed again.
+ * <p>
+ * One line per file, "size mtime md5 remoteHash relativePath" separated by tabs, after a "hubic-sync-index 1" header;
+ * the file is replaced atomically on save.
+ */
+final class SyncIndex {
+    private static final String HEADER = "hubic-sync-index 1";
+    private static final String UNKNOWN = "-";
+
+    private final Map<String, Entry> entries;
+
+    private SyncIndex(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    static SyncIndex empty() {
+        return new SyncIndex(new HashMap<>());
+    }
+
+    /**
+     * @return the index saved at {@code path}, empty if there is none or it cannot be read
+     */
+    static SyncIndex load(Path path) throws IOException {
+        Map<String, Entry> entries = new HashMap<>();
+        if (!Files.isRegularFile(path)) {
+            return new SyncIndex(entries);
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine())) {
+                return new SyncIndex(entries);
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 5);
+                if (fields.length == 5) {
+                    entries.put(fields[4], new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2],
+                            UNKNOWN.equals(fields[3]) ? null : fields[3]));
+                }
+            }
+        }
+        return new SyncIndex(entries);
+    }
+
+    Entry get(String relativePath) {
+        return entries.get(relativePath);
+    }
+
+    void put(String relativePath, Entry entry) {
+        entries.put(relativePath, entry);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    void save(Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (Map.Entry<String, Entry> entry : new TreeMap<>(entries).entrySet()) {
+                Entry value = entry.getValue();
+                writer.write(value.size + "\t" + value.lastModified + "\t" + value.md5 + "\t"
+                        + (value.remoteHash == null ? UNKNOWN : value.remoteHash) + "\t" + entry.getKey());
+                writer.newLine();
+            }
+        }
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    static final class Entry {
+        private final long size;
+        private final long lastModified;
+        private final String md5;
+        private final String remoteHash;
+
+        /**
+         * @param remoteHash hash of the object as listed by the server, differs from {@code md5} for segmented objects;
+         *                   null if unknown
+         */
+        Entry(long size, long lastModified, String md5, String remoteHash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.md5 = md5;
+            this.remoteHash = remoteHash;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        long getLastModified() {
+            return lastModified;
+        }
+
+        String getMd5() {
+            return md5;
+        }
+
+        String getRemoteHash() {
+            return remoteHash;
+        }
+
+        /**
+         * @return true if the server holds the content described by this entry
+         */
+        boolean matches(String hash) {
+            return hash != null && (hash.equalsIgnoreCase(md5) || hash.equalsIgnoreCase(remoteHash));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.adioss.ovh;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a {@link DirectorySync} run.
+ */
+public final class SyncResult {
+    private final BulkTransferResult uploads;
+    private final List<String> deleted;
+    private final List<String> failures;
+    private final int unchanged;
+    private final int hashed;
+    private final long elapsedNanos;
+
+    SyncResult(BulkTransferResult uploads, List<String> deleted, List<String> failures, int unchanged, int hashed, long elapsedNanos) {
+        this.uploads = uploads;
+        this.deleted = Collections.unmodifiableList(deleted);
+        this.failures = Collections.unmodifiableList(failures);
+        this.unchanged = unchanged;
+        this.hashed = hashed;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return the uploads of the new and modified files
+     */
+    public BulkTransferResult getUploads() {
+        return uploads;
+    }
+
+    /**
+     * @return remote paths deleted because they no longer exist locally
+     */
+    public List<String> getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * @return local files and directories that could not be read and remote paths that could not be deleted; failed uploads are in
+     * {@link #getUploads()}
+     */
+    public List<String> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return number of local files already up to date remotely
+     */
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    /**
+     * @return number of local files hashed because they were new or modified since the previous run
+     */
+    public int getHashed() {
+        return hashed;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public boolean isSuccess() {
+        return failures.isEmpty() && uploads.getFailed() == 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d uploaded, %d deleted, %d unchanged, %d hashed, %d failed in %d ms",
+                uploads.getSucceeded(), deleted.size(), unchanged, hashed, failures.size() + uploads.getFailed(), elapsedNanos / 1_000_000);
+    }
+}
@@ -0,0 +1,161 @@
+package com.adioss.ovh;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Minimal streaming writer of POSIX (ustar) tar archives, with pax extended headers for long or non-ASCII names,
+ * sizes over 8GB and extended attributes. Entries are written straight to the given stream, nothing is buffered but
+ * the current block.
+ */
+final class TarWriter {
+    private static final int BLOCK_SIZE = 512;
+    private static final long MAX_USTAR_SIZE = 077777777777L;
+
+    private final OutputStream outputStream;
+    private final byte[] buffer = new byte[RequestBody.BUFFER_SIZE];
+
+    TarWriter(OutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
+
+    /**
+     * @param name   path of the entry in the archive, e.g. "Documents/a.txt"
+     * @param file   content of the entry, exactly {@code size} bytes are read from it
+     * @param xattrs extended attributes, e.g. "user.mime_type", empty if none
+     * @throws EOFException if {@code file} became shorter than {@code size}
+     */
+    void writeFile(String name, Path file, long size, long lastModifiedMillis, Map<String, String> xattrs) throws IOException {
+        writeHeaders(name, size, lastModifiedMillis, xattrs);
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long written = 0;
+            while (written < size) {
+                int read = fileChannel.read(ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length, size - written)), written);
+                if (read < 0) {
+                    throw new EOFException(file + " changed while archived: " + written + " bytes instead of " + size);
+                }
+                outputStream.write(buffer, 0, read);
+                written += read;
+            }
+        }
+        pad(size);
+    }
+
+    /**
+     * Write an empty entry, e.g. a directory marker with a "user.mime_type" attribute.
+     */
+    void writeEmpty(String name, long lastModifiedMillis, Map<String, String> xattrs) throws IOException {
+        writeHeaders(name, 0, lastModifiedMillis, xattrs);
+    }
+
+    /**
+     * Write the two empty blocks ending the archive. The underlying stream is not closed.
+     */
+    void finish() throws IOException {
+        outputStream.write(new byte[2 * BLOCK_SIZE]);
+        outputStream.flush();
+    }
+
+    private void writeHeaders(String name, long size, long lastModifiedMillis, Map<String, String> xattrs) throws IOException {
+        Map<String, String> pax = new LinkedHashMap<>();
+        String ustarName = name;
+        String ustarPrefix = "";
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length != name.length()) {
+            pax.put("path", name);
+            ustarName = "non-ascii";
+        } else if (nameBytes.length > 100) {
+            int split = name.lastIndexOf('/', 155);
+            if (split > 0 && name.length() - split - 1 <= 100) {
+                ustarPrefix = name.substring(0, split);
+                ustarName = name.substring(split + 1);
+            } else {
+                pax.put("path", name);
+                ustarName = name.substring(name.length() - 100);
+            }
+        }
+        if (size > MAX_USTAR_SIZE) {
+            pax.put("size", Long.toString(size));
+        }
+        for (Map.Entry<String, String> xattr : xattrs.entrySet()) {
+            pax.put("SCHILY.xattr." + xattr.getKey(), xattr.getValue());
+        }
+        if (!pax.isEmpty()) {
+            byte[] records = paxRecords(pax);
+            outputStream.write(header("PaxHeaders/" + (ustarName.length() > 89 ? ustarName.substring(0, 89) : ustarName), "",
+                    records.length, lastModifiedMillis, 'x'));
+            outputStream.write(records);
+            pad(records.length);
+        }
+        outputStream.write(header(ustarName, ustarPrefix, Math.min(size, MAX_USTAR_SIZE), lastModifiedMillis, '0'));
+    }
+
+    private void pad(long size) throws IOException {
+        int remainder = (int) (size % BLOCK_SIZE);
+        if (remainder != 0) {
+            outputStream.write(new byte[BLOCK_SIZE - remainder]);
+        }
+    }
+
+    private static byte[] header(String name, String prefix, long size, long lastModifiedMillis, char type) {
+        byte[] header = new byte[BLOCK_SIZE];
+        put(header, 0, 100, name);
+        put(header, 100, 8, "0000644");
+        put(header, 108, 8, "0000000");
+        put(header, 116, 8, "0000000");
+        put(header, 124, 12, octal(size, 11));
+        put(header, 136, 12, octal(Math.max(0, lastModifiedMillis / 1000), 11));
+        header[156] = (byte) type;
+        put(header, 257, 6, "ustar");
+        put(header, 263, 2, "00");
+        put(header, 345, 155, prefix);
+        // the checksum is computed with its own field filled with spaces
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        put(header, 148, 6, octal(checksum, 6));
+        header[154] = 0;
+        return header;
+    }
+
+    /**
+     * @return records "length key=value\n" where length counts the whole record, itself included
+     */
+    private static byte[] paxRecords(Map<String, String> pax) {
+        StringBuilder records = new StringBuilder();
+        for (Map.Entry<String, String> entry : pax.entrySet()) {
+            int payload = (" " + entry.getKey() + "=" + entry.getValue() + "\n").getBytes(StandardCharsets.UTF_8).length;
+            int length = payload + 1;
+            while (length != payload + Integer.toString(length).length()) {
+                length = payload + Integer.toString(length).length();
+            }
+            records.append(length).append(' ').append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        return records.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String octal(long value, int digits) {
+        StringBuilder octal = new StringBuilder(Long.toOctalString(value));
+        while (octal.length() < digits) {
+            octal.insert(0, '0');
+        }
+        return octal.toString();
+    }
+
+    private static void put(byte[] header, int offset, int length, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, header, offset, Math.min(bytes.length, length));
+    }
+}
@@ -0,0 +1,291 @@
+package com.adioss.ovh;
+
+import com.adioss.ovh.Instrumentation.Operation;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lifecycle of the OAuth access token and of the Swift {@link SwiftCredentials}. Both are renewed in background before
+ * they expire; requests rejected with a 401 call {@link #refresh(SwiftCredentials)}, concurrent callers of the same
+ * stale credentials sharing a single renewal.
+ */
+final class TokenManager {
+    private static final Logger LOG = LoggerFactory.getLogger(TokenManager.class);
+    private static final String PATH_OAUTH_TOKEN = "/oauth/token/";
+    private static final String PATH_CREDENTIALS = "/1.0/account/credentials";
+    private static final long REFRESH_MARGIN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long MINIMUM_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final AuthenticationInformation authenticationInformation;
+    private final CredentialStore credentialStore;
+    private final Transport transport;
+    private final Instrumentation instrumentation;
+    private final String apiUrl;
+    private final long minimumDelayMillis;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hubic-token-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile AccessToken accessToken;
+    private volatile SwiftCredentials credentials;
+    private ScheduledFuture<?> scheduledRefresh;
+
+    /**
+     * @param credentialStore where tokens are saved after each renewal, may be null
+     * @param transport       sends the OAuth and credentials requests
+     * @param instrumentation records them as {@link Operation#TOKEN_REFRESH}
+     * @param apiUrl          base URL of the hubiC API, e.g. "https://api.hubic.com"
+     */
+    TokenManager(AuthenticationInformation authenticationInformation, CredentialStore credentialStore, Transport transport,
+                 Instrumentation instrumentation, String apiUrl) {
+        this(authenticationInformation, credentialStore, transport, instrumentation, apiUrl, MINIMUM_DELAY_MILLIS);
+    }
+
+    /**
+     * @param minimumDelayMillis shortest delay before a background renewal
+     */
+    TokenManager(AuthenticationInformation authenticationInformation, CredentialStore credentialStore, Transport transport,
+                 Instrumentation instrumentation, String apiUrl, long minimumDelayMillis) {
+        this.authenticationInformation = authenticationInformation;
+        this.credentialStore = credentialStore;
+        this.transport = transport;
+        this.instrumentation = instrumentation;
+        this.apiUrl = apiUrl;
+        this.minimumDelayMillis = minimumDelayMillis;
+    }
+
+    /**
+     * Exchange the authorization code for an access token then retrieve the Swift credentials.
+     *
+     * @throws RuntimeException if the token or the credentials cannot be retrieved
+     */
+    synchronized void authenticate() {
+        accessToken = retrieveAccessToken();
+        credentials = retrieveCredentials();
+        persist();
+        scheduleRefresh();
+    }
+
+    /**
+     * Start from the {@link CredentialStore}: stored Swift credentials still valid are used without any request,
+     * otherwise they are retrieved again, after a renewal of the access token if it expired.
+     *
+     * @return false if nothing usable is stored, {@link #authenticate()} is then needed
+     */
+    synchronized boolean restore() {
+        if (credentialStore == null) {
+            return false;
+        }
+        AccessToken storedAccessToken = credentialStore.loadAccessToken(authenticationInformation.getClientId());
+        if (storedAccessToken == null) {
+            return false;
+        }
+        accessToken = storedAccessToken;
+        SwiftCredentials storedCredentials = credentialStore.loadSwiftCredentials(authenticationInformation.getClientId());
+        long now = System.currentTimeMillis();
+        try {
+            if (storedCredentials != null && storedCredentials.getExpiresAt() - now > REFRESH_MARGIN_MILLIS) {
+                credentials = storedCredentials;
+            } else {
+                if (accessToken.getExpiresAt() - now < REFRESH_MARGIN_MILLIS && refreshAccessToken() < 0) {
+                    return false;
+                }
+                credentials = retrieveCredentials();
+                persist();
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Impossible to restore stored credentials", e);
+            return false;
+        }
+        scheduleRefresh();
+        return true;
+    }
+
+    SwiftCredentials current() {
+        return credentials;
+    }
+
+    /**
+     * Stop the background renewals and their thread. The current credentials stay usable until they expire, a 401 still
+     * renews them with {@link #refresh(SwiftCredentials)}.
+     */
+    synchronized void close() {
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+        }
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Renew the Swift credentials after {@code stale} was rejected. Only the first caller for given stale credentials
+     * renews them, the others get the result.
+     *
+     * @return the renewed credentials, or the current ones if the renewal failed
+     */
+    synchronized SwiftCredentials refresh(SwiftCredentials stale) {
+        if (credentials != stale) {
+            return credentials;
+        }
+        try {
+            if (accessToken.getExpiresAt() - System.currentTimeMillis() < REFRESH_MARGIN_MILLIS) {
+                refreshAccessToken();
+            }
+            credentials = retrieveCredentials();
+            persist();
+            scheduleRefresh();
+        } catch (RuntimeException e) {
+            LOG.error("Impossible to renew credentials", e);
+        }
+        return credentials;
+    }
+
+    /**
+     * curl -H "Authorization: AUTH_TOKEN" -d "refresh_token=REFRESH_TOKEN&grant_type=refresh_token" https://api.hubic.com/oauth/token/ -i -X POST
+     *
+     * @return expiry date of the new access token in milliseconds since epoch, -1 on failure
+     */
+    synchronized long refreshAccessToken() {
+        Response post = HttpAPI.query(apiUrl + PATH_OAUTH_TOKEN)
+                .transport(transport)
+                .instrumentation(instrumentation, Operation.TOKEN_REFRESH)
+                .header("Authorization", basicAuthorization())
+                .postData("refresh_token", accessToken.getRefreshToken())
+                .postData("grant_type", "refresh_token")
+                .json()
+                .post();
+        if (post != null && post.getCode() == 200 && post.getContent() != null) {
+            JsonObject postContent = (JsonObject) post.getContent();
+            JsonElement refreshToken = postContent.get("refresh_token");
+            accessToken = new AccessToken(postContent.get("access_token").getAsString(),
+                    expiresAt(postContent.get("expires_in").getAsLong()),
+                    refreshToken != null && !refreshToken.isJsonNull() ? refreshToken.getAsString() : accessToken.getRefreshToken());
+            persist();
+            return accessToken.getExpiresAt();
+        }
+        LOG.error("Impossible to refresh access token" + (post == null ? "" : ": " + post.getCode()));
+        return -1;
+    }
+
+    private AccessToken retrieveAccessToken() {
+        Response post = HttpAPI.query(apiUrl + PATH_OAUTH_TOKEN)
+                .transport(transport)
+                .instrumentation(instrumentation, Operation.TOKEN_REFRESH)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .header("Authorization", basicAuthorization())
+                .postData("code", authenticationInformation.getCode())
+                .postData("redirect_uri", "https://api.hubic.com/sandbox/")
+                .postData("grant_type", "authorization_code")
+                .json()
+                .post();
+        if (post != null && post.getCode() == 200) {
+            JsonObject postContent = (JsonObject) post.getContent();
+            return new AccessToken(postContent.get("access_token").getAsString(),
+                    expiresAt(postContent.get("expires_in").getAsLong()),
+                    postContent.get("refresh_token").getAsString());
+        }
+        throw new RuntimeException("Impossible to retrieve accessToken");
+    }
+
+    /**
+     * curl -H "Authorization: Bearer ACCESS_TOKEN" https://api.hubic.com/1.0/account/credentials -i -X GET
+     */
+    private SwiftCredentials retrieveCredentials() {
+        Response authorization = credentialsQuery().get();
+        if (authorization != null && authorization.getCode() == 401) {
+            refreshAccessToken();
+            authorization = credentialsQuery().get();
+        }
+        if (authorization != null && authorization.getCode() == 200 && authorization.getContent() != null) {
+            JsonObject result = (JsonObject) authorization.getContent();
+            SwiftCredentials swiftCredentials = new SwiftCredentials(result.get("token").getAsString(),
+                    result.get("endpoint").getAsString(),
+                    parseExpires(result.get("expires")));
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("token:" + swiftCredentials.getToken() + " and endpoint:" + swiftCredentials.getEndpoint());
+            }
+            return swiftCredentials;
+        }
+        throw new RuntimeException("Impossible to retrieve token and/or endpoint");
+    }
+
+    private HttpAPI credentialsQuery() {
+        return HttpAPI.query(apiUrl + PATH_CREDENTIALS)
+                .transport(transport)
+                .instrumentation(instrumentation, Operation.TOKEN_REFRESH)
+                .json()
+                .header("Authorization", accessToken.getBearer());
+    }
+
+    /**
+     * Plan the next background renewal a few minutes before the first of the access token and the credentials expires.
+     */
+    private void scheduleRefresh() {
+        if (scheduler.isShutdown()) {
+            return;
+        }
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+        }
+        long expiresAt = Math.min(accessToken.getExpiresAt(), credentials.getExpiresAt());
+        long lifetime = expiresAt - System.currentTimeMillis();
+        long delay = Math.max(minimumDelayMillis, lifetime - Math.min(REFRESH_MARGIN_MILLIS, lifetime / 2));
+        scheduledRefresh = scheduler.schedule(this::proactiveRefresh, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void proactiveRefresh() {
+        SwiftCredentials stale = credentials;
+        synchronized (this) {
+            if (accessToken.getExpiresAt() - System.currentTimeMillis() < REFRESH_MARGIN_MILLIS) {
+                refreshAccessToken();
+            }
+        }
+        if (refresh(stale) == stale) {
+            synchronized (this) {
+                // renewal failed: try again later rather than waiting for the expiry
+                if (!scheduler.isShutdown()) {
+                    scheduledRefresh = scheduler.schedule(this::proactiveRefresh, minimumDelayMillis * 6, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+    private void persist() {
+        if (credentialStore != null) {
+            credentialStore.save(authenticationInformation.getClientId(), accessToken, credentials);
+        }
+    }
+
+    private String basicAuthorization() {
+        byte[] base64 = (authenticationInformation.getClientId() + ":" + authenticationInformation.getClientSecret()).getBytes();
+        return "Basic " + new String(Base64.getEncoder().encode(base64));
+    }
+
+    private static long expiresAt(long expiresInSeconds) {
+        return System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(expiresInSeconds);
+    }
+
+    /**
+     * @param expires e.g. "2016-02-24T18:47:00+01:00", the credentials are assumed valid for a day when absent
+     */
+    private static long parseExpires(JsonElement expires) {
+        if (expires != null && !expires.isJsonNull()) {
+            try {
+                return OffsetDateTime.parse(expires.getAsString()).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                LOG.warn("Unknown credentials expiry format: " + expires.getAsString());
+            }
+        }
+        return System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+    }
+}
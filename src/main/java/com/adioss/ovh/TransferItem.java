@@ -0,0 +1,49 @@
+package com.adioss.ovh;
+
+import java.nio.file.Path;
+
+/**
+ * A (local file, remote path) pair handled by a {@link BulkTransfer}.
+ */
+public final class TransferItem {
+    private final Path localPath;
+    private final String remotePath;
+    private final String md5;
+
+    private TransferItem(Path localPath, String remotePath, String md5) {
+        this.localPath = localPath;
+        this.remotePath = remotePath;
+        this.md5 = md5;
+    }
+
+    public static TransferItem of(Path localPath, String remotePath) {
+        return new TransferItem(localPath, remotePath, null);
+    }
+
+    /**
+     * @param md5 hexadecimal MD5 of {@code localPath}, sent with the upload, see {@link HubicClient#upload(Path, String, String)}
+     */
+    public static TransferItem of(Path localPath, String remotePath, String md5) {
+        return new TransferItem(localPath, remotePath, md5);
+    }
+
+    public Path getLocalPath() {
+        return localPath;
+    }
+
+    public String getRemotePath() {
+        return remotePath;
+    }
+
+    /**
+     * @return hexadecimal MD5 of the local file if known, null otherwise
+     */
+    public String getMd5() {
+        return md5;
+    }
+
+    @Override
+    public String toString() {
+        return localPath + " <-> " + remotePath;
+    }
+}
@@ -0,0 +1,124 @@
+package com.adioss.ovh;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only checkpoint file of a resumable transfer, stored next to the local file. It records an identity (what is
+ * transferred), some properties and the parts (segments or ranges) already confirmed with their ETag:
+ * <pre>
+ * identity /home/adio/big.iso 21474836480 1456218000000 /Documents/big.iso 268435456
+ * set prefix /default_segments/Documents/big.iso/1456218000000/21474836480/268435456/
+ * done 0 d41d8cd98f00b204e9800998ecf8427e
+ * </pre>
+ * A journal whose identity does not match is discarded, so a changed source or object restarts from zero.
+ */
+final class TransferJournal implements Closeable {
+    static final String SUFFIX = ".hubic-journal";
+
+    private final Path path;
+    private final Map<String, String> properties = new HashMap<>();
+    private final Map<Integer, String> completed = new ConcurrentHashMap<>();
+    private final BufferedWriter writer;
+
+    private TransferJournal(Path path, String identity) throws IOException {
+        this.path = path;
+        boolean resumed = Files.exists(path) && load(identity);
+        if (resumed) {
+            writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            // terminate a line possibly truncated by the interrupted run
+            append("");
+        } else {
+            properties.clear();
+            completed.clear();
+            writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            append("identity " + identity);
+        }
+    }
+
+    /**
+     * @param localPath file uploaded or downloaded, the journal is stored next to it
+     * @param identity  description of the transfer, a journal written for another identity is reset
+     * @return an open journal, resumed when possible
+     */
+    static TransferJournal open(Path localPath, String identity) throws IOException {
+        return new TransferJournal(pathOf(localPath), identity);
+    }
+
+    static Path pathOf(Path localPath) {
+        return localPath.resolveSibling(localPath.getFileName() + SUFFIX);
+    }
+
+    boolean isResumed() {
+        return !completed.isEmpty() || !properties.isEmpty();
+    }
+
+    String getProperty(String key) {
+        return properties.get(key);
+    }
+
+    synchronized void setProperty(String key, String value) throws IOException {
+        properties.put(key, value);
+        append("set " + key + " " + value);
+    }
+
+    /**
+     * @return ETag of each part already confirmed, by part index
+     */
+    Map<Integer, String> getCompleted() {
+        return completed;
+    }
+
+    synchronized void complete(int index, String etag) throws IOException {
+        completed.put(index, etag == null ? "" : etag);
+        append("done " + index + " " + (etag == null ? "" : etag));
+    }
+
+    /**
+     * Remove the journal once the transfer is over.
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    private boolean load(String identity) throws IOException {
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals("identity " + identity)) {
+            return false;
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            String[] elements = line.split(" ", 3);
+            if (elements.length == 3 && "set".equals(elements[0])) {
+                properties.put(elements[1], elements[2]);
+            } else if (elements.length >= 2 && "done".equals(elements[0])) {
+                try {
+                    completed.put(Integer.parseInt(elements[1]), elements.length == 3 ? elements[2] : "");
+                } catch (NumberFormatException e) {
+                    // truncated last line of an interrupted run
+                }
+            }
+        }
+        return true;
+    }
+
+    private void append(String line) throws IOException {
+        writer.write(line);
+        writer.newLine();
+        writer.flush();
+    }
+}
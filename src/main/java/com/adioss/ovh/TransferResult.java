@@ -0,0 +1,41 @@
+package com.adioss.ovh;
+
+/**
+ * Outcome of a single file transferred by a {@link BulkTransfer}.
+ */
+public final class TransferResult {
+    private final TransferItem item;
+    private final Response response;
+    private final long bytes;
+    private final long elapsedNanos;
+
+    TransferResult(TransferItem item, Response response, long bytes, long elapsedNanos) {
+        this.item = item;
+        this.response = response;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public TransferItem getItem() {
+        return item;
+    }
+
+    /**
+     * @return the {@link Response} of the underlying upload/download, null if the request could not be sent
+     */
+    public Response getResponse() {
+        return response;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public boolean isSuccess() {
+        return response != null && response.isSuccess();
+    }
+}
@@ -0,0 +1,23 @@
+package com.adioss.ovh;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * Sends the HTTP requests of a {@link HubicClient}. {@link UrlConnectionTransport} is the default,
+ * {@link HttpClientTransport} adds HTTP/2 and connection pooling; see
+ * {@link HubicClientConfiguration#transport(Transport)}. Implementations must be thread-safe.
+ */
+public interface Transport {
+
+    /**
+     * @param verb    HTTP method
+     * @param url     target of the request
+     * @param headers request headers
+     * @param body    request body, null for none
+     * @return the response, even for an error status code
+     * @throws IOException if no response could be obtained
+     */
+    TransportResponse send(String verb, URL url, Map<String, String> headers, RequestBody body) throws IOException;
+}
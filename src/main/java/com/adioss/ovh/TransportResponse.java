@@ -0,0 +1,56 @@
+package com.adioss.ovh;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Status, headers and body stream of a response received by a {@link Transport}. The body must be closed once read.
+ */
+public final class TransportResponse implements Closeable {
+    private final int code;
+    private final Map<String, List<String>> headers;
+    private final InputStream body;
+    private final long connectNanos;
+
+    /**
+     * @param body stream of the response body, null if there is none
+     */
+    public TransportResponse(int code, Map<String, List<String>> headers, InputStream body) {
+        this(code, headers, body, -1);
+    }
+
+    /**
+     * @param connectNanos time spent opening the connection, 0 if an open connection was reused, -1 if unknown
+     */
+    public TransportResponse(int code, Map<String, List<String>> headers, InputStream body, long connectNanos) {
+        this.code = code;
+        this.headers = headers;
+        this.body = body != null ? body : new ByteArrayInputStream(new byte[0]);
+        this.connectNanos = connectNanos;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    public InputStream getBody() {
+        return body;
+    }
+
+    public long getConnectNanos() {
+        return connectNanos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        body.close();
+    }
+}
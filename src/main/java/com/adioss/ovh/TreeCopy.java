@@ -0,0 +1,200 @@
+package com.adioss.ovh;
+
+import com.adioss.ovh.Instrumentation.Operation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Server-side copy and move of a whole directory tree: the source prefix is listed page by page and every object is
+ * copied with an "X-Copy-From" PUT, so no data goes through the client. At most {@code parallelism} copies run at a
+ * time and the listing is only read ahead by as many objects.
+ * <p>
+ * Both operations can be restarted after a failure: objects whose target already has the same hash are not copied
+ * again, and a move only deletes the sources whose copy was confirmed.
+ * <p>
+ * A copy turns the manifest of a large object into a plain object holding the concatenation of its segments. A move
+ * copies the manifest itself instead, so that the moved object keeps referencing the segments of the source.
+ */
+public class TreeCopy {
+    private static final Logger LOG = LoggerFactory.getLogger(TreeCopy.class);
+    // listing hash of empty objects, directory markers as well as dynamic manifests whatever their segments
+    private static final String EMPTY_MD5 = "d41d8cd98f00b204e9800998ecf8427e";
+
+    private final HubicClient hubicClient;
+    private final int parallelism;
+    private final ThreadFactory threadFactory;
+
+    private TreeCopy(HubicClient hubicClient, int parallelism, ThreadFactory threadFactory) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.hubicClient = hubicClient;
+        this.parallelism = parallelism;
+        this.threadFactory = threadFactory;
+    }
+
+    public static TreeCopy createTreeCopy(HubicClient hubicClient, int parallelism) {
+        return new TreeCopy(hubicClient, parallelism, Executors.defaultThreadFactory());
+    }
+
+    public static TreeCopy createTreeCopy(HubicClient hubicClient, int parallelism, ThreadFactory threadFactory) {
+        return new TreeCopy(hubicClient, parallelism, threadFactory);
+    }
+
+    /**
+     * Copy {@code sourcePath}, its directory marker if any and every object under it, to {@code targetPath}.
+     *
+     * @param sourcePath directory to copy, e.g. "/Documents/titi"
+     * @param targetPath copy of the directory, e.g. "/Documents/toto"
+     * @return a {@link TreeCopyResult}
+     * @throws UncheckedIOException if the source or the target cannot be listed
+     */
+    public TreeCopyResult copyTree(String sourcePath, String targetPath) {
+        return run(sourcePath, targetPath, false);
+    }
+
+    /**
+     * Same as {@link #copyTree(String, String)}, then delete the sources whose copy is confirmed (see
+     * {@link BulkDelete}). The source directory marker is only deleted once every object has moved.
+     */
+    public TreeCopyResult moveTree(String sourcePath, String targetPath) {
+        return run(sourcePath, targetPath, true);
+    }
+
+    private TreeCopyResult run(String sourcePath, String targetPath, boolean move) {
+        String source = HubicClient.trimSlashes(sourcePath);
+        String target = HubicClient.trimSlashes(targetPath);
+        if (source.isEmpty() || target.isEmpty() || source.equals(target) || target.startsWith(source + "/")) {
+            throw new IllegalArgumentException("Impossible to copy " + sourcePath + " to " + targetPath);
+        }
+        long start = System.nanoTime();
+        Copy copy = new Copy(listHashes(target + "/"), move);
+        Response root = hubicClient.storage(Operation.GET_INFO, "/default/" + source).head();
+        if (root != null && root.isSuccess()) {
+            copy.copy(source, "/" + target, SegmentedUpload.unquote(root.getHeader("ETag")), copy.targetHashes.get(""));
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(parallelism, threadFactory);
+        try {
+            Semaphore inFlight = new Semaphore(parallelism);
+            Iterator<StorageObject> sources = hubicClient.listObjects(source + "/");
+            while (sources.hasNext()) {
+                StorageObject storageObject = sources.next();
+                String relativePath = storageObject.getName().substring(source.length() + 1);
+                inFlight.acquire();
+                executorService.execute(() -> {
+                    try {
+                        copy.copy(storageObject.getName(), "/" + target + "/" + relativePath, storageObject.getHash(),
+                                copy.targetHashes.get(relativePath));
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            inFlight.acquire(parallelism);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new IOException("Copy of " + sourcePath + " interrupted", e));
+        } finally {
+            executorService.shutdownNow();
+        }
+        List<String> deleted = new ArrayList<>();
+        List<String> undeleted = new ArrayList<>();
+        if (move) {
+            deleteSources(source, copy, deleted, undeleted);
+        }
+        return new TreeCopyResult(copy.copied, copy.skipped, copy.failed, deleted, undeleted, System.nanoTime() - start);
+    }
+
+    /**
+     * Delete the confirmed sources, the source directory marker last and only when nothing failed. Only the paths the
+     * server confirmed as deleted (or already absent) go to {@code deleted}, the others to {@code undeleted}.
+     */
+    private void deleteSources(String source, Copy copy, List<String> deleted, List<String> undeleted) {
+        String marker = "/" + source;
+        boolean hasMarker = copy.confirmed.remove(marker);
+        BulkDeleteResult result = BulkDelete.createBulkDelete(hubicClient, parallelism, threadFactory)
+                .delete(copy.confirmed.stream());
+        for (Map.Entry<String, Integer> status : result.getStatuses().entrySet()) {
+            if (BulkDeleteResult.isDeleted(status.getValue())) {
+                deleted.add(status.getKey());
+            } else {
+                LOG.warn("Impossible to delete " + status.getKey() + " after its copy: " + status.getValue());
+                undeleted.add(status.getKey());
+            }
+        }
+        if (!hasMarker) {
+            return;
+        }
+        Response response = copy.failed.isEmpty() && result.getFailed().isEmpty() ? hubicClient.deleteWithoutSegments(marker) : null;
+        if (response != null && BulkDeleteResult.isDeleted(response.getCode())) {
+            deleted.add(marker);
+        } else if (copy.failed.isEmpty()) {
+            undeleted.add(marker);
+        }
+    }
+
+    /**
+     * @return hash of each object under {@code prefix} by name relative to it, "" for the directory marker itself
+     */
+    private Map<String, String> listHashes(String prefix) {
+        Map<String, String> hashes = new HashMap<>();
+        Response root = hubicClient.storage(Operation.GET_INFO, "/default/" + prefix.substring(0, prefix.length() - 1)).head();
+        if (root != null && root.isSuccess()) {
+            hashes.put("", SegmentedUpload.unquote(root.getHeader("ETag")));
+        }
+        hubicClient.listObjects(prefix).forEachRemaining(storageObject ->
+                hashes.put(storageObject.getName().substring(prefix.length()), storageObject.getHash()));
+        return hashes;
+    }
+
+    /**
+     * State of one run, shared by the copying threads.
+     */
+    private final class Copy {
+        private final Map<String, String> targetHashes;
+        private final boolean move;
+        private final List<String> copied = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> skipped = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> failed = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> confirmed = Collections.synchronizedList(new ArrayList<>());
+
+        private Copy(Map<String, String> targetHashes, boolean move) {
+            this.targetHashes = targetHashes;
+            this.move = move;
+        }
+
+        /**
+         * @param name       of the source object in the container, e.g. "Documents/titi/a.txt"
+         * @param targetPath e.g. "/Documents/toto/a.txt"
+         */
+        private void copy(String name, String targetPath, String sourceHash, String targetHash) {
+            String path = "/" + name;
+            if (sourceHash != null && !EMPTY_MD5.equalsIgnoreCase(sourceHash) && sourceHash.equalsIgnoreCase(targetHash)) {
+                skipped.add(path);
+                confirmed.add(path);
+                return;
+            }
+            Response response = move ? hubicClient.copyManifest("default/" + name, targetPath) : hubicClient.copy("default/" + name, targetPath);
+            if (response != null && response.isSuccess()) {
+                copied.add(path);
+                confirmed.add(path);
+            } else {
+                LOG.warn("Impossible to copy " + path + " to " + targetPath + (response == null ? "" : ": " + response.getCode()));
+                failed.add(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.adioss.ovh;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a {@link TreeCopy} run, as lists of source paths.
+ */
+public final class TreeCopyResult {
+    private final List<String> copied;
+    private final List<String> skipped;
+    private final List<String> failed;
+    private final List<String> deleted;
+    private final List<String> undeleted;
+    private final long elapsedNanos;
+
+    TreeCopyResult(List<String> copied, List<String> skipped, List<String> failed, List<String> deleted, List<String> undeleted,
+                   long elapsedNanos) {
+        this.copied = Collections.unmodifiableList(new ArrayList<>(copied));
+        this.skipped = Collections.unmodifiableList(new ArrayList<>(skipped));
+        this.failed = Collections.unmodifiableList(new ArrayList<>(failed));
+        this.deleted = Collections.unmodifiableList(deleted);
+        this.undeleted = Collections.unmodifiableList(undeleted);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return sources copied by this run
+     */
+    public List<String> getCopied() {
+        return copied;
+    }
+
+    /**
+     * @return sources whose target already had the same hash, e.g. copied by a previous interrupted run
+     */
+    public List<String> getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return sources that could not be copied, kept even by a move
+     */
+    public List<String> getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return sources deleted after their copy, always empty for a copy
+     */
+    public List<String> getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * @return sources copied by a move but still present because their deletion failed, always empty for a copy
+     */
+    public List<String> getUndeleted() {
+        return undeleted;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return true when every source was copied and, for a move, deleted
+     */
+    public boolean isSuccess() {
+        return failed.isEmpty() && undeleted.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d copied, %d already copied, %d failed, %d deleted, %d not deleted in %d ms",
+                copied.size(), skipped.size(), failed.size(), deleted.size(), undeleted.size(), elapsedNanos / 1_000_000);
+    }
+}
@@ -0,0 +1,109 @@
+package com.adioss.ovh;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Recursive walk of the object namespace: each prefix is listed with the "/" delimiter and every sub-prefix found is
+ * listed in parallel, at most {@code concurrency} listings at a time. Objects are handed to the visitor as soon as
+ * their page arrives, from the worker threads, so the visitor must be thread-safe.
+ */
+public class TreeWalker {
+    private static final String DELIMITER = "/";
+
+    private final HubicClient hubicClient;
+    private final int concurrency;
+    private final ThreadFactory threadFactory;
+
+    private TreeWalker(HubicClient hubicClient, int concurrency, ThreadFactory threadFactory) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be positive: " + concurrency);
+        }
+        this.hubicClient = hubicClient;
+        this.concurrency = concurrency;
+        this.threadFactory = threadFactory;
+    }
+
+    public static TreeWalker createTreeWalker(HubicClient hubicClient, int concurrency) {
+        return new TreeWalker(hubicClient, concurrency, Executors.defaultThreadFactory());
+    }
+
+    public static TreeWalker createTreeWalker(HubicClient hubicClient, int concurrency, ThreadFactory threadFactory) {
+        return new TreeWalker(hubicClient, concurrency, threadFactory);
+    }
+
+    /**
+     * Visit every object under {@code prefix}, blocking until the whole tree is listed.
+     *
+     * @param prefix  root of the walk, e.g. "Documents/", empty for the whole container
+     * @param visitor called once per object (sub-prefixes are not visited)
+     * @throws UncheckedIOException if a listing fails, the walk is then stopped
+     */
+    public void walk(String prefix, Consumer<StorageObject> visitor) {
+        ExecutorService executorService = Executors.newFixedThreadPool(concurrency, threadFactory);
+        Walk walk = new Walk(executorService, visitor);
+        try {
+            walk.submit(prefix);
+            walk.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new IOException("Walk of " + prefix + " interrupted", e));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw (UncheckedIOException) e.getCause();
+            }
+            throw new UncheckedIOException(new IOException("Walk of " + prefix + " failed", e.getCause()));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private final class Walk {
+        private final ExecutorService executorService;
+        private final Consumer<StorageObject> visitor;
+        private final AtomicInteger pending = new AtomicInteger();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Walk(ExecutorService executorService, Consumer<StorageObject> visitor) {
+            this.executorService = executorService;
+            this.visitor = visitor;
+        }
+
+        private void submit(String prefix) {
+            pending.incrementAndGet();
+            executorService.execute(() -> {
+                try {
+                    if (!done.isDone()) {
+                        list(prefix);
+                    }
+                } catch (RuntimeException e) {
+                    done.completeExceptionally(e);
+                } finally {
+                    if (pending.decrementAndGet() == 0) {
+                        done.complete(null);
+                    }
+                }
+            });
+        }
+
+        private void list(String prefix) {
+            Iterator<StorageObject> listing = hubicClient.listObjects(prefix, DELIMITER);
+            while (listing.hasNext() && !done.isDone()) {
+                StorageObject storageObject = listing.next();
+                if (storageObject.isSubdirectory()) {
+                    submit(storageObject.getName());
+                } else {
+                    visitor.accept(storageObject);
+                }
+            }
+        }
+    }
+}
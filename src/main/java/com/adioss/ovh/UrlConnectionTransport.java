@@ -0,0 +1,73 @@
+package com.adioss.ovh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * {@link Transport} on {@link URL#openConnection()}, the default one. Connections are kept alive and reused by the JDK
+ * keep-alive cache only when response bodies are fully read; each request uses HTTP/1.1.
+ */
+public final class UrlConnectionTransport implements Transport {
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    private UrlConnectionTransport(Duration connectTimeout, Duration readTimeout) {
+        this.connectTimeoutMillis = (int) connectTimeout.toMillis();
+        this.readTimeoutMillis = (int) readTimeout.toMillis();
+    }
+
+    /**
+     * @return a transport without timeouts
+     */
+    public static UrlConnectionTransport createUrlConnectionTransport() {
+        return new UrlConnectionTransport(Duration.ZERO, Duration.ZERO);
+    }
+
+    /**
+     * @param connectTimeout timeout to open the connection, zero for none
+     * @param readTimeout    timeout between two reads of the response, zero for none
+     */
+    public static UrlConnectionTransport createUrlConnectionTransport(Duration connectTimeout, Duration readTimeout) {
+        return new UrlConnectionTransport(connectTimeout, readTimeout);
+    }
+
+    @Override
+    public TransportResponse send(String verb, URL url, Map<String, String> headers, RequestBody body) throws IOException {
+        HttpURLConnection httpURLConnection = (HttpURLConnection) url.openConnection();
+        httpURLConnection.setRequestMethod(verb);
+        httpURLConnection.setConnectTimeout(connectTimeoutMillis);
+        httpURLConnection.setReadTimeout(readTimeoutMillis);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            httpURLConnection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        if ("POST".equals(verb)) {
+            httpURLConnection.setInstanceFollowRedirects(false);
+            httpURLConnection.setUseCaches(false);
+        }
+        if (body != null) {
+            httpURLConnection.setDoOutput(true);
+            if (body.getLength() >= 0) {
+                httpURLConnection.setFixedLengthStreamingMode(body.getLength());
+            } else {
+                httpURLConnection.setChunkedStreamingMode(RequestBody.BUFFER_SIZE);
+            }
+        }
+        long start = System.nanoTime();
+        // a connection reused from the keep-alive cache takes (almost) no time
+        httpURLConnection.connect();
+        long connectNanos = System.nanoTime() - start;
+        if (body != null) {
+            try (OutputStream outputStream = httpURLConnection.getOutputStream()) {
+                body.writeTo(outputStream);
+            }
+        }
+        int code = httpURLConnection.getResponseCode();
+        InputStream inputStream = code >= 400 ? httpURLConnection.getErrorStream() : httpURLConnection.getInputStream();
+        return new TransportResponse(code, httpURLConnection.getHeaderFields(), inputStream, connectNanos);
+    }
+}
@@ -0,0 +1,110 @@
+package com.adioss.ovh;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executors;
+
+import static com.adioss.ovh.ArchiveUpload.createArchiveUpload;
+import static com.adioss.ovh.AuthenticationInformation.createAuthenticationInformationWithCode;
+import static com.adioss.ovh.HubicClient.createHubicClient;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link ArchiveUpload}.
+ */
+public class ArchiveUploadTest {
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+    private FakeHubicServer server;
+    private HubicClient hubicClient;
+    private Path localRoot;
+
+    @Before
+    public void setUp() throws Exception {
+        server = FakeHubicServer.start();
+        hubicClient = createHubicClient(createAuthenticationInformationWithCode("clientId", "clientSecret", "code"),
+                HubicClientConfiguration.defaultConfiguration().apiUrl(server.getApiUrl()));
+        localRoot = testFolder.newFolder("local").toPath();
+        for (int i = 0; i < 10; i++) {
+            createFile((i % 2 == 0 ? "" : "sub/") + "file" + i, 100 * i);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void shouldUploadFilesInArchivesOfBoundedCount() throws Exception {
+        // Given
+        ArchiveUpload archiveUpload = createArchiveUpload(hubicClient, 2, 3, 1024 * 1024, false, Executors.defaultThreadFactory());
+        int requestCount = server.getRequestCount();
+        // When
+        BulkTransferResult result = archiveUpload.uploadTree(localRoot, "/Documents/backup");
+        // Then
+        assertEquals(10, result.getSucceeded());
+        assertEquals(4, server.getRequestCount() - requestCount);
+        assertArrayEquals(Files.readAllBytes(localRoot.resolve("sub/file7")), server.getObject("default/Documents/backup/sub/file7"));
+        assertEquals("application/directory", hubicClient.getInfo("/Documents/backup/sub").getHeader("Content-Type"));
+        assertEquals("application/directory", hubicClient.getInfo("/Documents").getHeader("Content-Type"));
+    }
+
+    @Test
+    public void shouldUploadGzippedArchiveWithLongNamesAndBigFilesAlone() throws Exception {
+        // Given
+        char[] longName = new char[150];
+        Arrays.fill(longName, 'l');
+        String longPath = "/Documents/backup/" + new String(longName) + "/" + new String(longName) + ".txt";
+        Path bigFile = createFile("big.bin", 5000);
+        ArchiveUpload archiveUpload = createArchiveUpload(hubicClient, 2, 100, 4096, true, Executors.defaultThreadFactory());
+        // When
+        BulkTransferResult result = archiveUpload.upload(Arrays.asList(
+                TransferItem.of(localRoot.resolve("file2"), longPath),
+                TransferItem.of(localRoot.resolve("file4"), "/Documents/backup/\u00e9t\u00e9.txt"),
+                TransferItem.of(bigFile, "/Documents/backup/big.bin")));
+        // Then
+        assertEquals(3, result.getSucceeded());
+        assertArrayEquals(Files.readAllBytes(localRoot.resolve("file2")), server.getObject("default" + longPath));
+        assertArrayEquals(Files.readAllBytes(localRoot.resolve("file4")), server.getObject("default/Documents/backup/\u00e9t\u00e9.txt"));
+        assertArrayEquals(Files.readAllBytes(bigFile), server.getObject("default/Documents/backup/big.bin"));
+    }
+
+    @Test
+    public void shouldReportFilesRejectedByTheServer() {
+        // Given
+        server.quotaExceeded(true);
+        // When
+        BulkTransferResult result = createArchiveUpload(hubicClient, 2).uploadTree(localRoot, "/Documents/backup");
+        // Then
+        assertEquals(10, result.getFailed());
+        assertEquals(413, result.getResults().get(0).getResponse().getCode());
+    }
+
+    @Test
+    public void shouldUploadOneByOneWithoutArchiveExtraction() throws Exception {
+        // Given
+        server.bulkOperations(false);
+        // When
+        BulkTransferResult result = createArchiveUpload(hubicClient, 2).uploadTree(localRoot, "/Documents/backup");
+        // Then
+        assertEquals(10, result.getSucceeded());
+        assertArrayEquals(Files.readAllBytes(localRoot.resolve("file4")), server.getObject("default/Documents/backup/file4"));
+    }
+
+    private Path createFile(String relativePath, int size) throws Exception {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        Path file = localRoot.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        return Files.write(file, content);
+    }
+}
@@ -0,0 +1,200 @@
+package com.adioss.ovh;
+
+import com.adioss.ovh.Instrumentation.Operation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.adioss.ovh.AuthenticationInformation.createAuthenticationInformationWithCode;
+import static com.adioss.ovh.BandwidthScheduler.createBandwidthScheduler;
+import static com.adioss.ovh.HubicClient.createHubicClient;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link BandwidthScheduler}.
+ */
+public class BandwidthSchedulerTest {
+    private static final int KB = 1024;
+
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+    private FakeHubicServer server;
+    private BandwidthScheduler scheduler;
+    private HubicClient hubicClient;
+
+    @Before
+    public void setUp() throws Exception {
+        server = FakeHubicServer.start();
+        scheduler = createBandwidthScheduler();
+        hubicClient = createHubicClient(createAuthenticationInformationWithCode("clientId", "clientSecret", "code"),
+                HubicClientConfiguration.defaultConfiguration().apiUrl(server.getApiUrl()).bandwidthScheduler(scheduler));
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void shouldCapUploadsUntilLimitIsRemoved() throws Exception {
+        // Given
+        Path source = createFile("backup.bin", 100 * KB);
+        scheduler.sendLimit(100 * KB);
+        // When
+        long start = System.nanoTime();
+        Response limited = hubicClient.upload(source, "/Backups/limited.bin");
+        long limitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        scheduler.sendLimit(0);
+        start = System.nanoTime();
+        Response unlimited = hubicClient.upload(source, "/Backups/unlimited.bin");
+        long unlimitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // Then
+        assertEquals(201, limited.getCode());
+        assertEquals(201, unlimited.getCode());
+        assertTrue(limitedMillis >= 700);
+        assertTrue(unlimitedMillis < 700);
+        assertArrayEquals(Files.readAllBytes(source), server.getObject("default/Backups/limited.bin"));
+    }
+
+    @Test
+    public void shouldFollowLimitChangedDuringDownload() throws Exception {
+        // Given
+        server.putObject("default/Backups/big.bin", new byte[400 * KB]);
+        scheduler.receiveLimit(50 * KB);
+        Path target = testFolder.getRoot().toPath().resolve("big.bin");
+        long start = System.nanoTime();
+        CompletableFuture<Response> download = CompletableFuture.supplyAsync(() -> hubicClient.download("/Backups/big.bin", target));
+        // When
+        Thread.sleep(300);
+        scheduler.receiveLimit(0);
+        Response response = download.get(10, TimeUnit.SECONDS);
+        // Then
+        assertEquals(200, response.getCode());
+        assertEquals(400 * KB, Files.size(target));
+        // 8s at the initial limit
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3));
+    }
+
+    @Test
+    public void shouldNotDelayForegroundRequestsWithBackgroundUpload() throws Exception {
+        // Given
+        server.putObject("default/Documents/readme.txt", new byte[10]);
+        Path source = createFile("backup.bin", 200 * KB);
+        scheduler.sendLimit(10 * KB);
+        CompletableFuture<Response> upload = CompletableFuture.supplyAsync(() -> hubicClient.upload(source, "/Backups/backup.bin"));
+        Thread.sleep(100);
+        // When
+        long start = System.nanoTime();
+        Response info = hubicClient.getInfo("/Documents/readme.txt");
+        Response listing = hubicClient.listDirectory("Documents");
+        long foregroundMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        boolean uploadDoneEarly = upload.isDone();
+        scheduler.sendLimit(0);
+        // Then
+        assertEquals(200, info.getCode());
+        assertEquals(200, listing.getCode());
+        assertTrue(foregroundMillis < 1000);
+        assertFalse(uploadDoneEarly);
+        assertEquals(201, upload.get(10, TimeUnit.SECONDS).getCode());
+    }
+
+    @Test
+    public void shouldPauseBackgroundWhileForegroundMovesBytes() throws Exception {
+        // Given
+        BandwidthScheduler.Ticket foreground = scheduler.start(Operation.GET_INFO);
+        CompletableFuture<Void> foregroundRead = CompletableFuture.runAsync(() -> {
+            try (InputStream inputStream = foreground.receiving(new ByteArrayInputStream(new byte[20 * 100]))) {
+                byte[] buffer = new byte[100];
+                while (inputStream.read(buffer) > 0) {
+                    Thread.sleep(10);
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            } finally {
+                foreground.close();
+            }
+        });
+        BandwidthScheduler.Ticket background = scheduler.start(Operation.UPLOAD);
+        long start = System.nanoTime();
+        // When
+        long elapsedMillis = writeInBackground(background, start).get(5, TimeUnit.SECONDS);
+        // Then
+        assertTrue(elapsedMillis >= 150);
+        foregroundRead.get(5, TimeUnit.SECONDS);
+        background.close();
+    }
+
+    @Test
+    public void shouldNotPauseBackgroundForForegroundWaitingForResponse() throws Exception {
+        // Given
+        BandwidthScheduler.Ticket foreground = scheduler.start(Operation.GET_INFO);
+        Thread.sleep(100);
+        BandwidthScheduler.Ticket background = scheduler.start(Operation.UPLOAD);
+        long start = System.nanoTime();
+        // When
+        long elapsedMillis = writeInBackground(background, start).get(5, TimeUnit.SECONDS);
+        // Then
+        assertTrue(elapsedMillis < 100);
+        foreground.close();
+        background.close();
+    }
+
+    @Test
+    public void shouldApplyOperationLimitAndPriorityChanges() throws Exception {
+        // Given
+        scheduler.sendLimit(10 * KB)
+                .limit(Operation.SET_METADATA, 50 * KB)
+                .priority(Operation.UPLOAD, BandwidthScheduler.Priority.FOREGROUND);
+        // When
+        long uploadMillis = timeWrite(Operation.UPLOAD, 100 * KB);
+        long metadataMillis = timeWrite(Operation.SET_METADATA, 50 * KB);
+        // Then
+        assertTrue(uploadMillis < 1000);
+        assertTrue(metadataMillis >= 600);
+        assertEquals(BandwidthScheduler.Priority.FOREGROUND, scheduler.getPriority(Operation.UPLOAD));
+        assertEquals(50 * KB, scheduler.getLimit(Operation.SET_METADATA));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNegativeLimit() {
+        scheduler.limit(Operation.DOWNLOAD, -1);
+    }
+
+    private long timeWrite(Operation operation, int size) throws Exception {
+        long start = System.nanoTime();
+        try (BandwidthScheduler.Ticket ticket = scheduler.start(operation);
+             OutputStream outputStream = ticket.sending(new ByteArrayOutputStream())) {
+            outputStream.write(new byte[size]);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private Path createFile(String name, int size) throws Exception {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return Files.write(testFolder.getRoot().toPath().resolve(name), content);
+    }
+
+    private static CompletableFuture<Long> writeInBackground(BandwidthScheduler.Ticket background, long start) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (OutputStream outputStream = background.sending(new ByteArrayOutputStream())) {
+                outputStream.write(new byte[10]);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        });
+    }
+}
@@ -0,0 +1,136 @@
+package com.adioss.ovh;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.adioss.ovh.AuthenticationInformation.createAuthenticationInformationWithCode;
+import static com.adioss.ovh.BulkDelete.createBulkDelete;
+import static com.adioss.ovh.HubicClient.createHubicClient;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link BulkDelete}.
+ */
+public class BulkDeleteTest {
+    private FakeHubicServer server;
+    private HubicClient hubicClient;
+
+    @Before
+    public void setUp() throws Exception {
+        server = FakeHubicServer.start();
+        hubicClient = createHubicClient(createAuthenticationInformationWithCode("clientId", "clientSecret", "code"),
+                HubicClientConfiguration.defaultConfiguration().apiUrl(server.getApiUrl()));
+        for (int i = 0; i < 10; i++) {
+            server.putObject("default/Backups/2015/file" + i, new byte[i]);
+        }
+        server.putObject("default/Backups/2016/kept", new byte[1]);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void shouldDeleteInBatches() {
+        // Given
+        BulkDelete bulkDelete = createBulkDelete(hubicClient, 2, 4, Executors.defaultThreadFactory());
+        int requestCount = server.getRequestCount();
+        // When
+        BulkDeleteResult result = bulkDelete.delete(hubicClient.streamObjects("Backups/2015/").map(storageObject -> "/" + storageObject.getName()));
+        // Then
+        assertEquals(10, result.getDeleted());
+        assertTrue(result.getFailed().isEmpty());
+        assertEquals(Integer.valueOf(204), result.getStatuses().get("/Backups/2015/file3"));
+        // one listing then 3 bulk requests
+        assertEquals(4, server.getRequestCount() - requestCount);
+        assertEquals(1, server.getObjectNames().size());
+        assertNotNull(server.getObject("default/Backups/2016/kept"));
+    }
+
+    @Test
+    public void shouldReadStreamOnlyAheadOfBatchesInFlight() throws Exception {
+        // Given
+        BulkDelete bulkDelete = createBulkDelete(hubicClient, 2, 10, Executors.defaultThreadFactory());
+        CountDownLatch released = new CountDownLatch(1);
+        server.fail(exchange -> exchange.getRequestURI().getQuery() != null && exchange.getRequestURI().getQuery().contains("bulk-delete")
+                && await(released));
+        AtomicInteger consumed = new AtomicInteger();
+        Stream<String> paths = IntStream.range(0, 1000).mapToObj(i -> "/Backups/sweep/file" + i).peek(path -> consumed.incrementAndGet());
+        // When
+        CompletableFuture<BulkDeleteResult> result = CompletableFuture.supplyAsync(() -> bulkDelete.delete(paths));
+        Thread.sleep(300);
+        int consumedWhileBlocked = consumed.get();
+        server.fail(null);
+        released.countDown();
+        // Then
+        // two batches sent and a third one waiting for a slot
+        assertTrue(consumedWhileBlocked <= 30);
+        assertEquals(1000, result.get(10, TimeUnit.SECONDS).getStatuses().size());
+    }
+
+    @Test
+    public void shouldDeleteOneByOneWithoutBulkOperation() {
+        // Given
+        server.bulkOperations(false);
+        BulkDelete bulkDelete = createBulkDelete(hubicClient, 3);
+        // When
+        BulkDeleteResult result = bulkDelete.delete(Stream.concat(
+                IntStream.range(0, 10).mapToObj(i -> "/Backups/2015/file" + i), Stream.of("/Backups/missing")));
+        // Then
+        assertEquals(11, result.getDeleted());
+        assertEquals(Integer.valueOf(204), result.getStatuses().get("/Backups/2015/file0"));
+        assertEquals(Integer.valueOf(404), result.getStatuses().get("/Backups/missing"));
+        assertEquals(Stream.of("default/Backups/2016/kept").collect(Collectors.toSet()), server.getObjectNames());
+    }
+
+    @Test
+    public void shouldBatchByClusterLimit() {
+        // Given
+        server.maxDeletesPerRequest(4);
+        BulkDelete bulkDelete = createBulkDelete(hubicClient, 2);
+        int requestCount = server.getRequestCount();
+        // When
+        BulkDeleteResult result = bulkDelete.delete(IntStream.range(0, 10).mapToObj(i -> "/Backups/2015/file" + i));
+        // Then
+        assertEquals(10, result.getDeleted());
+        // "/info" then 3 bulk requests
+        assertEquals(4, server.getRequestCount() - requestCount);
+        assertEquals(1, server.getObjectNames().size());
+    }
+
+    @Test
+    public void shouldDeleteOneByOneWhenBulkResponseStatusFails() {
+        // Given
+        server.bulkDeleteFailure("502 Bad Gateway");
+        server.fail(exchange -> "DELETE".equals(exchange.getRequestMethod()) && exchange.getRequestURI().getPath().endsWith("/file3"));
+        BulkDelete bulkDelete = createBulkDelete(hubicClient, 2, 4, Executors.defaultThreadFactory());
+        // When
+        BulkDeleteResult result = bulkDelete.delete(IntStream.range(0, 10).mapToObj(i -> "/Backups/2015/file" + i));
+        // Then
+        assertEquals(9, result.getDeleted());
+        assertEquals(Collections.singletonList("/Backups/2015/file3"), result.getFailed());
+        assertEquals(Integer.valueOf(503), result.getStatuses().get("/Backups/2015/file3"));
+        assertEquals(Stream.of("default/Backups/2015/file3", "default/Backups/2016/kept").collect(Collectors.toSet()), server.getObjectNames());
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,102 @@
+package com.adioss.ovh;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.adioss.ovh.AuthenticationInformation.createAuthenticationInformationWithCode;
+import static com.adioss.ovh.BulkTransfer.createBulkTransfer;
+import static com.adioss.ovh.HubicClient.createHubicClient;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link BulkTransfer}.
+ */
+public class BulkTransferTest {
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+    private FakeHubicServer server;
+    private HubicClient hubicClient;
+    private Path localRoot;
+
+    @Before
+    public void setUp() throws Exception {
+        server = FakeHubicServer.start();
+        hubicClient = createHubicClient(createAuthenticationInformationWithCode("clientId", "clientSecret", "code"),
+                HubicClientConfiguration.defaultConfiguration().apiUrl(server.getApiUrl()));
+        localRoot = testFolder.newFolder("local").toPath();
+        createFile("a.txt", 100);
+        createFile("sub/b.txt", 200);
+        createFile("sub/deep/c.txt", 300);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void shouldUploadTreeWithItsDirectories() throws Exception {
+        // When
+        BulkTransferResult result = createBulkTransfer(hubicClient, 4).uploadTree(localRoot, "/Documents/backup");
+        // Then
+        assertEquals(3, result.getSucceeded());
+        assertEquals(0, result.getFailed());
+        assertEquals(600, result.getBytes());
+        assertArrayEquals(Files.readAllBytes(localRoot.resolve("sub/deep/c.txt")), server.getObject("default/Documents/backup/sub/deep/c.txt"));
+        assertEquals("application/directory", hubicClient.getInfo("/Documents/backup/sub").getHeader("Content-Type"));
+        assertEquals("application/directory", hubicClient.getInfo("/Documents/backup/sub/deep").getHeader("Content-Type"));
+    }
+
+    @Test
+    public void shouldFailItemsUnderDirectoryThatCannotBeCreated() throws Exception {
+        // Given
+        server.fail(exchange -> "PUT".equals(exchange.getRequestMethod()) && exchange.getRequestURI().getPath().endsWith("/Documents/backup/sub"));
+        // When
+        BulkTransferResult result = createBulkTransfer(hubicClient, 4).uploadTree(localRoot, "/Documents/backup");
+        // Then
+        assertEquals(1, result.getSucceeded());
+        assertEquals(2, result.getFailed());
+        for (TransferResult transferResult : result.getResults()) {
+            if (transferResult.getItem().getRemotePath().startsWith("/Documents/backup/sub/")) {
+                assertEquals(503, transferResult.getResponse().getCode());
+            }
+        }
+        assertNotNull(server.getObject("default/Documents/backup/a.txt"));
+        assertNull(server.getObject("default/Documents/backup/sub/b.txt"));
+        assertNull(server.getObject("default/Documents/backup/sub/deep"));
+        assertNull(server.getObject("default/Documents/backup/sub/deep/c.txt"));
+    }
+
+    @Test
+    public void shouldDownloadIntoMissingLocalDirectoriesAndReportFailures() throws Exception {
+        // Given
+        createBulkTransfer(hubicClient, 4).uploadTree(localRoot, "/Documents/backup");
+        Path target = testFolder.newFolder("target").toPath();
+        // When
+        BulkTransferResult result = createBulkTransfer(hubicClient, 2).download(Arrays.asList(
+                TransferItem.of(target.resolve("sub/deep/c.txt"), "/Documents/backup/sub/deep/c.txt"),
+                TransferItem.of(target.resolve("a.txt"), "/Documents/backup/a.txt"),
+                TransferItem.of(target.resolve("missing.txt"), "/Documents/backup/missing.txt")));
+        // Then
+        assertEquals(2, result.getSucceeded());
+        assertEquals(1, result.getFailed());
+        assertEquals("/Documents/backup/missing.txt", result.getResults().get(2).getItem().getRemotePath());
+        assertArrayEquals(Files.readAllBytes(localRoot.resolve("sub/deep/c.txt")), Files.readAllBytes(target.resolve("sub/deep/c.txt")));
+    }
+
+    private Path createFile(String relativePath, int size) throws Exception {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        Path file = localRoot.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        return Files.write(file, content);
+    }
+}
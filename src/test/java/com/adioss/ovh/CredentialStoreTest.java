@@ -0,0 +1,60 @@
+package com.adioss.ovh;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Unit test for {@link CredentialStore}.
+ */
+public class CredentialStoreTest {
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldSaveAndLoadCredentials() throws Exception {
+        // Given
+        CredentialStore credentialStore = new CredentialStore(testFolder.getRoot().toPath().resolve("credentials"));
+        // When
+        credentialStore.save("clientId", new AccessToken("access", 123L, "refresh"), new SwiftCredentials("token", "https://endpoint", 456L));
+        // Then
+        AccessToken accessToken = credentialStore.loadAccessToken("clientId");
+        SwiftCredentials swiftCredentials = credentialStore.loadSwiftCredentials("clientId");
+        assertEquals("access", accessToken.getAccessToken());
+        assertEquals("refresh", accessToken.getRefreshToken());
+        assertEquals(123L, accessToken.getExpiresAt());
+        assertEquals("token", swiftCredentials.getToken());
+        assertEquals("https://endpoint", swiftCredentials.getEndpoint());
+        assertEquals(456L, swiftCredentials.getExpiresAt());
+    }
+
+    @Test
+    public void shouldIgnoreCredentialsOfAnotherClient() {
+        // Given
+        CredentialStore credentialStore = new CredentialStore(testFolder.getRoot().toPath().resolve("credentials"));
+        credentialStore.save("clientId", new AccessToken("access", 123L, "refresh"), null);
+        // When
+        AccessToken accessToken = credentialStore.loadAccessToken("otherClientId");
+        // Then
+        assertNull(accessToken);
+        assertNull(credentialStore.loadSwiftCredentials("clientId"));
+    }
+
+    @Test
+    public void shouldRestrictFileToOwner() throws Exception {
+        // Given
+        Path path = testFolder.getRoot().toPath().resolve("credentials");
+        assumeTrue(path.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        // When
+        new CredentialStore(path).save("clientId", new AccessToken("access", 123L, "refresh"), null);
+        // Then
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(path)));
+    }
+}
@@ -0,0 +1,194 @@
+package com.adioss.ovh;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collections;
+import java.util.Random;
+
+import static com.adioss.ovh.AuthenticationInformation.createAuthenticationInformationWithCode;
+import static com.adioss.ovh.DirectorySync.createDirectorySync;
+import static com.adioss.ovh.HubicClient.createHubicClient;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
+
+/**
+ * Unit test for {@link DirectorySync}.
+ */
+public class DirectorySyncTest {
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+    private FakeHubicServer server;
+    private DirectorySync directorySync;
+    private Path localRoot;
+
+    @Before
+    public void setUp() throws Exception {
+        server = FakeHubicServer.start();
+        HubicClient hubicClient = createHubicClient(createAuthenticationInformationWithCode("clientId", "clientSecret", "code"),
+                HubicClientConfiguration.defaultConfiguration().apiUrl(server.getApiUrl()));
+        directorySync = createDirectorySync(hubicClient, 4);
+        localRoot = testFolder.newFolder("local").toPath();
+        createFile("a.txt", 100);
+        createFile("sub/b.txt", 200);
+        createFile("sub/deep/c.txt", 300);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void shouldUploadEverythingOnFirstSync() throws Exception {
+        // When
+        SyncResult result = directorySync.sync(localRoot, "/Documents/backup");
+        // Then
+        assertTrue(result.isSuccess());
+        assertEquals(3, result.getUploads().getSucceeded());
+        assertEquals(3, result.getHashed());
+        assertArrayEquals(Files.readAllBytes(localRoot.resolve("sub/deep/c.txt")), server.getObject("default/Documents/backup/sub/deep/c.txt"));
+        assertNull(server.getObject("default/Documents/backup/" + DirectorySync.INDEX_FILE_NAME));
+        assertTrue(Files.isRegularFile(localRoot.resolve(DirectorySync.INDEX_FILE_NAME)));
+    }
+
+    @Test
+    public void shouldNeitherHashNorUploadUnchangedFiles() {
+        // Given
+        directorySync.sync(localRoot, "/Documents/backup");
+        int requestCount = server.getRequestCount();
+        // When
+        SyncResult result = directorySync.sync(localRoot, "/Documents/backup");
+        // Then
+        assertTrue(result.isSuccess());
+        assertEquals(0, result.getUploads().getResults().size());
+        assertEquals(0, result.getHashed());
+        assertEquals(3, result.getUnchanged());
+        assertEquals(0, result.getDeleted().size());
+        // only the listings of "", "sub/" and "sub/deep/"
+        assertEquals(3, server.getRequestCount() - requestCount);
+    }
+
+    @Test
+    public void shouldUploadModifiedFilesAndDeleteRemovedOnes() throws Exception {
+        // Given
+        directorySync.sync(localRoot, "/Documents/backup");
+        Path modified = createFile("a.txt", 150);
+        Files.setLastModifiedTime(modified, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        Files.delete(localRoot.resolve("sub/deep/c.txt"));
+        Files.delete(localRoot.resolve("sub/deep"));
+        // When
+        SyncResult result = directorySync.sync(localRoot, "/Documents/backup");
+        // Then
+        assertTrue(result.isSuccess());
+        assertEquals(1, result.getUploads().getSucceeded());
+        assertEquals(1, result.getHashed());
+        assertEquals(1, result.getUnchanged());
+        assertTrue(result.getDeleted().contains("/Documents/backup/sub/deep/c.txt"));
+        assertTrue(result.getDeleted().contains("/Documents/backup/sub/deep"));
+        assertArrayEquals(Files.readAllBytes(modified), server.getObject("default/Documents/backup/a.txt"));
+        assertNull(server.getObject("default/Documents/backup/sub/deep/c.txt"));
+        assertNotNull(server.getObject("default/Documents/backup/sub/b.txt"));
+    }
+
+    @Test
+    public void shouldKeepRemoteCopiesOfUnreadableDirectory() throws Exception {
+        // Given
+        directorySync.sync(localRoot, "/Documents/backup");
+        Path unreadable = localRoot.resolve("sub");
+        Files.setPosixFilePermissions(unreadable, PosixFilePermissions.fromString("---------"));
+        try {
+            // the superuser reads any directory
+            assumeFalse(Files.isReadable(unreadable));
+            // When
+            SyncResult result = directorySync.sync(localRoot, "/Documents/backup");
+            // Then
+            assertFalse(result.isSuccess());
+            assertEquals(Collections.singletonList("sub"), result.getFailures());
+            assertEquals(0, result.getDeleted().size());
+            assertNotNull(server.getObject("default/Documents/backup/sub/b.txt"));
+            assertNotNull(server.getObject("default/Documents/backup/sub/deep/c.txt"));
+        } finally {
+            Files.setPosixFilePermissions(unreadable, PosixFilePermissions.fromString("rwx------"));
+        }
+    }
+
+    @Test
+    public void shouldRestoreFilesChangedRemotely() throws Exception {
+        // Given
+        directorySync.sync(localRoot, "/Documents/backup");
+        server.putObject("default/Documents/backup/sub/b.txt", new byte[]{1, 2, 3});
+        // When
+        SyncResult result = directorySync.sync(localRoot, "/Documents/backup");
+        // Then
+        assertEquals(1, result.getUploads().getSucceeded());
+        assertEquals(0, result.getHashed());
+        assertArrayEquals(Files.readAllBytes(localRoot.resolve("sub/b.txt")), server.getObject("default/Documents/backup/sub/b.txt"));
+    }
+
+    @Test
+    public void shouldRecognizeSegmentedObjectsOnceHashed() throws Exception {
+        // Given
+        directorySync = createDirectorySyncWith(HubicClientConfiguration.defaultConfiguration().segmentThreshold(150).segmentSize(100));
+        directorySync.sync(localRoot, "/Documents/backup");
+        Files.delete(localRoot.resolve(DirectorySync.INDEX_FILE_NAME));
+        // When
+        SyncResult result = directorySync.sync(localRoot, "/Documents/backup");
+        // Then
+        assertTrue(result.isSuccess());
+        assertEquals(3, result.getHashed());
+        assertEquals(3, result.getUnchanged());
+        assertEquals(0, result.getUploads().getResults().size());
+    }
+
+    @Test
+    public void shouldRecognizeCompressedObjectsOnceHashed() throws Exception {
+        // Given
+        directorySync = createDirectorySyncWith(HubicClientConfiguration.defaultConfiguration()
+                .compression(HubicClientConfiguration.Codec.GZIP, 6, 0));
+        directorySync.sync(localRoot, "/Documents/backup");
+        Files.delete(localRoot.resolve(DirectorySync.INDEX_FILE_NAME));
+        // When
+        SyncResult result = directorySync.sync(localRoot, "/Documents/backup");
+        // Then
+        assertTrue(result.isSuccess());
+        assertEquals(3, result.getHashed());
+        assertEquals(3, result.getUnchanged());
+        assertEquals(0, result.getUploads().getResults().size());
+    }
+
+    @Test
+    public void shouldUploadFileWhoseSizeDiffersFromListing() throws Exception {
+        // Given
+        directorySync.sync(localRoot, "/Documents/backup");
+        Files.delete(localRoot.resolve(DirectorySync.INDEX_FILE_NAME));
+        createFile("a.txt", 150);
+        // When
+        SyncResult result = directorySync.sync(localRoot, "/Documents/backup");
+        // Then
+        assertEquals(1, result.getUploads().getSucceeded());
+        assertEquals(2, result.getUnchanged());
+        assertArrayEquals(Files.readAllBytes(localRoot.resolve("a.txt")), server.getObject("default/Documents/backup/a.txt"));
+    }
+
+    private Path createFile(String relativePath, int size) throws Exception {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        Path file = localRoot.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        return Files.write(file, content);
+    }
+
+    private DirectorySync createDirectorySyncWith(HubicClientConfiguration configuration) {
+        HubicClient hubicClient = createHubicClient(createAuthenticationInformationWithCode("clientId", "clientSecret", "code"),
+                configuration.apiUrl(server.getApiUrl()));
+        return createDirectorySync(hubicClient, 4);
+    }
+}
@@ -0,0 +1,950 @@
+package com.adioss.ovh;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * In-process stand-in for the hubiC API and its Swift storage, listening on the loopback interface: the OAuth token
+ * endpoint, "/1.0/account/credentials" and the object operations used by {@link HubicClient} (listing with
+ * marker/prefix/delimiter, ranges, "X-Copy-From", dynamic and static large object manifests, conditional GET).
+ * <p>
+ * Latency, bandwidth, error rate and throttling can be changed at any time to test throughput, concurrency and retries
+ * offline. Point a client at it with {@link HubicClientConfiguration#apiUrl(String)} and {@link #getApiUrl()}.
+ */
+final class FakeHubicServer implements AutoCloseable {
+    static final String CONTAINER = "default";
+    private static final String ACCOUNT_PATH = "/v1/AUTH_fake";
+    private static final DateTimeFormatter LISTING_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSS");
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executorService = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "fake-hubic");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<String> containers = ConcurrentHashMap.newKeySet();
+    private final ConcurrentSkipListMap<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger tokenSequence = new AtomicInteger();
+    private final AtomicInteger credentialsRequests = new AtomicInteger();
+    private volatile long tokenLifetimeSeconds = TimeUnit.HOURS.toSeconds(6);
+    private volatile String accessToken;
+    private volatile String swiftToken;
+    private volatile long latencyMillis;
+    private volatile long bytesPerSecond;
+    private volatile double errorRate;
+    private volatile int requestsPerSecond;
+    private final AtomicInteger corruptedUploads = new AtomicInteger();
+    private volatile boolean bulkOperations = true;
+    private volatile boolean quotaExceeded;
+    private volatile boolean ignoreRanges;
+    private volatile int maxDeletesPerRequest = 10000;
+    private volatile String bulkDeleteFailure;
+    private volatile Predicate<HttpExchange> failure;
+    private long throttleSecond;
+    private int throttleCount;
+
+    private FakeHubicServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executorService);
+        server.createContext("/", this::handle);
+        containers.add(CONTAINER);
+    }
+
+    static FakeHubicServer start() throws IOException {
+        FakeHubicServer fakeHubicServer = new FakeHubicServer();
+        fakeHubicServer.server.start();
+        return fakeHubicServer;
+    }
+
+    String getApiUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @param latencyMillis added before handling each request
+     */
+    FakeHubicServer latency(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    /**
+     * @param bytesPerSecond rate of each request and response body, 0 for unlimited
+     */
+    FakeHubicServer bandwidth(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    /**
+     * @param errorRate fraction of the requests answered with a 503, in [0, 1]
+     */
+    FakeHubicServer errorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * @param requestsPerSecond requests accepted per second, the next ones get a 429 with "Retry-After: 1"; 0 for
+     *                          unlimited
+     */
+    FakeHubicServer throttle(int requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+        return this;
+    }
+
+    /**
+     * @param count number of the next object uploads without "ETag" header stored with their first byte altered, as if
+     *              corrupted on the way
+     */
+    FakeHubicServer corruptUploads(int count) {
+        corruptedUploads.set(count);
+        return this;
+    }
+
+    /**
+     * @param bulkOperations false to answer bulk deletes with a 404 and archive extractions with a 400, as without the
+     *                       bulk middleware
+     */
+    FakeHubicServer bulkOperations(boolean bulkOperations) {
+        this.bulkOperations = bulkOperations;
+        return this;
+    }
+
+    /**
+     * @param quotaExceeded true to answer every object PUT with a 413, as Swift does once the account quota is reached
+     */
+    FakeHubicServer quotaExceeded(boolean quotaExceeded) {
+        this.quotaExceeded = quotaExceeded;
+        return this;
+    }
+
+    /**
+     * @param ignoreRanges true to answer ranged GETs with the whole object and a 200, as servers without range support do
+     */
+    FakeHubicServer ignoreRanges(boolean ignoreRanges) {
+        this.ignoreRanges = ignoreRanges;
+        return this;
+    }
+
+    /**
+     * @param maxDeletesPerRequest paths accepted per bulk delete, published in "/info"; a longer request is answered
+     *                             with a "413 Request Entity Too Large" response status
+     */
+    FakeHubicServer maxDeletesPerRequest(int maxDeletesPerRequest) {
+        this.maxDeletesPerRequest = maxDeletesPerRequest;
+        return this;
+    }
+
+    /**
+     * @param bulkDeleteFailure e.g. "502 Bad Gateway": bulk deletes are answered with a 200 holding this response
+     *                          status and delete nothing, as the Swift bulk middleware does on a failure; null for none
+     */
+    FakeHubicServer bulkDeleteFailure(String bulkDeleteFailure) {
+        this.bulkDeleteFailure = bulkDeleteFailure;
+        return this;
+    }
+
+    /**
+     * @param failure requests it matches are answered with a 503, e.g. to interrupt a transfer at a given segment or
+     *                range; null for none
+     */
+    FakeHubicServer fail(Predicate<HttpExchange> failure) {
+        this.failure = failure;
+        return this;
+    }
+
+    /**
+     * @param tokenLifetimeSeconds lifetime of the access tokens and of the Swift credentials handed out from now on
+     */
+    FakeHubicServer tokenLifetime(long tokenLifetimeSeconds) {
+        this.tokenLifetimeSeconds = tokenLifetimeSeconds;
+        return this;
+    }
+
+    /**
+     * Revoke the Swift token: requests get a 401 until new credentials are retrieved.
+     */
+    void expireSwiftToken() {
+        swiftToken = null;
+    }
+
+    int getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return number of "/1.0/account/credentials" requests answered with credentials
+     */
+    int getCredentialsRequestCount() {
+        return credentialsRequests.get();
+    }
+
+    /**
+     * @param path container and object name, e.g. "default/Documents/zap.sh"
+     * @return content of the object, manifests resolved, null if absent
+     */
+    byte[] getObject(String path) {
+        StoredObject storedObject = objects.get(path);
+        return storedObject == null ? null : content(storedObject);
+    }
+
+    /**
+     * @param path container and object name, e.g. "default/Documents/zap.sh"
+     */
+    void putObject(String path, byte[] content) {
+        objects.put(path, new StoredObject(content, "application/octet-stream", new HashMap<>()));
+    }
+
+    Set<String> getObjectNames() {
+        return objects.keySet();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executorService.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            Predicate<HttpExchange> currentFailure = failure;
+            if ((errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate)
+                    || (currentFailure != null && currentFailure.test(exchange))) {
+                readBody(exchange);
+                send(exchange, 503, null);
+                return;
+            }
+            if (isThrottled()) {
+                readBody(exchange);
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 429, null);
+                return;
+            }
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                // the JDK server drops the connection of the request following a HEAD: let the client open a new one
+                exchange.getResponseHeaders().set("Connection", "close");
+            }
+            String path = exchange.getRequestURI().getRawPath();
+            if ("/oauth/token/".equals(path)) {
+                token(exchange);
+            } else if ("/1.0/account/credentials".equals(path)) {
+                credentials(exchange);
+            } else if ("/info".equals(path)) {
+                info(exchange);
+            } else if (path.equals(ACCOUNT_PATH) || path.equals(ACCOUNT_PATH + "/")) {
+                account(exchange);
+            } else if (path.startsWith(ACCOUNT_PATH + "/")) {
+                storage(exchange, URLDecoder.decode(path.substring(ACCOUNT_PATH.length() + 1), "UTF-8"));
+            } else {
+                send(exchange, 404, null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            send(exchange, 500, e.toString().getBytes(StandardCharsets.UTF_8));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private synchronized boolean isThrottled() {
+        if (requestsPerSecond <= 0) {
+            return false;
+        }
+        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        if (second != throttleSecond) {
+            throttleSecond = second;
+            throttleCount = 0;
+        }
+        return ++throttleCount > requestsPerSecond;
+    }
+
+    private void token(HttpExchange exchange) throws IOException, InterruptedException {
+        Map<String, String> form = parseQuery(new String(readBody(exchange), StandardCharsets.UTF_8));
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (!"POST".equals(exchange.getRequestMethod()) || authorization == null || !authorization.startsWith("Basic ")) {
+            send(exchange, 401, null);
+            return;
+        }
+        if (!"authorization_code".equals(form.get("grant_type")) && !"refresh_token".equals(form.get("grant_type"))) {
+            send(exchange, 400, null);
+            return;
+        }
+        accessToken = "access-" + tokenSequence.incrementAndGet();
+        JsonObject token = new JsonObject();
+        token.addProperty("access_token", accessToken);
+        token.addProperty("expires_in", tokenLifetimeSeconds);
+        token.addProperty("refresh_token", "refresh");
+        token.addProperty("token_type", "Bearer");
+        sendJson(exchange, 200, token);
+    }
+
+    private void credentials(HttpExchange exchange) throws IOException {
+        if (accessToken == null || !("Bearer " + accessToken).equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+            send(exchange, 401, null);
+            return;
+        }
+        String token;
+        synchronized (this) {
+            if (swiftToken == null) {
+                swiftToken = "swift-" + tokenSequence.incrementAndGet();
+            }
+            token = swiftToken;
+        }
+        JsonObject credentials = new JsonObject();
+        credentials.addProperty("token", token);
+        credentials.addProperty("endpoint", getApiUrl() + ACCOUNT_PATH);
+        credentials.addProperty("expires", OffsetDateTime.now().plusSeconds(tokenLifetimeSeconds).toString());
+        credentialsRequests.incrementAndGet();
+        sendJson(exchange, 200, credentials);
+    }
+
+    /**
+     * Cluster capabilities, without authentication as in Swift.
+     */
+    private void info(HttpExchange exchange) throws IOException {
+        JsonObject bulkDelete = new JsonObject();
+        bulkDelete.addProperty("max_deletes_per_request", maxDeletesPerRequest);
+        bulkDelete.addProperty("max_failed_deletes", 1000);
+        JsonObject info = new JsonObject();
+        info.add("swift", new JsonObject());
+        info.add("bulk_delete", bulkDelete);
+        sendJson(exchange, 200, info);
+    }
+
+    private void storage(HttpExchange exchange, String path) throws IOException, InterruptedException {
+        if (!isAuthorized(exchange)) {
+            return;
+        }
+        int slash = path.indexOf('/');
+        String container = slash < 0 ? path : path.substring(0, slash);
+        String name = slash < 0 ? "" : path.substring(slash + 1);
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        if (name.isEmpty()) {
+            container(exchange, container, query);
+        } else if (!containers.contains(container)) {
+            readBody(exchange);
+            send(exchange, 404, null);
+        } else {
+            object(exchange, container + "/" + name, query);
+        }
+    }
+
+    private boolean isAuthorized(HttpExchange exchange) throws IOException, InterruptedException {
+        String token = swiftToken;
+        if (token == null || !token.equals(exchange.getRequestHeaders().getFirst("X-Auth-Token"))) {
+            readBody(exchange);
+            send(exchange, 401, null);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Account level requests: only "POST ?bulk-delete", one URL-encoded "/container/object" per line, answered in JSON
+     * as the Swift bulk middleware does. A container that still holds objects cannot be deleted (409).
+     */
+    private void account(HttpExchange exchange) throws IOException, InterruptedException {
+        if (!isAuthorized(exchange)) {
+            return;
+        }
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        if (!bulkOperations || !"POST".equals(exchange.getRequestMethod()) || !query.containsKey("bulk-delete")) {
+            readBody(exchange);
+            send(exchange, bulkOperations ? 405 : 404, null);
+            return;
+        }
+        String[] lines = new String(readBody(exchange), StandardCharsets.UTF_8).split("\n");
+        String failure = lines.length > maxDeletesPerRequest ? "413 Request Entity Too Large" : bulkDeleteFailure;
+        if (failure != null) {
+            JsonObject report = new JsonObject();
+            report.addProperty("Number Deleted", 0);
+            report.addProperty("Number Not Found", 0);
+            report.add("Errors", new JsonArray());
+            report.addProperty("Response Status", failure);
+            report.addProperty("Response Body", "");
+            sendJson(exchange, 200, report);
+            return;
+        }
+        int deleted = 0;
+        int notFound = 0;
+        JsonArray errors = new JsonArray();
+        for (String line : lines) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            String key = URLDecoder.decode(line.trim(), "UTF-8").substring(1);
+            if (key.indexOf('/') < 0) {
+                if (!objects.subMap(key + "/", key + "0").isEmpty()) {
+                    JsonArray error = new JsonArray();
+                    error.add(line.trim());
+                    error.add("409 Conflict");
+                    errors.add(error);
+                } else if (containers.remove(key)) {
+                    deleted++;
+                } else {
+                    notFound++;
+                }
+            } else if (objects.remove(key) != null) {
+                deleted++;
+            } else {
+                notFound++;
+            }
+        }
+        JsonObject report = new JsonObject();
+        report.addProperty("Number Deleted", deleted);
+        report.addProperty("Number Not Found", notFound);
+        report.add("Errors", errors);
+        report.addProperty("Response Status", errors.size() == 0 ? "200 OK" : "400 Bad Request");
+        report.addProperty("Response Body", "");
+        sendJson(exchange, 200, report);
+    }
+
+    private void container(HttpExchange exchange, String container, Map<String, String> query) throws IOException, InterruptedException {
+        switch (exchange.getRequestMethod()) {
+            case "PUT":
+                if (query.containsKey("extract-archive")) {
+                    extractArchive(exchange, container, query.get("extract-archive"));
+                    break;
+                }
+                readBody(exchange);
+                send(exchange, containers.add(container) ? 201 : 202, null);
+                break;
+            case "HEAD":
+                if (!containers.contains(container)) {
+                    send(exchange, 404, null);
+                    break;
+                }
+                exchange.getResponseHeaders().set("X-Container-Object-Count",
+                        String.valueOf(objects.subMap(container + "/", container + "0").size()));
+                send(exchange, 204, null);
+                break;
+            case "GET":
+                if (!containers.contains(container)) {
+                    send(exchange, 404, null);
+                    break;
+                }
+                list(exchange, container, query);
+                break;
+            default:
+                readBody(exchange);
+                send(exchange, 405, null);
+        }
+    }
+
+    /**
+     * "PUT ?extract-archive=tar" or "tar.gz": each regular file of the archive becomes an object of the container,
+     * with the Content-Type of its "SCHILY.xattr.user.mime_type" pax header if any. Answered in JSON as Swift does.
+     */
+    private void extractArchive(HttpExchange exchange, String container, String format) throws IOException, InterruptedException {
+        byte[] body = readBody(exchange);
+        if (!bulkOperations) {
+            send(exchange, 400, null);
+            return;
+        }
+        JsonObject report = new JsonObject();
+        JsonArray errors = new JsonArray();
+        int created = 0;
+        try (InputStream archive = "tar.gz".equals(format) ? new GZIPInputStream(new ByteArrayInputStream(body)) : new ByteArrayInputStream(body)) {
+            Map<String, String> pax = new HashMap<>();
+            byte[] header = new byte[512];
+            while (readFully(archive, header) && header[0] != 0) {
+                String name = pax.containsKey("path") ? pax.get("path") : tarString(header, 0, 100);
+                String prefix = tarString(header, 345, 155);
+                if (!pax.containsKey("path") && !prefix.isEmpty()) {
+                    name = prefix + "/" + name;
+                }
+                long size = pax.containsKey("size") ? Long.parseLong(pax.get("size")) : Long.parseLong(tarString(header, 124, 12).trim(), 8);
+                byte[] content = new byte[(int) size];
+                if (!readFully(archive, content) || !readFully(archive, new byte[(int) ((512 - size % 512) % 512)])) {
+                    throw new IOException("Truncated archive");
+                }
+                char type = (char) header[156];
+                if (type == 'x') {
+                    pax = parsePax(content);
+                    continue;
+                }
+                if (type == '0' || type == 0) {
+                    if (quotaExceeded) {
+                        JsonArray error = new JsonArray();
+                        error.add("/" + container + "/" + name);
+                        error.add("413 Request Entity Too Large");
+                        errors.add(error);
+                    } else {
+                        String contentType = pax.getOrDefault("SCHILY.xattr.user.mime_type", "application/octet-stream");
+                        objects.put(container + "/" + name, new StoredObject(content, contentType, new HashMap<>()));
+                        created++;
+                    }
+                }
+                pax = new HashMap<>();
+            }
+        } catch (IOException | RuntimeException e) {
+            report.addProperty("Number Files Created", created);
+            report.add("Errors", errors);
+            report.addProperty("Response Status", "400 Bad Request");
+            report.addProperty("Response Body", "Invalid Tar File: " + e.getMessage());
+            sendJson(exchange, 200, report);
+            return;
+        }
+        report.addProperty("Number Files Created", created);
+        report.add("Errors", errors);
+        report.addProperty("Response Status", errors.size() == 0 ? "201 Created" : "400 Bad Request");
+        report.addProperty("Response Body", "");
+        sendJson(exchange, 200, report);
+    }
+
+    private static boolean readFully(InputStream inputStream, byte[] bytes) throws IOException {
+        int read = 0;
+        while (read < bytes.length) {
+            int count = inputStream.read(bytes, read, bytes.length - read);
+            if (count < 0) {
+                return false;
+            }
+            read += count;
+        }
+        return true;
+    }
+
+    private static String tarString(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> parsePax(byte[] records) {
+        Map<String, String> pax = new HashMap<>();
+        int position = 0;
+        while (position < records.length) {
+            int space = position;
+            while (records[space] != ' ') {
+                space++;
+            }
+            int length = Integer.parseInt(new String(records, position, space - position, StandardCharsets.UTF_8));
+            String record = new String(records, space + 1, position + length - space - 2, StandardCharsets.UTF_8);
+            int equals = record.indexOf('=');
+            pax.put(record.substring(0, equals), record.substring(equals + 1));
+            position += length;
+        }
+        return pax;
+    }
+
+    /**
+     * Swift listing: "prefix", "delimiter", "marker" and "limit", or "path" for the direct children of a pseudo
+     * directory.
+     */
+    private void list(HttpExchange exchange, String container, Map<String, String> query) throws IOException, InterruptedException {
+        String prefix = query.getOrDefault("prefix", "");
+        String delimiter = query.get("delimiter");
+        boolean pathListing = query.containsKey("path");
+        if (pathListing) {
+            String directory = query.get("path");
+            while (directory.startsWith("/")) {
+                directory = directory.substring(1);
+            }
+            while (directory.endsWith("/")) {
+                directory = directory.substring(0, directory.length() - 1);
+            }
+            prefix = directory.isEmpty() ? "" : directory + "/";
+            delimiter = "/";
+        }
+        String marker = query.get("marker");
+        int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : 10000;
+        String containerPrefix = container + "/";
+        String start = containerPrefix + (marker != null && marker.compareTo(prefix) > 0 ? marker : prefix);
+        JsonArray listing = new JsonArray();
+        String lastSubdir = marker != null && delimiter != null && marker.endsWith(delimiter) ? marker : null;
+        for (Map.Entry<String, StoredObject> entry : objects.tailMap(start, marker == null || marker.compareTo(prefix) <= 0).entrySet()) {
+            if (listing.size() >= limit || !entry.getKey().startsWith(containerPrefix + prefix)) {
+                break;
+            }
+            String name = entry.getKey().substring(containerPrefix.length());
+            int delimiterIndex = delimiter == null ? -1 : name.indexOf(delimiter, prefix.length());
+            if (delimiterIndex >= 0) {
+                String subdir = name.substring(0, delimiterIndex + delimiter.length());
+                if (!pathListing && !subdir.equals(lastSubdir)) {
+                    JsonObject subdirEntry = new JsonObject();
+                    subdirEntry.addProperty("subdir", subdir);
+                    listing.add(subdirEntry);
+                }
+                lastSubdir = subdir;
+                continue;
+            }
+            StoredObject storedObject = entry.getValue();
+            JsonObject object = new JsonObject();
+            // as Swift does, a dynamic manifest is listed as the empty object it is, a static one with its ETag and size
+            object.addProperty("hash", storedObject.dynamicPrefix != null ? md5(new byte[0]) : etag(storedObject).replace("\"", ""));
+            object.addProperty("last_modified", LISTING_DATE.format(LocalDateTime.ofInstant(storedObject.lastModified, ZoneOffset.UTC)));
+            object.addProperty("bytes", storedObject.dynamicPrefix != null ? 0 : content(storedObject).length);
+            object.addProperty("name", name);
+            object.addProperty("content_type", storedObject.contentType);
+            listing.add(object);
+        }
+        if ("json".equals(query.get("format"))) {
+            sendJson(exchange, 200, listing);
+            return;
+        }
+        StringBuilder names = new StringBuilder();
+        for (JsonElement element : listing) {
+            JsonObject object = element.getAsJsonObject();
+            names.append(object.has("name") ? object.get("name").getAsString() : object.get("subdir").getAsString()).append('\n');
+        }
+        send(exchange, names.length() == 0 ? 204 : 200, names.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void object(HttpExchange exchange, String key, Map<String, String> query) throws IOException, InterruptedException {
+        Headers requestHeaders = exchange.getRequestHeaders();
+        switch (exchange.getRequestMethod()) {
+            case "PUT":
+                put(exchange, key, query);
+                break;
+            case "GET":
+            case "HEAD":
+                get(exchange, key, query);
+                break;
+            case "POST": {
+                readBody(exchange);
+                StoredObject storedObject = objects.get(key);
+                if (storedObject == null) {
+                    send(exchange, 404, null);
+                    break;
+                }
+                storedObject.metadata.clear();
+                storedObject.metadata.putAll(metadata(requestHeaders));
+                send(exchange, 202, null);
+                break;
+            }
+            case "DELETE":
+                readBody(exchange);
+                send(exchange, objects.remove(key) != null ? 204 : 404, null);
+                break;
+            default:
+                readBody(exchange);
+                send(exchange, 405, null);
+        }
+    }
+
+    private void put(HttpExchange exchange, String key, Map<String, String> query) throws IOException, InterruptedException {
+        Headers requestHeaders = exchange.getRequestHeaders();
+        byte[] body = readBody(exchange);
+        if (quotaExceeded) {
+            send(exchange, 413, null);
+            return;
+        }
+        String contentType = requestHeaders.getFirst("Content-Type") != null ? requestHeaders.getFirst("Content-Type") : "application/octet-stream";
+        StoredObject storedObject;
+        String copyFrom = requestHeaders.getFirst("X-Copy-From");
+        if (copyFrom != null) {
+            StoredObject source = objects.get(URLDecoder.decode(copyFrom.startsWith("/") ? copyFrom.substring(1) : copyFrom, "UTF-8"));
+            if (source == null) {
+                send(exchange, 404, null);
+                return;
+            }
+            Map<String, String> metadata = new HashMap<>(source.metadata);
+            metadata.putAll(metadata(requestHeaders));
+            if ("get".equals(query.get("multipart-manifest")) && source.content == null) {
+                // the manifest itself is copied, referencing the same segments
+                storedObject = new StoredObject(null, source.contentType, metadata);
+                storedObject.dynamicPrefix = source.dynamicPrefix;
+                storedObject.staticSegments = source.staticSegments;
+            } else {
+                storedObject = new StoredObject(content(source), source.contentType, metadata);
+            }
+        } else if ("put".equals(query.get("multipart-manifest"))) {
+            List<String> segments = new ArrayList<>();
+            for (JsonElement element : new JsonParser().parse(new String(body, StandardCharsets.UTF_8)).getAsJsonArray()) {
+                JsonObject segment = element.getAsJsonObject();
+                String segmentKey = segment.get("path").getAsString().substring(1);
+                StoredObject segmentObject = objects.get(segmentKey);
+                if (segmentObject == null || (segment.has("etag") && !segmentObject.etag.equals(segment.get("etag").getAsString()))
+                        || (segment.has("size_bytes") && segmentObject.content.length != segment.get("size_bytes").getAsLong())) {
+                    send(exchange, 400, ("Invalid segment " + segmentKey).getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                segments.add(segmentKey);
+            }
+            storedObject = new StoredObject(null, contentType, metadata(requestHeaders));
+            storedObject.staticSegments = segments;
+        } else if (requestHeaders.getFirst("X-Object-Manifest") != null) {
+            storedObject = new StoredObject(null, contentType, metadata(requestHeaders));
+            storedObject.dynamicPrefix = URLDecoder.decode(requestHeaders.getFirst("X-Object-Manifest"), "UTF-8");
+        } else {
+            String expected = requestHeaders.getFirst("ETag");
+            if (expected == null && body.length > 0 && corruptedUploads.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+                body[0]++;
+            }
+            storedObject = new StoredObject(body, contentType, metadata(requestHeaders));
+            if (expected != null && !expected.replace("\"", "").equalsIgnoreCase(storedObject.etag)) {
+                send(exchange, 422, null);
+                return;
+            }
+        }
+        objects.put(key, storedObject);
+        exchange.getResponseHeaders().set("ETag", etag(storedObject));
+        send(exchange, 201, null);
+    }
+
+    private void get(HttpExchange exchange, String key, Map<String, String> query) throws IOException, InterruptedException {
+        StoredObject storedObject = objects.get(key);
+        if (storedObject == null) {
+            send(exchange, 404, null);
+            return;
+        }
+        if (storedObject.staticSegments != null && "get".equals(query.get("multipart-manifest"))) {
+            JsonArray manifest = new JsonArray();
+            for (String segmentKey : storedObject.staticSegments) {
+                JsonObject segment = new JsonObject();
+                segment.addProperty("name", "/" + segmentKey);
+                segment.addProperty("hash", objects.containsKey(segmentKey) ? objects.get(segmentKey).etag : null);
+                segment.addProperty("bytes", objects.containsKey(segmentKey) ? objects.get(segmentKey).content.length : 0);
+                manifest.add(segment);
+            }
+            sendJson(exchange, 200, manifest);
+            return;
+        }
+        byte[] content = content(storedObject);
+        String etag = etag(storedObject);
+        Headers responseHeaders = exchange.getResponseHeaders();
+        responseHeaders.set("ETag", etag);
+        responseHeaders.set("Content-Type", storedObject.contentType);
+        responseHeaders.set("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(storedObject.lastModified.atOffset(ZoneOffset.UTC)));
+        responseHeaders.set("Accept-Ranges", "bytes");
+        for (Map.Entry<String, String> metadata : storedObject.metadata.entrySet()) {
+            responseHeaders.set(metadata.getKey(), metadata.getValue());
+        }
+        if (storedObject.dynamicPrefix != null) {
+            responseHeaders.set("X-Object-Manifest", storedObject.dynamicPrefix);
+        } else if (storedObject.staticSegments != null) {
+            responseHeaders.set("X-Static-Large-Object", "True");
+        }
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null && ifNoneMatch.replace("\"", "").equals(etag.replace("\"", ""))) {
+            send(exchange, 304, null);
+            return;
+        }
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            responseHeaders.set("Content-Length", String.valueOf(content.length));
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (ignoreRanges || range == null || !range.startsWith("bytes=") || range.contains(",")) {
+            send(exchange, 200, content);
+            return;
+        }
+        String[] bounds = range.substring("bytes=".length()).split("-", -1);
+        long first;
+        long last;
+        if (bounds[0].isEmpty()) {
+            first = Math.max(0, content.length - Long.parseLong(bounds[1]));
+            last = content.length - 1;
+        } else {
+            first = Long.parseLong(bounds[0]);
+            last = bounds[1].isEmpty() ? content.length - 1 : Math.min(Long.parseLong(bounds[1]), content.length - 1);
+        }
+        if (first >= content.length || first > last) {
+            responseHeaders.set("Content-Range", "bytes */" + content.length);
+            send(exchange, 416, null);
+            return;
+        }
+        byte[] slice = new byte[(int) (last - first + 1)];
+        System.arraycopy(content, (int) first, slice, 0, slice.length);
+        responseHeaders.set("Content-Range", "bytes " + first + "-" + last + "/" + content.length);
+        send(exchange, 206, slice);
+    }
+
+    private byte[] content(StoredObject storedObject) {
+        if (storedObject.content != null) {
+            return storedObject.content;
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (StoredObject segment : segments(storedObject)) {
+            content.write(segment.content, 0, segment.content.length);
+        }
+        return content.toByteArray();
+    }
+
+    private List<StoredObject> segments(StoredObject manifest) {
+        List<StoredObject> segments = new ArrayList<>();
+        if (manifest.dynamicPrefix != null) {
+            for (Map.Entry<String, StoredObject> entry : objects.tailMap(manifest.dynamicPrefix).entrySet()) {
+                if (!entry.getKey().startsWith(manifest.dynamicPrefix)) {
+                    break;
+                }
+                segments.add(entry.getValue());
+            }
+        } else {
+            for (String segmentKey : manifest.staticSegments) {
+                StoredObject segment = objects.get(segmentKey);
+                if (segment == null) {
+                    throw new IllegalStateException("Missing segment " + segmentKey);
+                }
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * @return MD5 of the content for a plain object, quoted MD5 of the segment ETags for a manifest, as Swift does
+     */
+    private String etag(StoredObject storedObject) {
+        if (storedObject.content != null) {
+            return storedObject.etag;
+        }
+        StringBuilder etags = new StringBuilder();
+        for (StoredObject segment : segments(storedObject)) {
+            etags.append(segment.etag);
+        }
+        return "\"" + md5(etags.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    private static Map<String, String> metadata(Headers headers) {
+        Map<String, String> metadata = new HashMap<>();
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (header.getKey().toLowerCase().startsWith("x-object-meta-")) {
+                metadata.put(header.getKey(), header.getValue().get(0));
+            }
+        }
+        return metadata;
+    }
+
+    private byte[] readBody(HttpExchange exchange) throws IOException, InterruptedException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[CHUNK_SIZE];
+        long start = System.nanoTime();
+        try (InputStream inputStream = exchange.getRequestBody()) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+                pace(body.size(), start);
+            }
+        }
+        return body.toByteArray();
+    }
+
+    private void sendJson(HttpExchange exchange, int code, JsonElement json) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        send(exchange, code, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void send(HttpExchange exchange, int code, byte[] body) throws IOException {
+        if (body == null || body.length == 0 || code == 204 || code == 304 || "HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(code, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(code, body.length);
+        long start = System.nanoTime();
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            for (int written = 0; written < body.length; written += CHUNK_SIZE) {
+                outputStream.write(body, written, Math.min(CHUNK_SIZE, body.length - written));
+                pace(Math.min(written + CHUNK_SIZE, body.length), start);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sleep until {@code bytes} bytes fit the bandwidth cap since {@code start}.
+     */
+    private void pace(long bytes, long start) throws InterruptedException {
+        long rate = bytesPerSecond;
+        if (rate <= 0) {
+            return;
+        }
+        long ahead = TimeUnit.SECONDS.toNanos(bytes) / rate - (System.nanoTime() - start);
+        if (ahead > 0) {
+            TimeUnit.NANOSECONDS.sleep(ahead);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals < 0) {
+                parameters.put(URLDecoder.decode(parameter, "UTF-8"), "");
+            } else {
+                parameters.put(URLDecoder.decode(parameter.substring(0, equals), "UTF-8"), URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+            }
+        }
+        return parameters;
+    }
+
+    static String md5(byte[] content) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("MD5").digest(content)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class StoredObject {
+        private final byte[] content;
+        private final String etag;
+        private final String contentType;
+        private final Map<String, String> metadata;
+        private final Instant lastModified = Instant.now();
+        private String dynamicPrefix;
+        private List<String> staticSegments;
+
+        private StoredObject(byte[] content, String contentType, Map<String, String> metadata) {
+            this.content = content;
+            this.etag = content == null ? null : md5(content);
+            this.contentType = contentType;
+            this.metadata = new ConcurrentHashMap<>(metadata);
+        }
+    }
+}
@@ -0,0 +1,594 @@
+package com.adioss.ovh;
+
+import com.adioss.ovh.Instrumentation.Operation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static com.adioss.ovh.AuthenticationInformation.createAuthenticationInformationWithCode;
+import static com.adioss.ovh.HubicClient.createHubicClient;
+import static org.junit.Assert.*;
+
+/**
+ * Test of {@link HubicClient} against a {@link FakeHubicServer}, without network access.
+ */
+public class HubicClientFakeServerTest {
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+    private FakeHubicServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = FakeHubicServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void shouldUploadGetInfoDownloadAndDelete() throws Exception {
+        // Given
+        HubicClient hubicClient = createClient(configuration());
+        Path source = createFile("source.txt", 1000);
+        Path target = testFolder.getRoot().toPath().resolve("target.txt");
+        // When
+        Response upload = hubicClient.upload(source, "/Documents/source.txt");
+        Response info = hubicClient.getInfo("/Documents/source.txt");
+        Response download = hubicClient.download("/Documents/source.txt", target);
+        Response delete = hubicClient.delete("/Documents/source.txt");
+        // Then
+        assertEquals(201, upload.getCode());
+        assertEquals(200, info.getCode());
+        assertEquals("1000", info.getHeader("Content-Length"));
+        assertEquals(200, download.getCode());
+        assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(target));
+        assertEquals(204, delete.getCode());
+        assertEquals(404, hubicClient.getInfo("/Documents/source.txt").getCode());
+    }
+
+    @Test
+    public void shouldCopyAndSetMetadata() throws Exception {
+        // Given
+        HubicClient hubicClient = createClient(configuration());
+        hubicClient.upload(createFile("zap.sh", 10), "/Documents/zap.sh");
+        Map<String, String> headers = new HashMap<>();
+        headers.put("X-Object-Meta-Author", "MarkTwain");
+        // When
+        Response copy = hubicClient.copy("default/Documents/zap.sh", "/Documents/titi/zap.sh");
+        Response metadata = hubicClient.setMetadata("/Documents/titi/zap.sh", headers);
+        // Then
+        assertEquals(201, copy.getCode());
+        assertEquals(202, metadata.getCode());
+        assertArrayEquals(server.getObject("default/Documents/zap.sh"), server.getObject("default/Documents/titi/zap.sh"));
+        assertEquals("MarkTwain", hubicClient.getInfo("/Documents/titi/zap.sh").getHeader("X-Object-Meta-Author"));
+    }
+
+    @Test
+    public void shouldSendUploadAgainWhenStoredBytesDiffer() throws Exception {
+        // Given
+        HubicClient hubicClient = createClient(configuration());
+        Path source = createFile("source.txt", 1000);
+        server.corruptUploads(1);
+        // When
+        Response upload = hubicClient.upload(source, "/Documents/source.txt");
+        // Then
+        assertEquals(201, upload.getCode());
+        assertArrayEquals(Files.readAllBytes(source), server.getObject("default/Documents/source.txt"));
+    }
+
+    @Test
+    public void shouldRejectUploadWithWrongMd5() throws Exception {
+        // Given
+        HubicClient hubicClient = createClient(configuration());
+        Path source = createFile("source.txt", 1000);
+        // When
+        Response upload = hubicClient.upload(source, "/Documents/source.txt", "0123456789abcdef0123456789abcdef");
+        // Then
+        assertEquals(422, upload.getCode());
+        assertNull(server.getObject("default/Documents/source.txt"));
+    }
+
+    @Test
+    public void shouldSkipIdenticalUploads() throws Exception {
+        // Given
+        HubicClient hubicClient = createClient(configuration().skipIdenticalUploads(true).segmentThreshold(1000).segmentSize(1000));
+        Path small = createFile("small.txt", 500);
+        Path big = createFile("big.bin", 2500);
+        hubicClient.upload(small, "/Documents/small.txt");
+        hubicClient.upload(big, "/Documents/big.bin");
+        // When
+        Response identicalSmall = hubicClient.upload(small, "/Documents/small.txt");
+        Response identicalBig = hubicClient.upload(big, "/Documents/big.bin");
+        Response different = hubicClient.upload(small, "/Documents/big.bin");
+        // Then
+        assertEquals(200, identicalSmall.getCode());
+        assertEquals(200, identicalBig.getCode());
+        assertEquals(201, different.getCode());
+        assertArrayEquals(Files.readAllBytes(small), server.getObject("default/Documents/big.bin"));
+    }
+
+    @Test
+    public void shouldCompressUploadsAboveThreshold() throws Exception {
+        // Given
+        HubicClient hubicClient = createClient(configuration().compression(HubicClientConfiguration.Codec.GZIP, 9, 1000));
+        Path log = createLogFile("app.log", 2000);
+        Path small = createFile("small.txt", 500);
+        Path target = testFolder.getRoot().toPath().resolve("app.copy");
+        // When
+        Response upload = hubicClient.upload(log, "/logs/app.log");
+        Response smallUpload = hubicClient.upload(small, "/logs/small.txt");
+        Response download = hubicClient.download("/logs/app.log", target);
+        // Then
+        assertEquals(201, upload.getCode());
+        assertEquals(201, smallUpload.getCode());
+        byte[] stored = server.getObject("default/logs/app.log");
+        assertTrue(stored.length < Files.size(log) / 4);
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(stored))) {
+            assertArrayEquals(Files.readAllBytes(log), inputStream.readAllBytes());
+        }
+        Response info = hubicClient.getInfo("/logs/app.log");
+        assertEquals("gzip", info.getHeader(Compression.CODEC_HEADER));
+        assertEquals(Checksums.md5(log), info.getHeader(Compression.ORIGINAL_MD5_HEADER));
+        assertEquals(200, download.getCode());
+        assertArrayEquals(Files.readAllBytes(log), Files.readAllBytes(target));
+        assertArrayEquals(Files.readAllBytes(small), server.getObject("default/logs/small.txt"));
+        assertNull(hubicClient.getInfo("/logs/small.txt").getHeader(Compression.CODEC_HEADER));
+    }
+
+    @Test
+    public void shouldDownloadCompressedObjectWithoutRangesAndSkipIdenticalUpload() throws Exception {
+        // Given
+        HubicClient hubicClient = createClient(configuration()
+                .compression(HubicClientConfiguration.Codec.DEFLATE, 6, 0)
+                .skipIdenticalUploads(true)
+                .downloadParallelism(3)
+                .downloadThreshold(100)
+                .downloadRangeSize(100));
+        Path log = createLogFile("app.log", 5000);
+        Path target = testFolder.getRoot().toPath().resolve("app.copy");
+        // When
+        Response upload = hubicClient.upload(log, "/logs/app.log");
+        Response identical = hubicClient.upload(log, "/logs/app.log");
+        Response download = hubicClient.download("/logs/app.log", target);
+        // Then
+        assertEquals(201, upload.getCode());
+        assertEquals(200, identical.getCode());
+        assertEquals("deflate", identical.getHeader(Compression.CODEC_HEADER));
+        assertEquals(200, download.getCode());
+        assertArrayEquals(Files.readAllBytes(log), Files.readAllBytes(target));
+    }
+
+    @Test
+    public void shouldUploadThenGetInfoAsynchronously() throws Exception {
+        // Given
+        HubicClient hubicClient = createClient(configuration());
+        Path source = createFile("source.txt", 100);
+        // When
+        Response result = hubicClient.uploadAsync(source, "/Documents/async.txt")
+                .thenCompose(upload -> hubicClient.getInfoAsync("/Documents/async.txt"))
+                .get(10, TimeUnit.SECONDS);
+        // Then
+        assertEquals(200, result.getCode());
+        assertEquals("100", result.getHeader("Content-Length"));
+    }
+
+    @Test
+    public void shouldRunAsyncOperationsOnBoundedPool() throws Exception {
+        // Given
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        HubicClient hubicClient = createClient(configuration().instrumentation(new Instrumentation() {
+            @Override
+            public void onStart(Operation operation) {
+                threads.add(Thread.currentThread().getName());
+            }
+
+            @Override
+            public void onComplete(Operation operation, int statusCode, long connectNanos, long firstByteNanos, long totalNanos,
+                                   long bytesSent, long bytesReceived) {
+            }
+        }));
+        server.putObject("default/Documents/readme.txt", new byte[10]);
+        threads.clear();
+        // When
+        List<CompletableFuture<Response>> futures = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            futures.add(hubicClient.getInfoAsync("/Documents/readme.txt"));
+        }
+        // Then
+        for (CompletableFuture<Response> future : futures) {
+            assertEquals(200, future.get(10, TimeUnit.SECONDS).getCode());
+        }
+        assertTrue(threads.size() <= 8);
+        assertEquals(Collections.singleton("hubic-async"), new HashSet<>(threads));
+    }
+
+    @Test
+    public void shouldFailAsyncOperationWithUnderlyingException() throws Exception {
+        // Given
+        HubicClient hubicClient = createClient(configuration().resiliencePolicy(ResiliencePolicy.noRetry()));
+        hubicClient.listDirectory("Documents");
+        server.close();
+        // When
+        try {
+            hubicClient.getInfoAsync("/Documents/readme.txt").get(10, TimeUnit.SECONDS);
+            fail("the server is stopped");
+        } catch (ExecutionException e) {
+            // Then
+            assertTrue(e.getCause() instanceof ConnectException);
+        }
+    }
+
+    @Test
+    public void shouldFailAsyncUploadWithExceptionOfSegmentThread() throws Exception {
+        // Given
+        Transport transport = UrlConnectionTransport.createUrlConnectionTransport();
+        HubicClient hubicClient = createClient(configuration()
+                .resiliencePolicy(ResiliencePolicy.noRetry())
+                .segmentThreshold(1000)
+                .segmentSize(1000)
+                .transport((verb, url, headers, body) -> {
+                    if ("PUT".equals(verb) && url.getPath().endsWith("/00000002")) {
+                        throw new IOException("segment lost");
+                    }
+                    return transport.send(verb, url, headers, body);
+                }));
+        Path source = createFile("big.bin", 4500);
+        // When
+        try {
+            hubicClient.uploadAsync(source, "/big.bin").get(10, TimeUnit.SECONDS);
+            fail("a segment cannot be sent");
+        } catch (ExecutionException e) {
+            // Then
+            assertEquals("segment lost", e.getCause().getMessage());
+        }
+        hubicClient.close();
+    }
+
+    @Test
+    public void shouldListAcrossPagesAndWalkTree() {
+        // Given
+        for (int i = 0; i < 7; i++) {
+            server.putObject("default/Documents/file" + i, new byte[i]);
+            server.putObject("default/Documents/sub" + (i % 3) + "/file" + i, new byte[i]);
+        }
+        HubicClient hubicClient = createClient(configuration().listingPageSize(2));
+        // When
+        List<String> names = new ArrayList<>();
+        Iterator<StorageObject> listing = hubicClient.listObjects("Documents/");
+        listing.forEachRemaining(storageObject -> names.add(storageObject.getName()));
+        Set<String> walked = ConcurrentHashMap.newKeySet();
+        TreeWalker.createTreeWalker(hubicClient, 3).walk("Documents/", storageObject -> walked.add(storageObject.getName()));
+        // Then
+        assertEquals(14, names.size());
+        assertEquals(new ArrayList<>(server.getObjectNames()).subList(0, 14).toString().replace("default/", ""), names.toString());
+        assertEquals(14, walked.size());
+        assertEquals(200, hubicClient.listDirectory("Documents").getCode());
+    }
+
+    @Test
+    public void shouldStreamObjectsLazily() {
+        // Given
+        for (int i = 0; i < 14; i++) {
+            server.putObject("default/Documents/file" + i, new byte[i]);
+        }
+        HubicClient hubicClient = createClient(configuration().listingPageSize(2));
+        int requestCount = server.getRequestCount();
+        // When
+        long count = hubicClient.streamObjects("Documents/").limit(3).count();
+        // Then
+        assertEquals(3, count);
+        // the two pages consumed and at most one prefetched, out of seven
+        assertTrue(server.getRequestCount() - requestCount <= 3);
+    }
+
+    @Test
+    public void shouldUploadSegmentsWithDynamicManifestAndDownloadRanges() throws Exception {
+        shouldUploadSegmentsAndDownloadRanges(HubicClientConfiguration.ManifestType.DYNAMIC);
+    }
+
+    @Test
+    public void shouldUploadSegmentsWithStaticManifestAndDownloadRanges() throws Exception {
+        shouldUploadSegmentsAndDownloadRanges(HubicClientConfiguration.ManifestType.STATIC);
+    }
+
+    @Test
+    public void shouldResumeRangedDownloadAfterInterruption() throws Exception {
+        // Given
+        HubicClient hubicClient = createClient(configuration()
+                .resiliencePolicy(ResiliencePolicy.noRetry())
+                .resumable(true)
+                .downloadParallelism(3)
+                .downloadThreshold(1000)
+                .downloadRangeSize(700));
+        byte[] content = new byte[4500];
+        new Random(4500).nextBytes(content);
+        server.putObject("default/big.bin", content);
+        Path target = testFolder.getRoot().toPath().resolve("big.copy");
+        CountDownLatch lastRangeRequested = new CountDownLatch(1);
+        // the first range fails once the last one is on its way, so that only the first is missing
+        server.fail(exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if ("bytes=4200-4499".equals(range)) {
+                lastRangeRequested.countDown();
+            }
+            return "bytes=0-699".equals(range) && await(lastRangeRequested);
+        });
+        Response interrupted = hubicClient.download("/big.bin", target);
+        List<String> resumedRanges = new CopyOnWriteArrayList<>();
+        server.fail(exchange -> {
+            resumedRanges.add(String.valueOf(exchange.getRequestHeaders().getFirst("Range")));
+            return false;
+        });
+        // When
+        Response download = hubicClient.download("/big.bin", target);
+        // Then
+        assertEquals(503, interrupted.getCode());
+        assertEquals(200, download.getCode());
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals("[null, bytes=0-699]", resumedRanges.toString());
+        assertFalse(Files.exists(TransferJournal.pathOf(target)));
+    }
+
+    @Test
+    public void shouldDownloadWholeObjectWhenServerIgnoresRanges() throws Exception {
+        // Given
+        HubicClient hubicClient = createClient(configuration()
+                .resumable(true)
+                .downloadParallelism(3)
+                .downloadThreshold(1000)
+                .downloadRangeSize(700));
+        byte[] content = new byte[4500];
+        new Random(4500).nextBytes(content);
+        server.putObject("default/big.bin", content);
+        server.ignoreRanges(true);
+        Path target = testFolder.getRoot().toPath().resolve("big.copy");
+        // When
+        Response download = hubicClient.download("/big.bin", target);
+        // Then
+        assertEquals(200, download.getCode());
+        assertEquals(target, download.getContent());
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertFalse(Files.exists(TransferJournal.pathOf(target)));
+    }
+
+    @Test
+    public void shouldDeleteTargetWhenRangeFailsWithoutJournal() {
+        // Given
+        HubicClient hubicClient = createClient(configuration()
+                .resiliencePolicy(ResiliencePolicy.noRetry())
+                .downloadParallelism(3)
+                .downloadThreshold(1000)
+                .downloadRangeSize(700));
+        server.putObject("default/big.bin", new byte[4500]);
+        server.fail(exchange -> "bytes=1400-2099".equals(exchange.getRequestHeaders().getFirst("Range")));
+        Path target = testFolder.getRoot().toPath().resolve("big.copy");
+        // When
+        Response download = hubicClient.download("/big.bin", target);
+        // Then
+        assertEquals(503, download.getCode());
+        assertFalse(Files.exists(target));
+    }
+
+    @Test
+    public void shouldResumeSegmentedUploadAfterInterruption() throws Exception {
+        // Given
+        HubicClient hubicClient = createClient(configuration()
+                .resiliencePolicy(ResiliencePolicy.noRetry())
+                .resumable(true)
+                .segmentThreshold(1000)
+                .segmentSize(1000));
+        Path source = createFile("big.bin", 4500);
+        server.fail(exchange -> "PUT".equals(exchange.getRequestMethod()) && exchange.getRequestURI().getPath().endsWith("/00000002"));
+        Response interrupted = hubicClient.upload(source, "/big.bin");
+        List<String> resumedSegments = new CopyOnWriteArrayList<>();
+        server.fail(exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if ("PUT".equals(exchange.getRequestMethod()) && path.contains("default_segments/big.bin/")) {
+                resumedSegments.add(path.substring(path.lastIndexOf('/') + 1));
+            }
+            return false;
+        });
+        // When
+        Response upload = hubicClient.upload(source, "/big.bin");
+        // Then
+        assertEquals(503, interrupted.getCode());
+        assertEquals(201, upload.getCode());
+        assertArrayEquals(Files.readAllBytes(source), server.getObject("default/big.bin"));
+        assertTrue(resumedSegments.contains("00000002"));
+        assertFalse(resumedSegments.contains("00000000"));
+        assertFalse(Files.exists(TransferJournal.pathOf(source)));
+    }
+
+    @Test
+    public void shouldRetryServerErrors() throws Exception {
+        // Given
+        HubicClient hubicClient = createClient(configuration()
+                .resiliencePolicy(ResiliencePolicy.defaultPolicy().maxAttempts(20).backoff(1, 5).circuitBreaker(0, 0)));
+        Path source = createFile("source.txt", 100);
+        server.errorRate(0.3);
+        // When
+        List<Response> responses = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            responses.add(hubicClient.upload(source, "/retry/file" + i));
+        }
+        // Then
+        for (Response response : responses) {
+            assertEquals(201, response.getCode());
+        }
+    }
+
+    @Test
+    public void shouldWaitWhenThrottled() throws Exception {
+        // Given
+        HubicClient hubicClient = createClient(configuration());
+        server.putObject("default/throttled", new byte[1]);
+        server.throttle(5);
+        // When
+        List<Response> responses = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            responses.add(hubicClient.getInfo("/throttled"));
+        }
+        // Then
+        for (Response response : responses) {
+            assertEquals(200, response.getCode());
+        }
+    }
+
+    @Test
+    public void shouldReplayRequestAfterTokenExpiry() {
+        // Given
+        HubicClient hubicClient = createClient(configuration());
+        server.putObject("default/expiry", new byte[1]);
+        server.expireSwiftToken();
+        // When
+        Response info = hubicClient.getInfo("/expiry");
+        // Then
+        assertEquals(200, info.getCode());
+    }
+
+    @Test
+    public void shouldUploadConcurrently() throws Exception {
+        // Given
+        HubicClient hubicClient = createClient(configuration());
+        Path source = createFile("source.txt", 4096);
+        server.latency(5);
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        // When
+        List<Future<Response>> futures = new ArrayList<>();
+        for (int i = 0; i < 80; i++) {
+            String targetPath = "/concurrent/file" + i;
+            futures.add(executorService.submit(() -> hubicClient.upload(source, targetPath)));
+        }
+        // Then
+        for (Future<Response> future : futures) {
+            assertEquals(201, future.get().getCode());
+        }
+        executorService.shutdown();
+        assertEquals(80, server.getObjectNames().stream().filter(name -> name.startsWith("default/concurrent/")).count());
+    }
+
+    @Test
+    public void shouldShareClientBetweenThreads() throws Exception {
+        // Given
+        HubicClient hubicClient = createClient(configuration());
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Future<Response>> uploads = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            Path source = createFile("source" + i, i);
+            String targetPath = "/shared/file" + i;
+            uploads.add(executorService.submit(() -> hubicClient.upload(source, targetPath)));
+            executorService.submit(() -> hubicClient.listDirectory("shared"));
+        }
+        for (Future<Response> upload : uploads) {
+            assertEquals(201, upload.get().getCode());
+        }
+        // When
+        List<Future<Response>> infos = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            String path = "/shared/file" + i;
+            infos.add(executorService.submit(() -> hubicClient.getInfo(path)));
+        }
+        // Then
+        for (int i = 0; i < 16; i++) {
+            assertEquals(String.valueOf(i), infos.get(i).get().getHeader("Content-Length"));
+        }
+        executorService.shutdown();
+    }
+
+    @Test
+    public void shouldCapBandwidth() throws Exception {
+        // Given
+        HubicClient hubicClient = createClient(configuration());
+        server.putObject("default/slow", new byte[100 * 1024]);
+        server.bandwidth(200 * 1024);
+        long start = System.nanoTime();
+        // When
+        Response download = hubicClient.download("/slow", testFolder.getRoot().toPath().resolve("slow"));
+        // Then
+        assertEquals(200, download.getCode());
+        assertTrue(System.nanoTime() - start >= 400_000_000L);
+    }
+
+    private void shouldUploadSegmentsAndDownloadRanges(HubicClientConfiguration.ManifestType manifestType) throws Exception {
+        // Given
+        HubicClient hubicClient = createClient(configuration()
+                .segmentThreshold(1000)
+                .segmentSize(1000)
+                .manifestType(manifestType)
+                .downloadParallelism(3)
+                .downloadThreshold(1000)
+                .downloadRangeSize(700));
+        Path source = createFile("big.bin", 4500);
+        Path target = testFolder.getRoot().toPath().resolve("big.copy");
+        // When
+        Response upload = hubicClient.upload(source, "/big.bin");
+        Response download = hubicClient.download("/big.bin", target);
+        // Then
+        assertEquals(201, upload.getCode());
+        assertEquals(5, server.getObjectNames().stream().filter(name -> name.startsWith("default_segments/big.bin/")).count());
+        assertEquals(200, download.getCode());
+        assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(target));
+    }
+
+    private HubicClientConfiguration configuration() {
+        return HubicClientConfiguration.defaultConfiguration().apiUrl(server.getApiUrl());
+    }
+
+    private HubicClient createClient(HubicClientConfiguration configuration) {
+        return createHubicClient(createAuthenticationInformationWithCode("clientId", "clientSecret", "code"), configuration);
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Path createLogFile(String name, int lines) throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            content.append("2016-02-24T18:47:").append(i % 60).append(" INFO request ").append(i).append(" served\n");
+        }
+        return Files.write(testFolder.getRoot().toPath().resolve(name), content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path createFile(String name, int size) throws Exception {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return Files.write(testFolder.getRoot().toPath().resolve(name), content);
+    }
+}
@@ -0,0 +1,66 @@
+package com.adioss.ovh;
+
+import com.adioss.ovh.InMemoryRecorder.LatencyHistogram;
+import com.adioss.ovh.InMemoryRecorder.OperationMetrics;
+import com.adioss.ovh.Instrumentation.Operation;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link InMemoryRecorder}.
+ */
+public class InMemoryRecorderTest {
+
+    @Test
+    public void shouldRecordRequestsPerOperation() {
+        // Given
+        InMemoryRecorder recorder = InMemoryRecorder.createInMemoryRecorder();
+        recorder.onStart(Operation.GET_INFO);
+        recorder.onStart(Operation.GET_INFO);
+        recorder.onStart(Operation.UPLOAD);
+        // When
+        recorder.onComplete(Operation.GET_INFO, 200, 1000, 2000, 3000, 0, 42);
+        recorder.onComplete(Operation.UPLOAD, -1, -1, -1, 5000, 1024, 0);
+        // Then
+        OperationMetrics getInfo = recorder.getMetrics(Operation.GET_INFO);
+        assertEquals(1, getInfo.getRequests());
+        assertEquals(1, getInfo.getInFlight());
+        assertEquals(1, getInfo.getStatusCount(200));
+        assertEquals(42, getInfo.getBytesReceived());
+        OperationMetrics upload = recorder.getMetrics(Operation.UPLOAD);
+        assertEquals(1, upload.getStatusCount(0));
+        assertEquals(1024, upload.getBytesSent());
+        assertEquals(0, upload.getConnect().getCount());
+        assertEquals(0, recorder.getMetrics(Operation.DELETE).getRequests());
+        assertTrue(recorder.dump().startsWith("UPLOAD requests=1"));
+        assertFalse(recorder.dump().contains("DELETE"));
+    }
+
+    @Test
+    public void shouldEstimatePercentilesWithinBucketPrecision() {
+        // Given
+        LatencyHistogram histogram = new LatencyHistogram();
+        // When
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        // Then
+        long p95 = histogram.getPercentile(0.95);
+        assertTrue(p95 >= TimeUnit.MILLISECONDS.toNanos(95));
+        assertTrue(p95 <= TimeUnit.MILLISECONDS.toNanos(95) * 1.125);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), histogram.getMax());
+        assertEquals(100, histogram.getCount());
+    }
+
+    @Test
+    public void shouldMapEveryValueIntoItsBucket() {
+        for (long value : new long[]{0, 7, 8, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(value <= LatencyHistogram.upperBound(bucket));
+            assertTrue(bucket == 0 || value > LatencyHistogram.upperBound(bucket - 1));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.adioss.ovh;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link MetadataCache}.
+ */
+public class MetadataCacheTest {
+    private static final Map<String, List<String>> HEADERS = Collections.singletonMap("ETag", Collections.singletonList("\"abc\""));
+
+    @Test
+    public void shouldServeFreshEntryWithoutRequest() {
+        // Given
+        MetadataCache metadataCache = new MetadataCache(10, 60_000);
+        AtomicInteger requests = new AtomicInteger();
+        // When
+        Response first = metadataCache.get("info:Documents", MetadataCacheTest::query, query -> response(200, requests));
+        Response second = metadataCache.get("info:Documents", MetadataCacheTest::query, query -> response(200, requests));
+        // Then
+        assertSame(first, second);
+        assertEquals(1, requests.get());
+        assertEquals(1, metadataCache.getHits());
+        assertEquals(1, metadataCache.getMisses());
+    }
+
+    @Test
+    public void shouldKeepStaleEntryOnNotModified() {
+        // Given
+        MetadataCache metadataCache = new MetadataCache(10, 0);
+        AtomicInteger requests = new AtomicInteger();
+        Response first = metadataCache.get("info:Documents", MetadataCacheTest::query, query -> response(200, requests));
+        // When
+        Response second = metadataCache.get("info:Documents", MetadataCacheTest::query, query -> response(304, requests));
+        // Then
+        assertSame(first, second);
+        assertEquals(2, requests.get());
+        assertEquals(1, metadataCache.getRevalidations());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsed() {
+        // Given
+        MetadataCache metadataCache = new MetadataCache(2, 60_000);
+        AtomicInteger requests = new AtomicInteger();
+        metadataCache.get("info:a", MetadataCacheTest::query, query -> response(200, requests));
+        metadataCache.get("info:b", MetadataCacheTest::query, query -> response(200, requests));
+        metadataCache.get("info:a", MetadataCacheTest::query, query -> response(200, requests));
+        // When
+        metadataCache.get("info:c", MetadataCacheTest::query, query -> response(200, requests));
+        metadataCache.get("info:b", MetadataCacheTest::query, query -> response(200, requests));
+        // Then
+        assertEquals(4, requests.get());
+        assertEquals(2, metadataCache.size());
+    }
+
+    @Test
+    public void shouldInvalidatePathAndParentListing() {
+        // Given
+        MetadataCache metadataCache = new MetadataCache(10, 60_000);
+        AtomicInteger requests = new AtomicInteger();
+        metadataCache.get(MetadataCache.infoKey("/Documents/zap.sh"), MetadataCacheTest::query, query -> response(200, requests));
+        metadataCache.get(MetadataCache.listKey("Documents"), MetadataCacheTest::query, query -> response(200, requests));
+        metadataCache.get(MetadataCache.listKey("Music"), MetadataCacheTest::query, query -> response(200, requests));
+        // When
+        metadataCache.invalidate("/Documents/zap.sh");
+        // Then
+        assertEquals(1, metadataCache.size());
+    }
+
+    @Test
+    public void shouldNotCacheResponseFetchedBeforeInvalidation() {
+        // Given
+        MetadataCache metadataCache = new MetadataCache(10, 60_000);
+        AtomicInteger requests = new AtomicInteger();
+        String key = MetadataCache.infoKey("/Documents/zap.sh");
+        // When
+        Response stale = metadataCache.get(key, MetadataCacheTest::query, query -> {
+            // a write on the path completes while the response is on its way
+            metadataCache.invalidate("/Documents/zap.sh");
+            return response(200, requests);
+        });
+        Response fresh = metadataCache.get(key, MetadataCacheTest::query, query -> response(200, requests));
+        // Then
+        assertNotSame(stale, fresh);
+        assertEquals(2, requests.get());
+        assertEquals(1, metadataCache.size());
+        assertSame(fresh, metadataCache.get(key, MetadataCacheTest::query, query -> response(200, requests)));
+    }
+
+    private static HttpAPI query() {
+        return HttpAPI.query("https://localhost/default/Documents");
+    }
+
+    private static Response response(int code, AtomicInteger requests) {
+        requests.incrementAndGet();
+        return new Response(code, HEADERS, null);
+    }
+}
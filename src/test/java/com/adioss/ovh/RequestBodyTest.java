@@ -0,0 +1,70 @@
+package com.adioss.ovh;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link RequestBody}.
+ */
+public class RequestBodyTest {
+    @Test
+    public void shouldStreamWriterOnPooledDaemonThread() throws Exception {
+        // Given
+        CompletableFuture<Thread> writerThread = new CompletableFuture<>();
+        RequestBody body = RequestBody.ofWriter(-1, outputStream -> {
+            writerThread.complete(Thread.currentThread());
+            outputStream.write(new byte[3 * RequestBody.BUFFER_SIZE]);
+        });
+        // When
+        byte[] read;
+        try (InputStream inputStream = body.openStream()) {
+            read = inputStream.readAllBytes();
+        }
+        // Then
+        assertEquals(3 * RequestBody.BUFFER_SIZE, read.length);
+        assertEquals("hubic-body-writer", writerThread.get(5, TimeUnit.SECONDS).getName());
+        assertTrue(writerThread.get().isDaemon());
+    }
+
+    @Test
+    public void shouldFailWriterWhenStreamIsClosedBeforeEnd() throws Exception {
+        // Given
+        CompletableFuture<Exception> writerFailure = new CompletableFuture<>();
+        RequestBody body = RequestBody.ofWriter(-1, outputStream -> {
+            try {
+                for (int i = 0; i < 100; i++) {
+                    outputStream.write(new byte[RequestBody.BUFFER_SIZE]);
+                }
+                writerFailure.complete(null);
+            } catch (IOException e) {
+                writerFailure.complete(e);
+                throw e;
+            }
+        });
+        // When
+        try (InputStream inputStream = body.openStream()) {
+            assertEquals(1024, inputStream.readNBytes(1024).length);
+        }
+        // Then
+        assertTrue(writerFailure.get(5, TimeUnit.SECONDS) instanceof IOException);
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldNotEndTruncatedBodyNormally() throws Exception {
+        // Given
+        RequestBody body = RequestBody.ofWriter(-1, outputStream -> {
+            outputStream.write(new byte[100]);
+            throw new IOException("source unreadable");
+        });
+        // When
+        try (InputStream inputStream = body.openStream()) {
+            inputStream.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.adioss.ovh;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link ResilientTransport}.
+ */
+public class ResilientTransportTest {
+    private static final Map<String, String> NO_HEADERS = Collections.emptyMap();
+
+    @Test
+    public void shouldRetryIdempotentRequestOnServerError() throws Exception {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+        Transport transport = ResilientTransport.createResilientTransport((verb, url, headers, body) ->
+                response(calls.incrementAndGet() < 3 ? 503 : 200), ResiliencePolicy.defaultPolicy().backoff(1, 5));
+        // When
+        TransportResponse response = transport.send("GET", new URL("http://localhost/default"), NO_HEADERS, null);
+        // Then
+        assertEquals(200, response.getCode());
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void shouldNotRetryPostOnServerError() throws Exception {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+        Transport transport = ResilientTransport.createResilientTransport((verb, url, headers, body) -> {
+            calls.incrementAndGet();
+            return response(503);
+        }, ResiliencePolicy.defaultPolicy().backoff(1, 5));
+        // When
+        TransportResponse response = transport.send("POST", new URL("http://localhost/default"), NO_HEADERS, RequestBody.ofBytes(new byte[0]));
+        // Then
+        assertEquals(503, response.getCode());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void shouldRetryIOExceptionUpToMaxAttempts() throws Exception {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+        Transport transport = ResilientTransport.createResilientTransport((verb, url, headers, body) -> {
+            calls.incrementAndGet();
+            throw new IOException("reset");
+        }, ResiliencePolicy.defaultPolicy().maxAttempts(3).backoff(1, 5).circuitBreaker(0, 0));
+        // When
+        try {
+            transport.send("HEAD", new URL("http://localhost/default"), NO_HEADERS, null);
+            fail();
+        } catch (IOException e) {
+            // Then
+            assertEquals("reset", e.getMessage());
+        }
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void shouldNotWaitForRetryAfterLongerThanMaxDelay() throws Exception {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+        Transport transport = ResilientTransport.createResilientTransport((verb, url, headers, body) -> {
+            calls.incrementAndGet();
+            return new TransportResponse(429, Collections.singletonMap("Retry-After", Collections.singletonList("3600")), null);
+        }, ResiliencePolicy.defaultPolicy().backoff(1, 5));
+        // When
+        TransportResponse response = transport.send("GET", new URL("http://localhost/default"), NO_HEADERS, null);
+        // Then
+        assertEquals(429, response.getCode());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void shouldFailFastWhileCircuitIsOpen() throws Exception {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+        Transport transport = ResilientTransport.createResilientTransport((verb, url, headers, body) -> {
+            calls.incrementAndGet();
+            return response(500);
+        }, ResiliencePolicy.defaultPolicy().maxAttempts(1).circuitBreaker(2, TimeUnit.MINUTES.toMillis(1)));
+        URL url = new URL("http://localhost/default");
+        transport.send("GET", url, NO_HEADERS, null);
+        transport.send("GET", url, NO_HEADERS, null);
+        // When
+        try {
+            transport.send("GET", url, NO_HEADERS, null);
+            fail();
+        } catch (IOException e) {
+            // Then
+            assertTrue(e.getMessage().startsWith("Circuit open"));
+        }
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void shouldHedgeSlowRequest() throws Exception {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Transport transport = ResilientTransport.createResilientTransport((verb, url, headers, body) -> {
+            if (calls.incrementAndGet() == 21) {
+                // first attempt of the last request hangs until the test ends
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return response(200);
+        }, ResiliencePolicy.defaultPolicy().hedging(true));
+        URL url = new URL("http://localhost/default");
+        for (int i = 0; i < 20; i++) {
+            transport.send("GET", url, NO_HEADERS, null);
+        }
+        // When
+        TransportResponse response = transport.send("GET", url, NO_HEADERS, null);
+        release.countDown();
+        // Then
+        assertEquals(200, response.getCode());
+        assertEquals(22, calls.get());
+    }
+
+    @Test
+    public void shouldStopHedgingOnceClosed() throws Exception {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+        ResilientTransport transport = ResilientTransport.createResilientTransport((verb, url, headers, body) -> {
+            if (calls.incrementAndGet() == 21) {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return response(200);
+        }, ResiliencePolicy.defaultPolicy().hedging(true));
+        URL url = new URL("http://localhost/default");
+        for (int i = 0; i < 20; i++) {
+            transport.send("GET", url, NO_HEADERS, null);
+        }
+        // When
+        transport.close();
+        TransportResponse response = transport.send("GET", url, NO_HEADERS, null);
+        // Then
+        assertEquals(200, response.getCode());
+        assertEquals(21, calls.get());
+    }
+
+    private static TransportResponse response(int code) {
+        return new TransportResponse(code, Collections.<String, List<String>>emptyMap(), null);
+    }
+}
@@ -0,0 +1,175 @@
+package com.adioss.ovh;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static com.adioss.ovh.AuthenticationInformation.createAuthenticationInformationWithCode;
+import static com.adioss.ovh.HubicClient.createHubicClient;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link SegmentedUpload}.
+ */
+public class SegmentedUploadTest {
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+    private FakeHubicServer server;
+    private HubicClient hubicClient;
+
+    @Before
+    public void setUp() throws Exception {
+        server = FakeHubicServer.start();
+        hubicClient = createHubicClient(createAuthenticationInformationWithCode("clientId", "clientSecret", "code"),
+                HubicClientConfiguration.defaultConfiguration()
+                        .apiUrl(server.getApiUrl())
+                        .resiliencePolicy(ResiliencePolicy.noRetry())
+                        .segmentThreshold(1000)
+                        .segmentSize(1000)
+                        .segmentParallelism(4));
+    }
+
+    @After
+    public void tearDown() {
+        hubicClient.close();
+        server.close();
+    }
+
+    @Test
+    public void shouldUploadSegmentsConcurrentlyFromSharedFile() throws Exception {
+        // Given
+        Path source = createFile("big.bin", 4500);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        server.fail(exchange -> {
+            if ("PUT".equals(exchange.getRequestMethod()) && exchange.getRequestURI().getPath().contains("/default_segments/big.bin/")) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                sleep(100);
+                inFlight.decrementAndGet();
+            }
+            return false;
+        });
+        // When
+        Response response = hubicClient.upload(source, "/big.bin");
+        // Then
+        assertEquals(201, response.getCode());
+        assertTrue(maxInFlight.get() > 1);
+        List<Integer> segmentSizes = server.getObjectNames().stream()
+                .filter(name -> name.startsWith("default_segments/big.bin/"))
+                .map(name -> server.getObject(name).length)
+                .collect(Collectors.toList());
+        assertEquals(List.of(1000, 1000, 1000, 1000, 500), segmentSizes);
+        assertArrayEquals(Files.readAllBytes(source), server.getObject("default/big.bin"));
+    }
+
+    @Test
+    public void shouldNotPublishManifestWhenSegmentFails() throws Exception {
+        // Given
+        Path source = createFile("big.bin", 4500);
+        server.fail(exchange -> "PUT".equals(exchange.getRequestMethod()) && exchange.getRequestURI().getPath().endsWith("/00000003"));
+        // When
+        Response response = hubicClient.upload(source, "/big.bin");
+        // Then
+        assertEquals(503, response.getCode());
+        assertNull(server.getObject("default/big.bin"));
+        assertEquals(List.of(), segmentNames());
+    }
+
+    @Test
+    public void shouldLetSegmentsInFlightFinishBeforeCleaningUpFailedUpload() throws Exception {
+        // Given
+        Path source = createFile("big.bin", 4500);
+        server.fail(exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if (!"PUT".equals(exchange.getRequestMethod()) || !path.contains("/default_segments/big.bin/")) {
+                return false;
+            }
+            if (path.endsWith("/00000000")) {
+                return true;
+            }
+            sleep(300);
+            return false;
+        });
+        // When
+        Response response = hubicClient.upload(source, "/big.bin");
+        Thread.sleep(500);
+        // Then
+        assertEquals(503, response.getCode());
+        assertEquals(List.of(), segmentNames());
+    }
+
+    @Test
+    public void shouldDeleteSegmentsOfReplacedDynamicManifest() throws Exception {
+        // Given
+        hubicClient.upload(createFile("old.bin", 4500), "/big.bin");
+        Path source = createFile("big.bin", 3500);
+        // When
+        Response response = hubicClient.upload(source, "/big.bin");
+        // Then
+        assertEquals(201, response.getCode());
+        assertEquals(4, segmentNames().size());
+        assertArrayEquals(Files.readAllBytes(source), server.getObject("default/big.bin"));
+    }
+
+    @Test
+    public void shouldDeleteSegmentsOfReplacedStaticManifest() throws Exception {
+        // Given
+        hubicClient.close();
+        hubicClient = createHubicClient(createAuthenticationInformationWithCode("clientId", "clientSecret", "code"),
+                HubicClientConfiguration.defaultConfiguration()
+                        .apiUrl(server.getApiUrl())
+                        .resiliencePolicy(ResiliencePolicy.noRetry())
+                        .segmentThreshold(1000)
+                        .segmentSize(1000)
+                        .manifestType(HubicClientConfiguration.ManifestType.STATIC));
+        hubicClient.upload(createFile("old.bin", 4500), "/big.bin");
+        Path source = createFile("big.bin", 3500);
+        // When
+        Response response = hubicClient.upload(source, "/big.bin");
+        // Then
+        assertEquals(201, response.getCode());
+        assertEquals(4, segmentNames().size());
+        assertArrayEquals(Files.readAllBytes(source), server.getObject("default/big.bin"));
+    }
+
+    @Test
+    public void shouldDeleteSegmentsWithTheirManifest() throws Exception {
+        // Given
+        hubicClient.upload(createFile("big.bin", 4500), "/big.bin");
+        // When
+        Response response = hubicClient.delete("/big.bin");
+        // Then
+        assertEquals(204, response.getCode());
+        assertNull(server.getObject("default/big.bin"));
+        assertEquals(List.of(), segmentNames());
+    }
+
+    private List<String> segmentNames() {
+        return server.getObjectNames().stream()
+                .filter(name -> name.startsWith("default_segments/"))
+                .collect(Collectors.toList());
+    }
+
+    private Path createFile(String name, int size) throws Exception {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return Files.write(testFolder.getRoot().toPath().resolve(name), content);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
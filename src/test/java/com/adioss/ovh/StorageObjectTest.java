@@ -0,0 +1,53 @@
+package com.adioss.ovh;
+
+import com.google.gson.stream.JsonReader;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link StorageObject}.
+ */
+public class StorageObjectTest {
+
+    @Test
+    public void shouldReadListing() throws Exception {
+        // Given
+        String listing = "[{\"hash\": \"d41d8cd98f00b204e9800998ecf8427e\", \"last_modified\": \"2016-02-23T12:34:56.123456\", "
+                + "\"bytes\": 0, \"name\": \"Documents\", \"content_type\": \"application/directory\"},\n"
+                + "{\"hash\": \"0cc175b9c0f1b6a831c399e269772661\", \"last_modified\": \"2016-02-24T08:00:00.000000\", "
+                + "\"bytes\": 1, \"name\": \"Documents/été.txt\", \"content_type\": \"text/plain\", \"extra\": {\"a\": [1]}}]";
+        // When
+        List<StorageObject> storageObjects = StorageObject.readList(new JsonReader(new StringReader(listing)));
+        // Then
+        assertEquals(2, storageObjects.size());
+        assertTrue(storageObjects.get(0).isDirectory());
+        assertEquals(Instant.parse("2016-02-23T12:34:56.123456Z"), storageObjects.get(0).getLastModified());
+        assertEquals("Documents/été.txt", storageObjects.get(1).getName());
+        assertEquals(1, storageObjects.get(1).getBytes());
+        assertEquals("0cc175b9c0f1b6a831c399e269772661", storageObjects.get(1).getHash());
+        assertEquals("text/plain", storageObjects.get(1).getContentType());
+    }
+
+    @Test
+    public void shouldReadSubdirectory() throws Exception {
+        // When
+        List<StorageObject> storageObjects = StorageObject.readList(new JsonReader(new StringReader("[{\"subdir\": \"Documents/titi/\"}]")));
+        // Then
+        assertEquals(1, storageObjects.size());
+        assertTrue(storageObjects.get(0).isSubdirectory());
+        assertEquals("Documents/titi/", storageObjects.get(0).getName());
+    }
+
+    @Test
+    public void shouldReadEmptyListing() throws Exception {
+        // When
+        List<StorageObject> storageObjects = StorageObject.readList(new JsonReader(new StringReader("[]")));
+        // Then
+        assertTrue(storageObjects.isEmpty());
+    }
+}
@@ -0,0 +1,100 @@
+package com.adioss.ovh;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.adioss.ovh.AuthenticationInformation.createAuthenticationInformationWithCode;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link TokenManager}.
+ */
+public class TokenManagerTest {
+    private FakeHubicServer server;
+    private TokenManager tokenManager;
+
+    @Before
+    public void setUp() throws Exception {
+        server = FakeHubicServer.start();
+        tokenManager = new TokenManager(createAuthenticationInformationWithCode("clientId", "clientSecret", "code"), null,
+                UrlConnectionTransport.createUrlConnectionTransport(), Instrumentation.NONE, server.getApiUrl(), 100);
+    }
+
+    @After
+    public void tearDown() {
+        tokenManager.close();
+        server.close();
+    }
+
+    @Test
+    public void shouldRenewCredentialsInBackgroundBeforeExpiry() throws Exception {
+        // Given
+        server.tokenLifetime(2);
+        tokenManager.authenticate();
+        SwiftCredentials initial = tokenManager.current();
+        // When
+        long deadline = System.currentTimeMillis() + 5000;
+        while (tokenManager.current() == initial && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        // Then
+        assertNotSame(initial, tokenManager.current());
+        assertTrue(tokenManager.current().getExpiresAt() > initial.getExpiresAt());
+        assertTrue(server.getCredentialsRequestCount() >= 2);
+    }
+
+    @Test
+    public void shouldShareSingleRefreshBetweenConcurrentCallers() throws Exception {
+        // Given
+        tokenManager.authenticate();
+        SwiftCredentials stale = tokenManager.current();
+        server.expireSwiftToken();
+        int credentialsRequests = server.getCredentialsRequestCount();
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        // When
+        List<Future<SwiftCredentials>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executorService.submit(() -> {
+                start.await();
+                return tokenManager.refresh(stale);
+            }));
+        }
+        start.countDown();
+        // Then
+        List<SwiftCredentials> results = new ArrayList<>();
+        for (Future<SwiftCredentials> future : futures) {
+            results.add(future.get());
+        }
+        for (SwiftCredentials result : results) {
+            assertSame(tokenManager.current(), result);
+        }
+        assertNotSame(stale, tokenManager.current());
+        assertNotEquals(stale.getToken(), tokenManager.current().getToken());
+        assertEquals(1, server.getCredentialsRequestCount() - credentialsRequests);
+        executorService.shutdown();
+    }
+
+    @Test
+    public void shouldStopBackgroundRenewalOnClose() throws Exception {
+        // Given
+        server.tokenLifetime(1);
+        tokenManager.authenticate();
+        SwiftCredentials initial = tokenManager.current();
+        // When
+        tokenManager.close();
+        Thread.sleep(1500);
+        // Then
+        assertSame(initial, tokenManager.current());
+        assertEquals(1, server.getCredentialsRequestCount());
+        assertNotSame(initial, tokenManager.refresh(initial));
+    }
+}
@@ -0,0 +1,82 @@
+package com.adioss.ovh;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link TransferJournal}.
+ */
+public class TransferJournalTest {
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldResumeJournalWithSameIdentity() throws Exception {
+        // Given
+        Path localPath = testFolder.newFile("big.iso").toPath();
+        try (TransferJournal journal = TransferJournal.open(localPath, "identity-1")) {
+            journal.setProperty("prefix", "/default_segments/big.iso/1/");
+            journal.complete(0, "etag0");
+            journal.complete(2, "etag2");
+        }
+        // When
+        try (TransferJournal journal = TransferJournal.open(localPath, "identity-1")) {
+            // Then
+            assertTrue(journal.isResumed());
+            assertEquals("/default_segments/big.iso/1/", journal.getProperty("prefix"));
+            assertEquals(2, journal.getCompleted().size());
+            assertEquals("etag2", journal.getCompleted().get(2));
+        }
+    }
+
+    @Test
+    public void shouldResetJournalWithOtherIdentity() throws Exception {
+        // Given
+        Path localPath = testFolder.newFile("big.iso").toPath();
+        try (TransferJournal journal = TransferJournal.open(localPath, "identity-1")) {
+            journal.complete(0, "etag0");
+        }
+        // When
+        try (TransferJournal journal = TransferJournal.open(localPath, "identity-2")) {
+            // Then
+            assertFalse(journal.isResumed());
+            assertTrue(journal.getCompleted().isEmpty());
+        }
+    }
+
+    @Test
+    public void shouldIgnoreTruncatedLine() throws Exception {
+        // Given
+        Path localPath = testFolder.newFile("big.iso").toPath();
+        try (TransferJournal journal = TransferJournal.open(localPath, "identity-1")) {
+            journal.complete(0, "etag0");
+        }
+        Files.write(TransferJournal.pathOf(localPath), "done ".getBytes(), StandardOpenOption.APPEND);
+        // When
+        try (TransferJournal journal = TransferJournal.open(localPath, "identity-1")) {
+            journal.complete(1, "etag1");
+        }
+        // Then
+        try (TransferJournal journal = TransferJournal.open(localPath, "identity-1")) {
+            assertEquals(2, journal.getCompleted().size());
+        }
+    }
+
+    @Test
+    public void shouldDeleteJournal() throws Exception {
+        // Given
+        Path localPath = testFolder.newFile("big.iso").toPath();
+        TransferJournal journal = TransferJournal.open(localPath, "identity-1");
+        // When
+        journal.delete();
+        // Then
+        assertFalse(Files.exists(TransferJournal.pathOf(localPath)));
+    }
+}
@@ -0,0 +1,177 @@
+package com.adioss.ovh;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test of {@link UrlConnectionTransport} and {@link HttpClientTransport} against a loopback server echoing PUT
+ * bodies.
+ */
+public class TransportTest {
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+    private HttpServer server;
+    private String url;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/echo", exchange -> {
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            try (InputStream inputStream = exchange.getRequestBody()) {
+                inputStream.transferTo(received);
+            }
+            if (exchange.getRequestHeaders().containsKey("X-Test")) {
+                exchange.getResponseHeaders().add("X-Test", exchange.getRequestHeaders().getFirst("X-Test"));
+            }
+            exchange.getResponseHeaders().add("X-Request-Length", String.valueOf(exchange.getRequestHeaders().getFirst("Content-Length")));
+            int code = exchange.getRequestURI().getPath().endsWith("missing") ? 404 : 201;
+            exchange.sendResponseHeaders(code, received.size() == 0 ? -1 : received.size());
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                received.writeTo(outputStream);
+            }
+        });
+        server.createContext("/stalled", exchange -> {
+            // never reads the body
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/echo";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void shouldSendBytesWithUrlConnection() {
+        shouldSendBytes(UrlConnectionTransport.createUrlConnectionTransport());
+    }
+
+    @Test
+    public void shouldSendBytesWithHttpClient() {
+        shouldSendBytes(HttpClientTransport.createHttpClientTransport());
+    }
+
+    @Test
+    public void shouldSendFileRegionWithUrlConnection() throws Exception {
+        shouldSendFileRegion(UrlConnectionTransport.createUrlConnectionTransport());
+    }
+
+    @Test
+    public void shouldSendFileRegionWithHttpClient() throws Exception {
+        shouldSendFileRegion(HttpClientTransport.createHttpClientTransport());
+    }
+
+    @Test
+    public void shouldStreamFileWithItsLengthWithUrlConnection() throws Exception {
+        shouldStreamFileWithItsLength(UrlConnectionTransport.createUrlConnectionTransport());
+    }
+
+    @Test
+    public void shouldStreamFileWithItsLengthWithHttpClient() throws Exception {
+        shouldStreamFileWithItsLength(HttpClientTransport.createHttpClientTransport());
+    }
+
+    @Test
+    public void shouldReleaseBodyWriterWhenRequestFails() throws Exception {
+        // Given
+        Transport transport = HttpClientTransport.createHttpClientTransport((Duration) null, Duration.ofMillis(300));
+        CompletableFuture<Exception> writerFailure = new CompletableFuture<>();
+        RequestBody body = RequestBody.ofWriter(-1, outputStream -> {
+            try {
+                for (int i = 0; i < 400; i++) {
+                    outputStream.write(new byte[RequestBody.BUFFER_SIZE]);
+                }
+                writerFailure.complete(null);
+            } catch (IOException e) {
+                writerFailure.complete(e);
+                throw e;
+            }
+        });
+        // When
+        try {
+            transport.send("PUT", new URL(url.replace("/echo", "/stalled")), Collections.emptyMap(), body).close();
+            fail("the request times out");
+        } catch (IOException e) {
+            // Then
+            assertTrue(writerFailure.get(5, TimeUnit.SECONDS) instanceof IOException);
+        }
+    }
+
+    @Test
+    public void shouldReturnErrorWithoutContent() {
+        // When
+        Response response = HttpAPI.query(url + "/missing").transport(HttpClientTransport.createHttpClientTransport()).get();
+        // Then
+        assertEquals(404, response.getCode());
+        assertNull(response.getContent());
+    }
+
+    private void shouldSendBytes(Transport transport) {
+        // When
+        Response response = HttpAPI.query(url).transport(transport).header("X-Test", "value").put("hello".getBytes(StandardCharsets.UTF_8));
+        // Then
+        assertEquals(201, response.getCode());
+        assertEquals("hello", response.getContent());
+        assertEquals("value", response.getHeader("X-Test"));
+    }
+
+    private void shouldStreamFileWithItsLength(Transport transport) throws Exception {
+        // Given
+        StringBuilder content = new StringBuilder();
+        while (content.length() < 3 * RequestBody.BUFFER_SIZE + 17) {
+            content.append(content.length() % 10);
+        }
+        Path source = Files.write(testFolder.newFile().toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+        // When
+        Response response = HttpAPI.query(url).transport(transport).put(source);
+        // Then
+        assertEquals(201, response.getCode());
+        assertEquals(String.valueOf(content.length()), response.getHeader("X-Request-Length"));
+        assertEquals(content.toString(), response.getContent());
+    }
+
+    private void shouldSendFileRegion(Transport transport) throws Exception {
+        // Given
+        Path source = testFolder.newFile().toPath();
+        Files.write(source, "0123456789".getBytes(StandardCharsets.UTF_8));
+        // When
+        Response response;
+        try (FileChannel fileChannel = FileChannel.open(source, StandardOpenOption.READ)) {
+            response = HttpAPI.query(url).transport(transport).put(fileChannel, 2, 5);
+        }
+        // Then
+        assertEquals(201, response.getCode());
+        assertEquals("23456", response.getContent());
+    }
+}
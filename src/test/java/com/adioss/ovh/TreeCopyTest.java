@@ -0,0 +1,142 @@
+package com.adioss.ovh;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static com.adioss.ovh.AuthenticationInformation.createAuthenticationInformationWithCode;
+import static com.adioss.ovh.HubicClient.createHubicClient;
+import static com.adioss.ovh.TreeCopy.createTreeCopy;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link TreeCopy}.
+ */
+public class TreeCopyTest {
+    private FakeHubicServer server;
+    private HubicClient hubicClient;
+    private TreeCopy treeCopy;
+
+    @Before
+    public void setUp() throws Exception {
+        server = FakeHubicServer.start();
+        hubicClient = createHubicClient(createAuthenticationInformationWithCode("clientId", "clientSecret", "code"),
+                HubicClientConfiguration.defaultConfiguration().apiUrl(server.getApiUrl()).listingPageSize(3));
+        treeCopy = createTreeCopy(hubicClient, 2);
+        hubicClient.createDirectory("/Documents/titi");
+        hubicClient.createDirectory("/Documents/titi/sub");
+        for (int i = 0; i < 8; i++) {
+            server.putObject("default/Documents/titi/" + (i % 2 == 0 ? "" : "sub/") + "file" + i, new byte[]{(byte) i});
+        }
+        server.putObject("default/Documents/titi2/other", new byte[1]);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void shouldCopyTree() {
+        // When
+        TreeCopyResult result = treeCopy.copyTree("/Documents/titi", "/Documents/toto");
+        // Then
+        assertTrue(result.isSuccess());
+        assertEquals(10, result.getCopied().size());
+        assertTrue(result.getDeleted().isEmpty());
+        assertArrayEquals(new byte[]{5}, server.getObject("default/Documents/toto/sub/file5"));
+        assertEquals("application/directory", hubicClient.getInfo("/Documents/toto/sub").getHeader("Content-Type"));
+        assertNotNull(server.getObject("default/Documents/titi/sub/file5"));
+        assertNull(server.getObject("default/Documents/toto2/other"));
+    }
+
+    @Test
+    public void shouldMoveTreeAndResumeWithoutCopyingAgain() {
+        // Given
+        hubicClient.copy("default/Documents/titi/file0", "/Documents/toto/file0");
+        hubicClient.copy("default/Documents/titi/sub/file1", "/Documents/toto/sub/file1");
+        // When
+        TreeCopyResult result = treeCopy.moveTree("/Documents/titi", "/Documents/toto");
+        // Then
+        assertTrue(result.isSuccess());
+        assertEquals(8, result.getCopied().size());
+        assertEquals(2, result.getSkipped().size());
+        assertEquals(10, result.getDeleted().size());
+        assertArrayEquals(new byte[]{6}, server.getObject("default/Documents/toto/file6"));
+        assertNull(server.getObject("default/Documents/titi/file6"));
+        assertNull(server.getObject("default/Documents/titi"));
+        assertNotNull(server.getObject("default/Documents/titi2/other"));
+    }
+
+    @Test
+    public void shouldKeepSourcesThatCouldNotBeCopied() {
+        // Given
+        server.quotaExceeded(true);
+        // When
+        TreeCopyResult result = treeCopy.moveTree("/Documents/titi", "/Documents/toto");
+        // Then
+        assertFalse(result.isSuccess());
+        assertEquals(10, result.getFailed().size());
+        assertTrue(result.getDeleted().isEmpty());
+        assertNotNull(server.getObject("default/Documents/titi/sub/file5"));
+    }
+
+    @Test
+    public void shouldReportSourcesNotDeletedWhenBulkDeleteFails() {
+        // Given
+        server.bulkDeleteFailure("503 Service Unavailable");
+        server.fail(exchange -> "DELETE".equals(exchange.getRequestMethod()) && exchange.getRequestURI().getPath().endsWith("/titi/file2"));
+        // When
+        TreeCopyResult result = treeCopy.moveTree("/Documents/titi", "/Documents/toto");
+        // Then
+        assertFalse(result.isSuccess());
+        assertEquals(10, result.getCopied().size());
+        assertEquals(8, result.getDeleted().size());
+        assertFalse(result.getDeleted().contains("/Documents/titi/file2"));
+        assertEquals(Arrays.asList("/Documents/titi/file2", "/Documents/titi"), result.getUndeleted());
+        assertNotNull(server.getObject("default/Documents/titi/file2"));
+        assertNotNull(server.getObject("default/Documents/titi"));
+        assertNull(server.getObject("default/Documents/titi/file4"));
+        assertArrayEquals(new byte[]{2}, server.getObject("default/Documents/toto/file2"));
+    }
+
+    @Test
+    public void shouldMoveManifestWithoutConcatenatingItsSegments() {
+        // Given
+        server.putObject("default_segments/Documents/titi/big/00000000", new byte[]{1, 2});
+        server.putObject("default_segments/Documents/titi/big/00000001", new byte[]{3});
+        hubicClient.storage(Instrumentation.Operation.UPLOAD, "/default/Documents/titi/big")
+                .header("X-Object-Manifest", "default_segments/Documents/titi/big/")
+                .put();
+        // When
+        TreeCopyResult result = treeCopy.moveTree("/Documents/titi", "/Documents/toto");
+        // Then
+        assertTrue(result.isSuccess());
+        assertNull(server.getObject("default/Documents/titi/big"));
+        assertArrayEquals(new byte[]{1, 2, 3}, server.getObject("default/Documents/toto/big"));
+        assertEquals("default_segments/Documents/titi/big/", hubicClient.getInfo("/Documents/toto/big").getHeader("X-Object-Manifest"));
+    }
+
+    @Test
+    public void shouldCopyManifestAsConcatenatedObject() {
+        // Given
+        server.putObject("default_segments/Documents/titi/big/00000000", new byte[]{1, 2});
+        server.putObject("default_segments/Documents/titi/big/00000001", new byte[]{3});
+        hubicClient.storage(Instrumentation.Operation.UPLOAD, "/default/Documents/titi/big")
+                .header("X-Object-Manifest", "default_segments/Documents/titi/big/")
+                .put();
+        // When
+        TreeCopyResult result = treeCopy.copyTree("/Documents/titi", "/Documents/toto");
+        // Then
+        assertTrue(result.isSuccess());
+        assertArrayEquals(new byte[]{1, 2, 3}, server.getObject("default/Documents/toto/big"));
+        assertNull(hubicClient.getInfo("/Documents/toto/big").getHeader("X-Object-Manifest"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectCopyIntoItself() {
+        treeCopy.copyTree("/Documents/titi", "/Documents/titi/sub");
+    }
+}